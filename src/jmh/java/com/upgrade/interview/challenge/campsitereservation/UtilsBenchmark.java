@@ -0,0 +1,37 @@
+package com.upgrade.interview.challenge.campsitereservation;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link Utils#datesBetween(LocalDate, LocalDate)}, parameterized by the length of the date range.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UtilsBenchmark {
+
+  private static final LocalDate START = LocalDate.of(2021, 4, 22);
+
+  @Param({"3", "31", "365"})
+  public int numberOfDays;
+
+  @Benchmark
+  public Object datesBetween() {
+    return Utils.datesBetween(START, START.plusDays(numberOfDays));
+  }
+}
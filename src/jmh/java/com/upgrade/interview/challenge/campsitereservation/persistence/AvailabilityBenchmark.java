@@ -0,0 +1,64 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import static com.upgrade.interview.challenge.campsitereservation.persistence.BookingServiceBenchmark.FIRST_DAY;
+import static com.upgrade.interview.challenge.campsitereservation.persistence.BookingServiceBenchmark.HORIZON_IN_DAYS;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Benchmark of {@link BookingService#getAvailabilities} for a 1 month window in a 1 year horizon, parameterized by
+ * the fraction of the days which are booked.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class AvailabilityBenchmark {
+
+  private static final int WINDOW_IN_DAYS = 31;
+
+  @Param({"0.0", "0.5", "0.9"})
+  public double density;
+
+  private ConfigurableApplicationContext context;
+
+  private BookingService bookingService;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    context = BenchmarkApplication.start();
+    bookingService = context.getBean(BookingService.class);
+    BenchmarkApplication.book(bookingService, density, FIRST_DAY, HORIZON_IN_DAYS);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public Object getAvailabilities() {
+    final var start = FIRST_DAY.plusDays(ThreadLocalRandom.current().nextInt(HORIZON_IN_DAYS - WINDOW_IN_DAYS));
+    return bookingService.getAvailabilities(BenchmarkApplication.CAMPSITE_ID, start, start.plusDays(WINDOW_IN_DAYS));
+  }
+}
@@ -0,0 +1,58 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.UUID;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.upgrade.interview.challenge.campsitereservation.CampsiteReservationApplication;
+
+/**
+ * Starts the application (without the web server) for the benchmarks of the {@link BookingService}.
+ */
+final class BenchmarkApplication {
+
+  // Campsite of the bookings of the benchmarks
+  static final long CAMPSITE_ID = 1;
+
+  private BenchmarkApplication() {
+  }
+
+  /**
+   * Starts the application with a new h2 in-memory database.
+   */
+  static ConfigurableApplicationContext start() {
+    return new SpringApplicationBuilder(CampsiteReservationApplication.class)
+        .web(WebApplicationType.NONE)
+        .run("--spring.datasource.url=jdbc:h2:mem:benchmark-" + UUID.randomUUID(),
+            "--logging.level.root=WARN",
+            "--logging.level.org.hibernate.SQL=WARN",
+            "--logging.level.org.springframework.orm.jpa=WARN",
+            "--logging.level.com.upgrade.interview.challenge.campsitereservation=OFF");
+  }
+
+  /**
+   * Books randomly (with a fixed seed) the given fraction of the days between firstDay and firstDay + numberOfDays.
+   */
+  static void book(BookingService bookingService, double density, LocalDate firstDay, int numberOfDays) {
+    final var random = new Random(42);
+    for (var day = 0; day < numberOfDays; day++) {
+      if (random.nextDouble() < density) {
+        bookingService.add(createBookingEntity(firstDay.plusDays(day), 1));
+      }
+    }
+  }
+
+  static BookingEntity createBookingEntity(LocalDate arrivalDate, int numberOfDays) {
+    return BookingEntity.builder()
+        .campsiteId(CAMPSITE_ID)
+        .email("benchmark@email.com")
+        .fullname("Benchmark")
+        .arrivalDate(arrivalDate)
+        .departureDate(arrivalDate.plusDays(numberOfDays))
+        .build();
+  }
+}
@@ -0,0 +1,43 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link BookingEntity#bookingDates()}, parameterized by the length of the stay.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BookingEntityBenchmark {
+
+  @Param({"1", "3", "31"})
+  public int numberOfDays;
+
+  private BookingEntity bookingEntity;
+
+  @Setup
+  public void setUp() {
+    bookingEntity = BenchmarkApplication.createBookingEntity(LocalDate.of(2021, 4, 22), numberOfDays);
+  }
+
+  @Benchmark
+  public Object bookingDates() {
+    return bookingEntity.bookingDates();
+  }
+}
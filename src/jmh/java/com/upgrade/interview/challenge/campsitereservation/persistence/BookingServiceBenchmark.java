@@ -0,0 +1,153 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.DataAccessException;
+
+import com.upgrade.interview.challenge.campsitereservation.exception.AlreadyBookedException;
+
+/**
+ * Benchmarks of the write operations of the {@link BookingService} against the h2 in-memory database.
+ * <p>The benchmarks are parameterized by:</p>
+ * <ul>
+ *   <li>the density: fraction of the days of a 1 year horizon which are booked before the measurement,</li>
+ *   <li>the contention: with NONE, each operation books dates that no other operation books; with HIGH, all the
+ *   operations target the same dates, so most of them are conflicts.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class BookingServiceBenchmark {
+
+  static final LocalDate FIRST_DAY = LocalDate.of(2100, 1, 1);
+
+  static final int HORIZON_IN_DAYS = 365;
+
+  // The dates after the horizon are not booked during the setup
+  private static final LocalDate HOT_DAY = FIRST_DAY.plusDays(HORIZON_IN_DAYS);
+
+  @Param({"0.0", "0.5", "0.9"})
+  public double density;
+
+  @Param({"NONE", "HIGH"})
+  public Contention contention;
+
+  private final AtomicLong nextFreeDay = new AtomicLong(HOT_DAY.plusDays(10).toEpochDay());
+
+  private ConfigurableApplicationContext context;
+
+  private BookingService bookingService;
+
+  public enum Contention {
+    NONE,
+    HIGH
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    context = BenchmarkApplication.start();
+    bookingService = context.getBean(BookingService.class);
+    BenchmarkApplication.book(bookingService, density, FIRST_DAY, HORIZON_IN_DAYS);
+    bookingService.add(BenchmarkApplication.createBookingEntity(HOT_DAY, 3));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  /**
+   * Returns the first day of numberOfDays days that are not booked by any other booking.
+   */
+  private LocalDate nextFreeArrivalDate(int numberOfDays) {
+    return LocalDate.ofEpochDay(nextFreeDay.getAndAdd(numberOfDays));
+  }
+
+  private LocalDate arrivalDate() {
+    return contention == Contention.HIGH ? HOT_DAY : nextFreeArrivalDate(3);
+  }
+
+  @Benchmark
+  public Object add() {
+    try {
+      return bookingService.add(BenchmarkApplication.createBookingEntity(arrivalDate(), 3));
+    } catch (AlreadyBookedException | DataAccessException e) {
+      return e;
+    }
+  }
+
+  @Benchmark
+  public Object update(ThreadBooking threadBooking) {
+    // The booking of the thread is moved 1 day forward or backward (or to the hot dates)
+    final var oldBookingEntity = threadBooking.bookingEntity;
+    final var arrivalDate = contention == Contention.HIGH
+        ? HOT_DAY
+        : oldBookingEntity.getArrivalDate().plusDays(threadBooking.forward ? 1 : -1);
+    try {
+      threadBooking.bookingEntity = bookingService.update(oldBookingEntity,
+          BenchmarkApplication.createBookingEntity(arrivalDate, 2));
+      threadBooking.forward = !threadBooking.forward;
+      return threadBooking.bookingEntity;
+    } catch (AlreadyBookedException | DataAccessException e) {
+      return e;
+    }
+  }
+
+  @Benchmark
+  public void deleteById(BookingToDelete bookingToDelete) {
+    bookingService.deleteById(BenchmarkApplication.CAMPSITE_ID, bookingToDelete.id);
+  }
+
+  /**
+   * A booking owned by a benchmark thread.
+   */
+  @State(Scope.Thread)
+  public static class ThreadBooking {
+    BookingEntity bookingEntity;
+    boolean forward = true;
+
+    // The booking of 2 days moves between the 3 days reserved for the thread
+    @Setup(Level.Trial)
+    public void setUp(BookingServiceBenchmark benchmark) {
+      bookingEntity = benchmark.bookingService.add(
+          BenchmarkApplication.createBookingEntity(benchmark.nextFreeArrivalDate(3), 2));
+    }
+  }
+
+  /**
+   * A booking added before each invocation of the delete benchmark.
+   */
+  @State(Scope.Thread)
+  public static class BookingToDelete {
+    long id;
+
+    // Level.Invocation is acceptable here: an invocation takes much longer than a millisecond
+    @Setup(Level.Invocation)
+    public void setUp(BookingServiceBenchmark benchmark) {
+      id = benchmark.bookingService.add(
+          BenchmarkApplication.createBookingEntity(benchmark.nextFreeArrivalDate(3), 3)).getId();
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package com.upgrade.interview.challenge.campsitereservation.rest;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Benchmark of the Jackson serialization and deserialization of {@link Booking}, with an {@code ObjectMapper}
+ * configured like the one of the application.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BookingJsonBenchmark {
+
+  private ObjectWriter writer;
+
+  private ObjectReader reader;
+
+  private Booking booking;
+
+  private String json;
+
+  @Setup
+  public void setUp() throws JsonProcessingException {
+    final var objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    writer = objectMapper.writerFor(Booking.class);
+    reader = objectMapper.readerFor(Booking.class);
+    booking = Booking.builder()
+        .email("benchmark@email.com")
+        .fullname("Benchmark")
+        .arrivalDate(LocalDate.of(2021, 4, 22))
+        .departureDate(LocalDate.of(2021, 4, 25))
+        .id(42)
+        .build();
+    json = writer.writeValueAsString(booking);
+  }
+
+  @Benchmark
+  public String serialize() throws JsonProcessingException {
+    return writer.writeValueAsString(booking);
+  }
+
+  @Benchmark
+  public Booking deserialize() throws JsonProcessingException {
+    return reader.readValue(json);
+  }
+}
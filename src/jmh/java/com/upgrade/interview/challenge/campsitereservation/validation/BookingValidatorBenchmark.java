@@ -0,0 +1,89 @@
+package com.upgrade.interview.challenge.campsitereservation.validation;
+
+import java.lang.reflect.Proxy;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.ConstraintValidatorContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+import com.upgrade.interview.challenge.campsitereservation.rest.Booking;
+
+/**
+ * Benchmark of {@link BookingValidator#isValid(Booking, ConstraintValidatorContext)} for a valid and an invalid
+ * booking.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BookingValidatorBenchmark {
+
+  private final ConstraintValidatorContext context = noOp(ConstraintValidatorContext.class);
+
+  private BookingValidator bookingValidator;
+
+  private Booking validBooking;
+
+  private Booking invalidBooking;
+
+  /**
+   * Creates a no-op implementation of the interface: the methods returning an interface return a no-op
+   * implementation, the other methods return null.
+   */
+  private static <T> T noOp(Class<T> type) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+        (proxy, method, args) -> method.getReturnType().isInterface() ? noOp(method.getReturnType()) : null));
+  }
+
+  private static Booking createBooking(LocalDate arrivalDate, int numberOfDays) {
+    return Booking.builder()
+        .email("benchmark@email.com")
+        .fullname("Benchmark")
+        .arrivalDate(arrivalDate)
+        .departureDate(arrivalDate.plusDays(numberOfDays))
+        .build();
+  }
+
+  @Setup
+  public void setUp() {
+    final var configuration = new CampsiteConfiguration();
+    configuration.setMaxBookingDurationInDays(3);
+    configuration.setMinDaysAheadOfArrival(1);
+    configuration.setMaxDaysAheadOfArrival(31);
+    final var today = LocalDate.now();
+    // Fixed clock, and no additional rule (empty provider)
+    final var clock = Clock.fixed(today.atTime(12, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+    bookingValidator = new BookingValidator(new BookingRules(configuration, clock,
+        new StaticListableBeanFactory().getBeanProvider(BookingRule.class)));
+    validBooking = createBooking(today.plusDays(2), 3);
+    // Too long, and too late
+    invalidBooking = createBooking(today.plusDays(40), 5);
+  }
+
+  @Benchmark
+  public boolean isValid_valid() {
+    return bookingValidator.isValid(validBooking, context);
+  }
+
+  @Benchmark
+  public boolean isValid_invalid() {
+    return bookingValidator.isValid(invalidBooking, context);
+  }
+}
@@ -0,0 +1,245 @@
+package com.upgrade.interview.challenge.campsitereservation;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Open-loop load test of the REST API.
+ * <p>The application is started on a random port with a new h2 in-memory database, and the requests are sent at a fixed
+ * arrival rate, whatever the response times. The latency of a request is measured from its scheduled time, so that a
+ * slow server is not hidden by a slower sending (coordinated omission).</p>
+ * <p>The options are (default value in parentheses):</p>
+ * <ul>
+ *   <li>{@code --load.rate} (200): requests per second.</li>
+ *   <li>{@code --load.warmup} (PT5S): duration of the warm-up, not measured.</li>
+ *   <li>{@code --load.duration} (PT30S): duration of the measurement.</li>
+ *   <li>{@code --load.add-ratio} (0.2): fraction of {@code POST /campsites/{id}/bookings}, the other requests are
+ *   {@code GET /campsites/{id}/availabilities}.</li>
+ *   <li>{@code --load.conflict-ratio} (0.1): fraction of the additions which book the same dates of the same campsite
+ *   (all but the first one are conflicts). The other additions book random dates of random campsites.</li>
+ *   <li>{@code --load.output} (build/reports/load/results.json): JSON report.</li>
+ * </ul>
+ * <p>The other arguments are passed to the application (for example {@code --campsite.reservation-engine=...}).</p>
+ */
+public final class LoadTest {
+
+  // Campsite of the conflicting additions, the other additions use the campsites after it
+  private static final long HOT_CAMPSITE_ID = 1;
+
+  private static final int CAMPSITES = 1_000_000;
+
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+  // See BookingMetrics
+  private static final String RETRY_COUNTER = "campsite.booking.retries";
+
+  private final Map<String, String> options = new LinkedHashMap<>();
+
+  private final List<String> applicationArgs = new ArrayList<>();
+
+  private final Random random = new Random(42);
+
+  private HttpClient httpClient;
+
+  private String baseUrl;
+
+  private LoadTest(String[] args) {
+    options.put("rate", "200");
+    options.put("warmup", "PT5S");
+    options.put("duration", "PT30S");
+    options.put("add-ratio", "0.2");
+    options.put("conflict-ratio", "0.1");
+    options.put("output", "build/reports/load/results.json");
+    for (var arg : args) {
+      if (arg.startsWith("--load.")) {
+        final var separator = arg.indexOf('=');
+        if (separator < 0) {
+          throw new IllegalArgumentException("Invalid option " + arg + ", expected " + usage());
+        }
+        final var name = arg.substring("--load.".length(), separator);
+        if (!options.containsKey(name)) {
+          throw new IllegalArgumentException("Unknown option " + arg + ", expected " + usage());
+        }
+        options.put(name, arg.substring(separator + 1));
+      } else {
+        applicationArgs.add(arg);
+      }
+    }
+    addDefaultApplicationArg("spring.datasource.url", "jdbc:h2:mem:load-" + UUID.randomUUID());
+    addDefaultApplicationArg("spring.r2dbc.url", "r2dbc:h2:mem:///load-" + UUID.randomUUID());
+    addDefaultApplicationArg("server.port", "0");
+    addDefaultApplicationArg("logging.level.root", "WARN");
+    addDefaultApplicationArg("logging.level.org.hibernate.SQL", "WARN");
+    addDefaultApplicationArg("logging.level.org.springframework.orm.jpa", "WARN");
+    addDefaultApplicationArg("logging.level.com.upgrade.interview.challenge.campsitereservation", "WARN");
+  }
+
+  public static void main(String[] args) throws Exception {
+    new LoadTest(args).run();
+  }
+
+  private String usage() {
+    return options.keySet().stream()
+        .map(name -> "--load." + name + "=<value>")
+        .collect(Collectors.joining(" "));
+  }
+
+  private void addDefaultApplicationArg(String name, String value) {
+    if (applicationArgs.stream().noneMatch(arg -> arg.startsWith("--" + name + "="))) {
+      applicationArgs.add("--" + name + "=" + value);
+    }
+  }
+
+  @SuppressWarnings("java:S106")
+  private void run() throws IOException, InterruptedException {
+    final var rate = Double.parseDouble(options.get("rate"));
+    final var warmup = Duration.parse(options.get("warmup"));
+    final var duration = Duration.parse(options.get("duration"));
+    final var executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    try (var context = new SpringApplicationBuilder(CampsiteReservationApplication.class)
+        .run(applicationArgs.toArray(String[]::new))) {
+      baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+      httpClient = HttpClient.newBuilder()
+          .version(HttpClient.Version.HTTP_1_1)
+          .executor(executor)
+          .build();
+
+      System.out.println("Warm-up during " + warmup + " at " + rate + " requests/s");
+      send(rate, warmup, new OperationStats(), new OperationStats());
+      final var retriesBefore = retries(context);
+
+      System.out.println("Measurement during " + duration + " at " + rate + " requests/s");
+      final var addStats = new OperationStats();
+      final var availabilitiesStats = new OperationStats();
+      send(rate, duration, addStats, availabilitiesStats);
+
+      final var report = report(duration, addStats, availabilitiesStats, retries(context) - retriesBefore);
+      final var output = Path.of(options.get("output"));
+      Files.createDirectories(output.toAbsolutePath().getParent());
+      new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(output.toFile(), report);
+      System.out.println(new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(report));
+      System.out.println("Report written in " + output.toAbsolutePath());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Sends the requests at the given rate during the given duration, and waits for their responses.
+   */
+  @SuppressWarnings("java:S106")
+  private void send(double rate, Duration duration, OperationStats addStats, OperationStats availabilitiesStats)
+      throws InterruptedException {
+    final var addRatio = Double.parseDouble(options.get("add-ratio"));
+    final var conflictRatio = Double.parseDouble(options.get("conflict-ratio"));
+    final var intervalInNanos = (long) (1e9 / rate);
+    final var requests = (long) (duration.toNanos() / intervalInNanos);
+    final var responses = new ArrayList<CompletableFuture<Void>>();
+    final var start = System.nanoTime();
+    for (var i = 0L; i < requests; i++) {
+      // The requests are scheduled at a fixed rate, even if the previous requests are late
+      final var scheduledTime = start + i * intervalInNanos;
+      final var delay = scheduledTime - System.nanoTime();
+      if (delay > 0) {
+        LockSupport.parkNanos(delay);
+      }
+      if (random.nextDouble() < addRatio) {
+        responses.add(send(addRequest(random.nextDouble() < conflictRatio), scheduledTime, addStats));
+      } else {
+        responses.add(send(availabilitiesRequest(), scheduledTime, availabilitiesStats));
+      }
+    }
+    try {
+      CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new))
+          .get(REQUEST_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException | ExecutionException e) {
+      System.out.println("Some requests have not completed: " + e);
+    }
+  }
+
+  private CompletableFuture<Void> send(HttpRequest request, long scheduledTime, OperationStats stats) {
+    return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+        .handle((response, throwable) -> {
+          final var latency = System.nanoTime() - scheduledTime;
+          if (throwable == null) {
+            stats.record(latency, response.statusCode());
+          } else {
+            stats.recordFailure(latency);
+          }
+          return null;
+        });
+  }
+
+  /**
+   * Returns a request which adds a booking: the same booking of the hot campsite if conflicting, or else a booking of
+   * 1 to 3 days of a random campsite within the next month.
+   */
+  private HttpRequest addRequest(boolean conflicting) {
+    final var campsiteId = conflicting ? HOT_CAMPSITE_ID : HOT_CAMPSITE_ID + 1 + random.nextInt(CAMPSITES);
+    final var arrivalDate = LocalDate.now().plusDays(conflicting ? 2 : 1 + random.nextInt(28));
+    final var departureDate = arrivalDate.plusDays(conflicting ? 1 : 1 + random.nextInt(3));
+    final var json = "{\"email\":\"load@email.com\",\"fullname\":\"Load test\","
+        + "\"arrivalDate\":\"" + arrivalDate + "\",\"departureDate\":\"" + departureDate + "\"}";
+    return HttpRequest.newBuilder(URI.create(baseUrl + "/campsites/" + campsiteId + "/bookings"))
+        .timeout(REQUEST_TIMEOUT)
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(json))
+        .build();
+  }
+
+  private HttpRequest availabilitiesRequest() {
+    // The hot campsite is read as often as the others
+    final var campsiteId = HOT_CAMPSITE_ID + random.nextInt(100);
+    return HttpRequest.newBuilder(URI.create(baseUrl + "/campsites/" + campsiteId + "/availabilities"))
+        .timeout(REQUEST_TIMEOUT)
+        .GET()
+        .build();
+  }
+
+  private static double retries(ConfigurableApplicationContext context) {
+    return context.getBean(MeterRegistry.class).find(RETRY_COUNTER).counters().stream()
+        .mapToDouble(Counter::count)
+        .sum();
+  }
+
+  private Map<String, Object> report(Duration duration, OperationStats addStats, OperationStats availabilitiesStats,
+                                     double retries) {
+    final var report = new LinkedHashMap<String, Object>();
+    report.put("options", options);
+    report.put("applicationArgs", applicationArgs);
+    report.put("throughput", (addStats.count() + availabilitiesStats.count()) * 1e9 / duration.toNanos());
+    report.put("conflictRate", addStats.count() == 0 ? 0 : (double) addStats.count(409) / addStats.count());
+    report.put("retries", (long) retries);
+    report.put("add", addStats.toReport(duration));
+    report.put("availabilities", availabilitiesStats.toReport(duration));
+    return report;
+  }
+}
@@ -0,0 +1,70 @@
+package com.upgrade.interview.challenge.campsitereservation;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+
+/**
+ * Latencies and HTTP statuses of an operation of the {@link LoadTest}, recorded concurrently.
+ */
+final class OperationStats {
+
+  // Latencies in microseconds, with 3 significant digits (the histogram is resized as needed)
+  private final ConcurrentHistogram latencies = new ConcurrentHistogram(3);
+
+  private final ConcurrentMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+  // Requests without response (connection error, timeout...)
+  private final LongAdder failures = new LongAdder();
+
+  void record(long latencyInNanos, int status) {
+    latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyInNanos));
+    statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+  }
+
+  void recordFailure(long latencyInNanos) {
+    latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyInNanos));
+    failures.increment();
+  }
+
+  long count() {
+    return latencies.getTotalCount();
+  }
+
+  long count(int status) {
+    final var count = statuses.get(status);
+    return count == null ? 0 : count.sum();
+  }
+
+  /**
+   * Returns the report of the operation: throughput over the duration, latencies in milliseconds, and number of
+   * responses by status.
+   */
+  Map<String, Object> toReport(Duration duration) {
+    final var report = new LinkedHashMap<String, Object>();
+    report.put("requests", count());
+    report.put("throughput", count() * 1e9 / duration.toNanos());
+    final var latencyReport = new LinkedHashMap<String, Double>();
+    latencyReport.put("p50", percentileInMillis(50));
+    latencyReport.put("p99", percentileInMillis(99));
+    latencyReport.put("p99.9", percentileInMillis(99.9));
+    latencyReport.put("max", latencies.getMaxValue() / 1e3);
+    report.put("latencyMillis", latencyReport);
+    final var statusReport = new TreeMap<String, Long>();
+    statuses.forEach((status, count) -> statusReport.put(status.toString(), count.sum()));
+    report.put("statuses", statusReport);
+    report.put("failures", failures.sum());
+    return report;
+  }
+
+  private double percentileInMillis(double percentile) {
+    return latencies.getValueAtPercentile(percentile) / 1e3;
+  }
+}
@@ -1,8 +1,12 @@
 package com.upgrade.interview.challenge.campsitereservation;
 
+import java.nio.file.Path;
+import java.time.Duration;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -14,4 +18,182 @@ public class CampsiteConfiguration {
   private long maxBookingDurationInDays;
   private long minDaysAheadOfArrival;
   private long maxDaysAheadOfArrival;
+  private ReservationEngine reservationEngine = ReservationEngine.DATABASE;
+  private long defaultCampsiteId = 1;
+  private Retry retry = new Retry();
+  private DayLock dayLock = new DayLock();
+  private GroupCommit groupCommit = new GroupCommit();
+  private ReadReplica readReplica = new ReadReplica();
+  private BookingCache bookingCache = new BookingCache();
+  private Journal journal = new Journal();
+  private WarmUp warmUp = new WarmUp();
+  private IndexSync indexSync = new IndexSync();
+
+  /**
+   * Mechanism used to detect the conflicts between bookings.
+   */
+  public enum ReservationEngine {
+    /**
+     * The booking dates are locked in the database (select for update) in a serializable transaction.
+     */
+    DATABASE,
+    /**
+     * The booking dates are claimed with compare-and-set in the in-memory occupancy index, then the booking is
+     * persisted in a read committed transaction.
+     */
+    COMPARE_AND_SET,
+    /**
+     * The days are created in advance in the database ({@code InventoryDay}), and the days of a booking are claimed
+     * with 1 conditional update in a read committed transaction.
+     */
+    INVENTORY
+  }
+
+  /**
+   * Retry of the operations which failed because of a transient lock failure (lock timeout, deadlock, serialization
+   * failure) or a query timeout.
+   */
+  @Data
+  public static class Retry {
+    /**
+     * Maximum number of attempts (1 disables the retry).
+     */
+    private int maxAttempts = 3;
+    /**
+     * Maximum backoff before the first retry, doubled at each retry.
+     */
+    private Duration initialBackoff = Duration.ofMillis(10);
+    /**
+     * Maximum backoff before a retry.
+     */
+    private Duration maxBackoff = Duration.ofMillis(100);
+    /**
+     * Maximum duration of all the attempts: no retry is done after this deadline.
+     */
+    private Duration deadline = Duration.ofSeconds(1);
+  }
+
+  /**
+   * In-memory locks of the days of the campsites, acquired before the transactions of the {@link
+   * ReservationEngine#DATABASE} engine.
+   */
+  @Data
+  public static class DayLock {
+    /**
+     * Number of locks: the days are mapped to the locks by hash.
+     */
+    private int stripes = 1024;
+    /**
+     * Maximum time to wait for the locks of the days of an operation.
+     */
+    private Duration timeout = Duration.ofSeconds(1);
+  }
+
+  /**
+   * Pipeline which queues the additions of bookings, and commits them by micro-batches.
+   */
+  @Data
+  public static class GroupCommit {
+    /**
+     * Whether the additions of bookings go through the pipeline.
+     */
+    private boolean enabled = false;
+    /**
+     * Maximum number of bookings committed in 1 transaction.
+     */
+    private int maxBatchSize = 64;
+    /**
+     * Maximum time to wait for other bookings after the first booking of a batch.
+     */
+    private Duration maxWait = Duration.ofMillis(2);
+    /**
+     * Maximum number of queued bookings: the additions are rejected when the queue is full.
+     */
+    private int queueCapacity = 10_000;
+    /**
+     * Maximum time to wait for the outcome of a booking: the addition is rejected after it.
+     */
+    private Duration timeout = Duration.ofSeconds(10);
+  }
+
+  /**
+   * Read replica of the database, used by the read-only transactions.
+   */
+  @Data
+  public static class ReadReplica {
+    /**
+     * JDBC URL of the read replica: the read-only transactions are routed to the replica if set.
+     */
+    private String url;
+    private String username;
+    private String password;
+    /**
+     * Maximum number of connections of the pool of the replica.
+     */
+    private int maxPoolSize = 10;
+    /**
+     * Maximum replication lag: a booking or a campsite written during this period is read from the primary database.
+     */
+    private Duration maxLag = Duration.ofSeconds(1);
+  }
+
+  /**
+   * Cache of the bookings by id.
+   */
+  @Data
+  public static class BookingCache {
+    /**
+     * Maximum number of cached bookings (0 disables the cache).
+     */
+    private long maxSize = 10_000;
+    /**
+     * Maximum time a booking is cached: bounds the staleness of a booking updated by another instance.
+     */
+    private Duration ttl = Duration.ofMinutes(1);
+  }
+
+  /**
+   * Memory-mapped journal of the booking events, used to restore the occupancy index at startup.
+   */
+  @Data
+  public static class Journal {
+    /**
+     * Whether the booking events are journaled.
+     */
+    private boolean enabled = false;
+    /**
+     * Directory of the segments and of the snapshots of the journal.
+     */
+    private Path directory = Path.of("journal");
+    /**
+     * Number of events of a segment: the segments are compacted into a snapshot when they are full.
+     */
+    private int eventsPerSegment = 100_000;
+  }
+
+  /**
+   * Warm-up of the paths of the requests, before the application accepts traffic.
+   */
+  @Data
+  public static class WarmUp {
+    /**
+     * Whether the paths of the requests are warmed up at startup.
+     */
+    private boolean enabled = true;
+    /**
+     * Number of times each path is exercised.
+     */
+    private int iterations = 100;
+  }
+
+  /**
+   * Synchronization of the in-memory indexes with the changes committed by the other instances.
+   */
+  @Data
+  public static class IndexSync {
+    /**
+     * Interval between 2 comparisons of the checksum of the bookings with the database (0 disables the comparisons).
+     */
+    private Duration interval = Duration.ofSeconds(1);
+  }
 }
@@ -1,13 +1,31 @@
 package com.upgrade.interview.challenge.campsitereservation;
 
+import java.time.Clock;
+
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
 public class CampsiteReservationApplication {
 
+  private static final int STARTUP_STEPS_CAPACITY = 4096;
+
   public static void main(String[] args) {
-    SpringApplication.run(CampsiteReservationApplication.class, args);
+    final var application = new SpringApplication(CampsiteReservationApplication.class);
+    // Records the startup steps, exposed by the startup actuator endpoint
+    application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS_CAPACITY));
+    application.run(args);
+  }
+
+  /**
+   * Clock of the validation of the booking dates (see {@code BookingRules}), and of the default dates of the
+   * availabilities.
+   */
+  @Bean
+  public Clock clock() {
+    return Clock.systemDefaultZone();
   }
 
 }
@@ -0,0 +1,147 @@
+package com.upgrade.interview.challenge.campsitereservation;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * Immutable range of days between a start day (included) and an end day (excluded), stored as epoch days.
+ * <p>The operations work on the epoch days: no {@link LocalDate} is created, except by the methods which return or
+ * consume dates. A range whose end is before its start is empty.</p>
+ * <p>Example:</p>
+ * <pre>DayRange.of('2021-04-22', '2021-04-25') contains the days:
+ *  - '2021-04-22'
+ *  - '2021-04-23'
+ *  - '2021-04-24'</pre>
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class DayRange {
+
+  long startEpochDay;
+
+  long endEpochDay;
+
+  public static DayRange of(LocalDate startInclusive, LocalDate endExclusive) {
+    return ofEpochDays(startInclusive.toEpochDay(), endExclusive.toEpochDay());
+  }
+
+  public static DayRange ofEpochDays(long startInclusive, long endExclusive) {
+    return new DayRange(startInclusive, Math.max(startInclusive, endExclusive));
+  }
+
+  public LocalDate startInclusive() {
+    return LocalDate.ofEpochDay(startEpochDay);
+  }
+
+  public LocalDate endExclusive() {
+    return LocalDate.ofEpochDay(endEpochDay);
+  }
+
+  /**
+   * Returns the number of days of the range.
+   */
+  public long length() {
+    return endEpochDay - startEpochDay;
+  }
+
+  public boolean isEmpty() {
+    return startEpochDay == endEpochDay;
+  }
+
+  public boolean contains(long epochDay) {
+    return epochDay >= startEpochDay && epochDay < endEpochDay;
+  }
+
+  public boolean contains(LocalDate date) {
+    return contains(date.toEpochDay());
+  }
+
+  /**
+   * Returns true if all the days of the other range are in this range.
+   */
+  public boolean contains(DayRange other) {
+    return other.isEmpty() || other.startEpochDay >= startEpochDay && other.endEpochDay <= endEpochDay;
+  }
+
+  /**
+   * Returns true if at least 1 day is in both ranges.
+   */
+  public boolean overlaps(DayRange other) {
+    return startEpochDay < other.endEpochDay && other.startEpochDay < endEpochDay
+        && !isEmpty() && !other.isEmpty();
+  }
+
+  /**
+   * Returns the days which are in both ranges (an empty range if the ranges do not overlap).
+   */
+  public DayRange intersection(DayRange other) {
+    return ofEpochDays(Math.max(startEpochDay, other.startEpochDay), Math.min(endEpochDay, other.endEpochDay));
+  }
+
+  /**
+   * Returns the smallest range which contains both ranges.
+   */
+  public DayRange span(DayRange other) {
+    if (isEmpty()) {
+      return other;
+    }
+    if (other.isEmpty()) {
+      return this;
+    }
+    return ofEpochDays(Math.min(startEpochDay, other.startEpochDay), Math.max(endEpochDay, other.endEpochDay));
+  }
+
+  /**
+   * Returns the days of this range which are not in the other range: 0, 1 or 2 ranges, sorted.
+   */
+  public List<DayRange> minus(DayRange other) {
+    if (!overlaps(other)) {
+      return isEmpty() ? List.of() : List.of(this);
+    }
+    final var ranges = new ArrayList<DayRange>(2);
+    if (startEpochDay < other.startEpochDay) {
+      ranges.add(ofEpochDays(startEpochDay, other.startEpochDay));
+    }
+    if (other.endEpochDay < endEpochDay) {
+      ranges.add(ofEpochDays(other.endEpochDay, endEpochDay));
+    }
+    return ranges;
+  }
+
+  /**
+   * Calls the action with each epoch day of the range, in order.
+   */
+  public void forEachDay(LongConsumer action) {
+    for (var day = startEpochDay; day < endEpochDay; day++) {
+      action.accept(day);
+    }
+  }
+
+  /**
+   * Calls the action with each date of the range, in order.
+   */
+  public void forEachDate(Consumer<LocalDate> action) {
+    forEachDay(day -> action.accept(LocalDate.ofEpochDay(day)));
+  }
+
+  /**
+   * Returns the list of the dates of the range, in order.
+   */
+  public List<LocalDate> toDates() {
+    final var dates = new ArrayList<LocalDate>((int) length());
+    forEachDate(dates::add);
+    return dates;
+  }
+
+  @Override
+  public String toString() {
+    return "[" + startInclusive() + ", " + endExclusive() + ")";
+  }
+}
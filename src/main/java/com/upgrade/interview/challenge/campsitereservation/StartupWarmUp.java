@@ -0,0 +1,163 @@
+package com.upgrade.interview.challenge.campsitereservation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+
+import javax.validation.Validator;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrade.interview.challenge.campsitereservation.persistence.BookingDateRepository;
+import com.upgrade.interview.challenge.campsitereservation.persistence.BookingRepository;
+import com.upgrade.interview.challenge.campsitereservation.persistence.OccupancyIndex;
+import com.upgrade.interview.challenge.campsitereservation.rest.Booking;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Exercises the paths of the requests before the application accepts traffic: with
+ * {@code spring.main.lazy-initialization}, the first requests would otherwise pay for the initialization of the
+ * beans, the compilation of the JPA queries, the creation of the {@code BookingValidator} and of the Jackson
+ * serializers, and run in the interpreter.
+ * <p>The application runners are called before the readiness state becomes {@code ACCEPTING_TRAFFIC}: the readiness
+ * probe fails during the warm-up. The runner is ordered after the {@code IndexSynchronizer}: the availabilities are
+ * computed on the loaded index. Each path is repeated {@code campsite.warm-up.iterations} times, and recorded as a
+ * startup step ({@code campsite.warm-up.*}, see the {@code startup} actuator endpoint).</p>
+ * <p>The warm-up does not write: the queries select the dates of a campsite which does not exist ({@value
+ * #NO_CAMPSITE_ID}), and lock no row. A failure is logged, it does not prevent the startup.</p>
+ * <p>Disabled with {@code campsite.warm-up.enabled=false}.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "campsite.warm-up", name = "enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class StartupWarmUp implements ApplicationRunner {
+
+  static final String STEP_PREFIX = "campsite.warm-up";
+
+  private static final long NO_CAMPSITE_ID = -1;
+
+  private final BookingRepository bookingRepository;
+
+  private final BookingDateRepository bookingDateRepository;
+
+  private final OccupancyIndex occupancyIndex;
+
+  private final Validator validator;
+
+  private final ObjectMapper objectMapper;
+
+  private final ApplicationStartup applicationStartup;
+
+  private final TransactionTemplate transaction;
+
+  private final Clock clock;
+
+  private final long defaultCampsiteId;
+
+  private final long maxDaysAheadOfArrival;
+
+  private final int iterations;
+
+  public StartupWarmUp(BookingRepository bookingRepository, BookingDateRepository bookingDateRepository,
+                       OccupancyIndex occupancyIndex, Validator validator, ObjectMapper objectMapper,
+                       ApplicationStartup applicationStartup, PlatformTransactionManager transactionManager,
+                       Clock clock, CampsiteConfiguration configuration) {
+    this.bookingRepository = bookingRepository;
+    this.bookingDateRepository = bookingDateRepository;
+    this.occupancyIndex = occupancyIndex;
+    this.validator = validator;
+    this.objectMapper = objectMapper;
+    this.applicationStartup = applicationStartup;
+    this.transaction = new TransactionTemplate(transactionManager);
+    this.clock = clock;
+    this.defaultCampsiteId = configuration.getDefaultCampsiteId();
+    this.maxDaysAheadOfArrival = configuration.getMaxDaysAheadOfArrival();
+    this.iterations = configuration.getWarmUp().getIterations();
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    final var start = System.nanoTime();
+    final var step = applicationStartup.start(STEP_PREFIX);
+    step.tag("iterations", String.valueOf(iterations));
+    try {
+      repeat("jpa", this::warmUpQueries);
+      repeat("availabilities", this::warmUpAvailabilities);
+      repeat("validation", this::warmUpValidation);
+      repeat("jackson", this::warmUpJackson);
+      log.info("Warmed up in {} ms ({} iterations)", (System.nanoTime() - start) / 1_000_000, iterations);
+    } catch (RuntimeException e) {
+      step.tag("failure", e.toString());
+      log.warn("Warm-up failed: the first requests may be slower", e);
+    } finally {
+      step.end();
+    }
+  }
+
+  private void repeat(String name, Runnable path) {
+    final var step = applicationStartup.start(STEP_PREFIX + "." + name);
+    try {
+      for (var i = 0; i < iterations; i++) {
+        path.run();
+      }
+    } finally {
+      step.end();
+    }
+  }
+
+  private void warmUpQueries() {
+    final var startInclusive = LocalDate.now(clock);
+    final var endExclusive = startInclusive.plusDays(maxDaysAheadOfArrival);
+    // Read-write transaction: the select for update of the booking dates cannot run in a read-only transaction
+    transaction.executeWithoutResult(status -> {
+      try (var bookingDates = bookingDateRepository.findAllDatesBetween(NO_CAMPSITE_ID, startInclusive,
+          endExclusive)) {
+        bookingDates.count();
+      }
+      bookingRepository.findAllArrivingBetweenAfter(NO_CAMPSITE_ID, startInclusive, endExclusive, startInclusive, 0,
+          PageRequest.of(0, 1));
+      bookingRepository.findById(0L);
+    });
+  }
+
+  private void warmUpAvailabilities() {
+    final var startInclusive = LocalDate.now(clock).plusDays(1);
+    occupancyIndex.availabilities(defaultCampsiteId, startInclusive, startInclusive.plusDays(maxDaysAheadOfArrival));
+  }
+
+  private void warmUpValidation() {
+    validator.validate(sampleBooking());
+  }
+
+  private void warmUpJackson() {
+    try {
+      objectMapper.readValue(objectMapper.writeValueAsBytes(sampleBooking()), Booking.class);
+      objectMapper.readValue(objectMapper.writeValueAsBytes(List.of(LocalDate.now(clock))),
+          new TypeReference<List<LocalDate>>() {
+          });
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Booking sampleBooking() {
+    final var arrivalDate = LocalDate.now(clock).plusDays(2);
+    return Booking.builder()
+        .email("warm-up@email.com")
+        .fullname("warm-up")
+        .arrivalDate(arrivalDate)
+        .departureDate(arrivalDate.plusDays(1))
+        .build();
+  }
+}
@@ -2,7 +2,6 @@ package com.upgrade.interview.challenge.campsitereservation;
 
 import java.time.LocalDate;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class Utils {
   private Utils() {
@@ -17,11 +16,9 @@ public class Utils {
    *  - '2021-04-24'</pre>
    *
    * @return a list of dates.
+   * @see DayRange#toDates()
    */
   public static List<LocalDate> datesBetween(LocalDate startInclusive, LocalDate endExclusive) {
-    if (startInclusive.isAfter(endExclusive)) {
-      return List.of();
-    }
-    return startInclusive.datesUntil(endExclusive).collect(Collectors.toList());
+    return DayRange.of(startInclusive, endExclusive).toDates();
   }
 }
@@ -0,0 +1,30 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * Result of the addition of 1 booking of a batch (see {@link BookingService#addAll(long, java.util.List)}): the added
+ * booking, or the reason why the booking has not been added.
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class BatchAddResult {
+
+  BookingEntity bookingEntity;
+
+  String conflict;
+
+  static BatchAddResult added(BookingEntity bookingEntity) {
+    return new BatchAddResult(bookingEntity, null);
+  }
+
+  static BatchAddResult conflict(String conflict) {
+    return new BatchAddResult(null, conflict);
+  }
+
+  public boolean isAdded() {
+    return bookingEntity != null;
+  }
+}
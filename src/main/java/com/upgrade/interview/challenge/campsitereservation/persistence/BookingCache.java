@@ -0,0 +1,80 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+/**
+ * Cache of the bookings by id, bounded in size ({@code campsite.booking-cache.max-size}) and in time
+ * ({@code campsite.booking-cache.ttl}).
+ * <p>A booking is invalidated after its update or its deletion. A booking loaded concurrently with an invalidation is
+ * not cached, and a cached booking is never replaced by an older version: the cache only contains stale bookings
+ * updated by other instances, until they expire (their update then fails with an optimistic locking failure).</p>
+ * <p>The cached bookings are copied: they cannot be modified by the callers. The metrics are published with the name
+ * {@value #CACHE_NAME} ({@code cache.gets}, {@code cache.evictions}, {@code cache.size}...).</p>
+ */
+@Component
+public class BookingCache {
+
+  static final String CACHE_NAME = "bookings";
+
+  private final Cache<Long, BookingEntity> cache;
+
+  // Incremented before each invalidation
+  private final AtomicLong invalidations = new AtomicLong();
+
+  public BookingCache(CampsiteConfiguration configuration, MeterRegistry meterRegistry) {
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(configuration.getBookingCache().getMaxSize())
+        .expireAfterWrite(configuration.getBookingCache().getTtl())
+        .recordStats()
+        .build();
+    GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+  }
+
+  /**
+   * Returns the booking with the given id from the cache, or else from the loader.
+   */
+  public Optional<BookingEntity> get(long id, LongFunction<Optional<BookingEntity>> loader) {
+    final var cachedBookingEntity = cache.getIfPresent(id);
+    if (cachedBookingEntity != null) {
+      return Optional.of(copy(cachedBookingEntity));
+    }
+    final var invalidationsBeforeLoad = invalidations.get();
+    final var loadedBookingEntity = loader.apply(id);
+    loadedBookingEntity.ifPresent(bookingEntity -> cache.asMap().compute(id, (key, current) -> {
+      // The booking may have been changed since it has been loaded
+      if (invalidations.get() != invalidationsBeforeLoad
+          || current != null && current.getVersion() >= bookingEntity.getVersion()) {
+        return current;
+      }
+      return copy(bookingEntity);
+    }));
+    return loadedBookingEntity;
+  }
+
+  /**
+   * Invalidates the booking with the given id, once its change is committed.
+   */
+  public void invalidate(long id) {
+    invalidations.incrementAndGet();
+    cache.asMap().remove(id);
+  }
+
+  public void invalidateAll() {
+    invalidations.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  private static BookingEntity copy(BookingEntity bookingEntity) {
+    return bookingEntity.toBuilder().build();
+  }
+}
@@ -0,0 +1,38 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import lombok.Value;
+
+/**
+ * Checksum of a set of bookings: their number, the sum of their ids and the sum of their versions.
+ * <p>The creation, the update or the deletion of a booking changes the checksum: the ids are never reused, and the
+ * version of a booking is incremented by each update. The checksum of the database is computed with 1 aggregate query
+ * (see {@link BookingRepository#checksum()}), and compared with the checksum of the bookings known by an in-memory
+ * index, to detect the changes it missed.</p>
+ */
+@Value
+public class BookingChecksum {
+
+  public static final BookingChecksum EMPTY = new BookingChecksum(0, 0, 0);
+
+  long count;
+
+  long idSum;
+
+  long versionSum;
+
+  public static BookingChecksum of(BookingEntity bookingEntity) {
+    return of(bookingEntity.getId(), bookingEntity.getVersion());
+  }
+
+  public static BookingChecksum of(long id, long version) {
+    return new BookingChecksum(1, id, version);
+  }
+
+  public BookingChecksum plus(BookingChecksum other) {
+    return new BookingChecksum(count + other.count, idSum + other.idSum, versionSum + other.versionSum);
+  }
+
+  public BookingChecksum minus(BookingChecksum other) {
+    return new BookingChecksum(count - other.count, idSum - other.idSum, versionSum - other.versionSum);
+  }
+}
@@ -2,20 +2,70 @@ package com.upgrade.interview.challenge.campsitereservation.persistence;
 
 import java.time.LocalDate;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+
+import org.springframework.data.domain.Persistable;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
+/**
+ * A reserved date of a campsite, owned by a booking.
+ * <p>The primary key is the pair (campsite, date): the bookings of different campsites never lock the same rows.</p>
+ * <p>The id is assigned by the application, so this entity implements {@link Persistable}: a new booking date is
+ * persisted without being selected first, and the inserts can be batched.</p>
+ */
 @Entity
+@Table(indexes = @Index(name = "booking_date_booking_id_idx", columnList = "booking_id"))
+@IdClass(BookingDateId.class)
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class BookingDate {
+public class BookingDate implements Persistable<BookingDateId> {
+  @Id
+  @Column(name = "campsite_id")
+  private long campsiteId;
+
   @Id
   private LocalDate date;
+
+  // Id of the booking owning this date (null for the dates persisted before this column existed).
+  // The equality of the booking dates only depends on the campsite and the date, which are the primary key.
+  @Column(name = "booking_id")
+  @EqualsAndHashCode.Exclude
+  private Long bookingId;
+
+  @Transient
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private boolean persisted;
+
+  @Override
+  public BookingDateId getId() {
+    return new BookingDateId(campsiteId, date);
+  }
+
+  @Override
+  public boolean isNew() {
+    return !persisted;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markPersisted() {
+    persisted = true;
+  }
 }
@@ -0,0 +1,23 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Primary key of a {@link BookingDate}: a date is reserved at most once per campsite.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingDateId implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private long campsiteId;
+
+  private LocalDate date;
+}
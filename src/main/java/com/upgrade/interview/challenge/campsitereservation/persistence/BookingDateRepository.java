@@ -1,24 +1,42 @@
 package com.upgrade.interview.challenge.campsitereservation.persistence;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.stream.Stream;
 
 import javax.persistence.LockModeType;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface BookingDateRepository extends JpaRepository<BookingDate, LocalDate> {
+public interface BookingDateRepository extends JpaRepository<BookingDate, BookingDateId> {
 
-  String QUERY_FIND_DATES_BETWEEN = "select d from #{#entityName} d where d.date >= ?1 and d.date < ?2";
+  String QUERY_FIND_DATES_BETWEEN = "select d from #{#entityName} d"
+      + " where d.campsiteId = ?1 and d.date >= ?2 and d.date < ?3";
 
   @Lock(LockModeType.PESSIMISTIC_WRITE) // Use select for update
   @Query(QUERY_FIND_DATES_BETWEEN)
-  Stream<BookingDate> findAllDatesBetween(LocalDate startInclusive, LocalDate endExclusive);
+  Stream<BookingDate> findAllDatesBetween(long campsiteId, LocalDate startInclusive, LocalDate endExclusive);
 
+  /**
+   * Returns the dates of a campsite between startInclusive and endExclusive, without lock.
+   */
   @Query(QUERY_FIND_DATES_BETWEEN)
-  Stream<BookingDate> fastFindAllDatesBetween(LocalDate startInclusive, LocalDate endExclusive);
+  List<BookingDate> readAllDatesBetween(long campsiteId, LocalDate startInclusive, LocalDate endExclusive);
+
+  /**
+   * Deletes the dates owned by a booking with a single statement.
+   * <p>The dates which have no owner (persisted before the {@code booking_id} column existed) are deleted by date
+   * range of the campsite.</p>
+   *
+   * @return the number of deleted dates.
+   */
+  @Modifying
+  @Query("delete from #{#entityName} d where d.bookingId = ?1"
+      + " or (d.bookingId is null and d.campsiteId = ?2 and d.date >= ?3 and d.date < ?4)")
+  int deleteAllDatesOfBooking(long bookingId, long campsiteId, LocalDate startInclusive, LocalDate endExclusive);
 }
@@ -1,15 +1,19 @@
 package com.upgrade.interview.challenge.campsitereservation.persistence;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
 import javax.persistence.Version;
 
-import com.upgrade.interview.challenge.campsitereservation.Utils;
+import com.upgrade.interview.challenge.campsitereservation.DayRange;
 import com.upgrade.interview.challenge.campsitereservation.rest.Booking;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -17,20 +21,28 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity(name = "Booking")
+@Table(indexes = @Index(name = "booking_campsite_arrival_date_id_idx", columnList = "campsiteId, arrivalDate, id"))
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class BookingEntity {
 
+  // Increment of the sequence of the ids
+  static final int ID_ALLOCATION_SIZE = 50;
+
+  // The ids are allocated by blocks of 50 (pooled optimizer): the sequence is called once every 50 bookings
   @Id
-  @GeneratedValue
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "booking_id")
+  @SequenceGenerator(name = "booking_id", sequenceName = "booking_id_seq", allocationSize = ID_ALLOCATION_SIZE)
   private long id;
 
   @Version
   @GeneratedValue
   private long version;
 
+  private long campsiteId;
+
   private String email;
 
   private String fullname;
@@ -40,10 +52,11 @@ public class BookingEntity {
   private LocalDate departureDate;
 
   /**
-   * Creates a BookingEntity object from Booking object.
+   * Creates a BookingEntity object of a campsite from Booking object.
    */
-  public static BookingEntity createFrom(Booking booking) {
+  public static BookingEntity createFrom(Booking booking, long campsiteId) {
     return BookingEntity.builder()
+        .campsiteId(campsiteId)
         .email(booking.getEmail())
         .fullname(booking.getFullname())
         .arrivalDate(booking.getArrivalDate())
@@ -51,10 +64,21 @@ public class BookingEntity {
         .build();
   }
 
+  /**
+   * Returns the range of the days reserved by this booking.
+   */
+  public DayRange dayRange() {
+    return DayRange.of(arrivalDate, departureDate);
+  }
+
+  /**
+   * Returns the dates reserved by this booking, owned by this booking.
+   */
   public List<BookingDate> bookingDates() {
-    return Utils.datesBetween(arrivalDate, departureDate)
-        .stream()
-        .map(localDate -> BookingDate.builder().date(localDate).build())
-        .collect(Collectors.toList());
+    final var dayRange = dayRange();
+    final var bookingDates = new ArrayList<BookingDate>((int) dayRange.length());
+    dayRange.forEachDate(date -> bookingDates.add(
+        BookingDate.builder().campsiteId(campsiteId).date(date).bookingId(id).build()));
+    return bookingDates;
   }
 }
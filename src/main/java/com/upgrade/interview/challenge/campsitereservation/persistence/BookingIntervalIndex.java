@@ -0,0 +1,113 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory index of the stays [arrival date, departure date[ of the bookings of each campsite, to find the bookings
+ * overlapping a date range without reading all the bookings (see {@link BookingIntervals}).
+ * <p>The index is loaded and reloaded with the {@link OccupancyIndex} by the {@link IndexSynchronizer}: it is restored
+ * from the {@link BookingJournal} if it is enabled (see {@link #loader()}), and reloaded from the
+ * {@link BookingRepository} when another instance has changed the bookings. It is kept in sync by the
+ * {@link BookingService} and the {@link ReactiveBookingService} after each committed change. It only contains the ids
+ * and the dates of the bookings: the bookings themselves are read from the database.</p>
+ */
+@Component
+@Slf4j
+public class BookingIntervalIndex {
+
+  // Intervals of a campsite without booking (never updated)
+  private static final BookingIntervals EMPTY = new BookingIntervals();
+
+  private final BookingRepository bookingRepository;
+
+  private final EntityManager entityManager;
+
+  private volatile ConcurrentMap<Long, BookingIntervals> intervals = new ConcurrentHashMap<>();
+
+  public BookingIntervalIndex(BookingRepository bookingRepository, EntityManager entityManager) {
+    this.bookingRepository = bookingRepository;
+    this.entityManager = entityManager;
+  }
+
+  /**
+   * (Re)loads the index from the {@link BookingRepository}.
+   * <p>The bookings are streamed in a read-write transaction, so that they are read from the primary database, not
+   * from a read replica (see {@link ReadReplicaRoutingDataSource}).</p>
+   */
+  @Transactional
+  public void load() {
+    final ConcurrentMap<Long, BookingIntervals> loadedIntervals = new ConcurrentHashMap<>();
+    try (var bookingEntities = bookingRepository.streamAllOrderedById()) {
+      bookingEntities.forEach(bookingEntity -> {
+        put(loadedIntervals, bookingEntity.getId(), bookingEntity.getCampsiteId(), bookingEntity.getArrivalDate(),
+            bookingEntity.getDepartureDate());
+        entityManager.detach(bookingEntity);
+      });
+    }
+    replace(loadedIntervals, "database");
+  }
+
+  /**
+   * Returns a loader of the index, which puts each reservation it accepts in a new index.
+   */
+  IndexLoader loader() {
+    final ConcurrentMap<Long, BookingIntervals> loadedIntervals = new ConcurrentHashMap<>();
+    return new IndexLoader() {
+      @Override
+      public void accept(long id, long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+        put(loadedIntervals, id, campsiteId, startInclusive, endExclusive);
+      }
+
+      @Override
+      public void complete(String source) {
+        replace(loadedIntervals, source);
+      }
+    };
+  }
+
+  /**
+   * Adds a booking to the index of its campsite, or moves it if its dates have been updated.
+   */
+  public void put(BookingEntity bookingEntity) {
+    put(intervals, bookingEntity.getId(), bookingEntity.getCampsiteId(), bookingEntity.getArrivalDate(),
+        bookingEntity.getDepartureDate());
+  }
+
+  /**
+   * Removes a booking from the index of its campsite.
+   */
+  public void remove(long campsiteId, long id) {
+    intervals.getOrDefault(campsiteId, EMPTY).remove(id);
+  }
+
+  /**
+   * Returns the ids of the bookings of a campsite whose stay overlaps the dates between startInclusive and
+   * endExclusive, sorted by arrival date and id.
+   */
+  public List<Long> overlapping(long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    return intervals.getOrDefault(campsiteId, EMPTY)
+        .overlapping(startInclusive.toEpochDay(), endExclusive.toEpochDay());
+  }
+
+  private void replace(ConcurrentMap<Long, BookingIntervals> loadedIntervals, String source) {
+    intervals = loadedIntervals;
+    log.info("Loaded {} bookings of {} campsites in the interval index from the {}",
+        loadedIntervals.values().stream().mapToInt(BookingIntervals::size).sum(), loadedIntervals.size(), source);
+  }
+
+  private static void put(ConcurrentMap<Long, BookingIntervals> intervals, long id, long campsiteId,
+                          LocalDate startInclusive, LocalDate endExclusive) {
+    intervals.computeIfAbsent(campsiteId, key -> new BookingIntervals())
+        .put(id, startInclusive.toEpochDay(), endExclusive.toEpochDay());
+  }
+}
@@ -0,0 +1,127 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Intervals of the bookings of a campsite, keyed by epoch-day: each booking is the interval [arrival, departure[.
+ * <p>The intervals are sorted by start and booking id, and the structure is augmented with the count of the intervals
+ * of each length: an interval overlapping [start, end[ starts after start minus the maximum length, so that only the
+ * intervals starting between these bounds are visited. The bookings being short, a query visits few more intervals
+ * than it returns.</p>
+ * <p>The read-write lock allows concurrent queries, the updates holding the write lock.</p>
+ */
+final class BookingIntervals {
+
+  private static final Comparator<Interval> BY_START_AND_ID = Comparator
+      .comparingLong((Interval interval) -> interval.start)
+      .thenComparingLong(interval -> interval.id);
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private final NavigableSet<Interval> intervals = new TreeSet<>(BY_START_AND_ID);
+
+  private final Map<Long, Interval> intervalsById = new HashMap<>();
+
+  // Number of intervals of each length
+  private final TreeMap<Long, Integer> lengthCounts = new TreeMap<>();
+
+  /**
+   * Adds the interval of a booking, or moves it if the booking is already in the intervals.
+   */
+  void put(long id, long startInclusive, long endExclusive) {
+    final var interval = new Interval(id, startInclusive, endExclusive);
+    lock.writeLock().lock();
+    try {
+      final var oldInterval = intervalsById.put(id, interval);
+      if (oldInterval != null) {
+        removeInterval(oldInterval);
+      }
+      intervals.add(interval);
+      lengthCounts.merge(interval.length(), 1, Integer::sum);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes the interval of a booking, if any.
+   */
+  void remove(long id) {
+    lock.writeLock().lock();
+    try {
+      final var interval = intervalsById.remove(id);
+      if (interval != null) {
+        removeInterval(interval);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the ids of the bookings overlapping the epoch-days between startInclusive and endExclusive, sorted by
+   * arrival and id.
+   */
+  List<Long> overlapping(long startInclusive, long endExclusive) {
+    final List<Long> ids = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      if (startInclusive >= endExclusive || lengthCounts.isEmpty()) {
+        return ids;
+      }
+      // The intervals starting before this bound end before startInclusive
+      final var minStart = startInclusive - lengthCounts.lastKey() + 1;
+      for (var interval : intervals.subSet(new Interval(Long.MIN_VALUE, minStart, minStart), true,
+          new Interval(Long.MIN_VALUE, endExclusive, endExclusive), false)) {
+        if (interval.end > startInclusive) {
+          ids.add(interval.id);
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return ids;
+  }
+
+  int size() {
+    lock.readLock().lock();
+    try {
+      return intervalsById.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void removeInterval(Interval interval) {
+    intervals.remove(interval);
+    lengthCounts.computeIfPresent(interval.length(), (length, count) -> count > 1 ? count - 1 : null);
+  }
+
+  /**
+   * Interval of a booking. The bounds of a search have the smallest id.
+   */
+  private static final class Interval {
+    private final long id;
+    private final long start;
+    private final long end;
+
+    private Interval(long id, long start, long end) {
+      this.id = id;
+      this.start = start;
+      this.end = end;
+    }
+
+    private long length() {
+      return Math.max(end - start, 0);
+    }
+  }
+}
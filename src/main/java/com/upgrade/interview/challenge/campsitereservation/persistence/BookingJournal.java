@@ -0,0 +1,457 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only journal of the committed booking events (created, updated, cancelled), used to restore the
+ * {@link OccupancyIndex} and the {@link BookingIntervalIndex} at startup without scanning the bookings (see
+ * {@link IndexSynchronizer#restore()}).
+ * <p>The events are appended to memory-mapped segments of {@code campsite.journal.events-per-segment} fixed-size
+ * records. When a segment is full, the next segment is started, and the closed segments are compacted in the
+ * background into a snapshot: the last version of each booking which is not cancelled, sorted by id. The restore reads
+ * the last snapshot and the segments after it.</p>
+ * <p>The events are appended after the commit, possibly in a different order than the commits: the last event of a
+ * booking is its cancellation, or else its event with the highest version. An event is lost if the process stops
+ * between the commit and the append: the restore falls back to the database if the {@link BookingChecksum} of the
+ * restored bookings differs from the checksum of the database (a lost creation, update or cancellation), and writes a
+ * new snapshot. The journal only contains the bookings written by this instance, it is meant for a single
+ * replica.</p>
+ * <p>Enabled with {@code campsite.journal.enabled=true}.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "campsite.journal", name = "enabled", havingValue = "true")
+@Slf4j
+public class BookingJournal {
+
+  // Segment record: type (int), start (int), end (int), unused (int), id, campsite id, version (longs)
+  private static final int RECORD_SIZE = 40;
+
+  // Snapshot: number of bookings (long), then 1 record per booking: id, campsite id, version (longs), start, end (ints)
+  private static final int SNAPSHOT_HEADER_SIZE = Long.BYTES;
+
+  private static final int SNAPSHOT_RECORD_SIZE = 32;
+
+  // The type 0 marks the end of a segment (the mapped file is filled with zeros)
+  private static final int CREATED = 1;
+
+  private static final int UPDATED = 2;
+
+  private static final int CANCELLED = 3;
+
+  private static final String SEGMENT_PREFIX = "journal-";
+
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+  private static final String SNAPSHOT_SUFFIX = ".dat";
+
+  private final Path directory;
+
+  private final int eventsPerSegment;
+
+  private final BookingRepository bookingRepository;
+
+  private final EntityManager entityManager;
+
+  private final TransactionTemplate transaction;
+
+  private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+    final var thread = new Thread(runnable, "journal-compactor");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  // Serializes the changes of the files (compaction, restore)
+  private final Object filesLock = new Object();
+
+  // Guarded by this
+  private long segmentIndex;
+
+  // Guarded by this
+  private MappedByteBuffer segment;
+
+  public BookingJournal(CampsiteConfiguration configuration, BookingRepository bookingRepository,
+                        EntityManager entityManager, PlatformTransactionManager transactionManager) {
+    this.directory = configuration.getJournal().getDirectory();
+    this.eventsPerSegment = configuration.getJournal().getEventsPerSegment();
+    this.bookingRepository = bookingRepository;
+    this.entityManager = entityManager;
+    this.transaction = new TransactionTemplate(transactionManager);
+    try {
+      Files.createDirectories(directory);
+      // Never append to a segment of a previous run: its last record may be incomplete
+      final var lastIndex = Stream.concat(indexes(SEGMENT_PREFIX, SEGMENT_SUFFIX).stream(),
+          indexes(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).stream()).mapToLong(Long::longValue).max().orElse(0);
+      openSegment(lastIndex + 1);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Consumer of the id and the dates of a booking of a campsite.
+   */
+  @FunctionalInterface
+  public interface ReservationConsumer {
+    void accept(long id, long campsiteId, LocalDate startInclusive, LocalDate endExclusive);
+  }
+
+  public void created(BookingEntity bookingEntity) {
+    append(CREATED, bookingEntity);
+  }
+
+  public void updated(BookingEntity bookingEntity) {
+    append(UPDATED, bookingEntity);
+  }
+
+  public void cancelled(BookingEntity bookingEntity) {
+    append(CANCELLED, bookingEntity);
+  }
+
+  private synchronized void append(int type, BookingEntity bookingEntity) {
+    if (segment.remaining() < RECORD_SIZE) {
+      final var closedIndex = roll();
+      compactor.execute(() -> compact(closedIndex));
+    }
+    final var position = segment.position();
+    segment.putInt(position + 4, (int) bookingEntity.getArrivalDate().toEpochDay());
+    segment.putInt(position + 8, (int) bookingEntity.getDepartureDate().toEpochDay());
+    segment.putLong(position + 16, bookingEntity.getId());
+    segment.putLong(position + 24, bookingEntity.getCampsiteId());
+    segment.putLong(position + 32, bookingEntity.getVersion());
+    // The type is written last: a record is complete once its type is set
+    segment.putInt(position, type);
+    segment.position(position + RECORD_SIZE);
+  }
+
+  /**
+   * Closes the current segment and starts the next one.
+   *
+   * @return the index of the closed segment.
+   */
+  private synchronized long roll() {
+    segment.force();
+    final var closedIndex = segmentIndex;
+    try {
+      openSegment(closedIndex + 1);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return closedIndex;
+  }
+
+  private synchronized void openSegment(long index) throws IOException {
+    try (var channel = FileChannel.open(path(SEGMENT_PREFIX, index, SEGMENT_SUFFIX),
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // The mapping stays valid once the channel is closed
+      segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) eventsPerSegment * RECORD_SIZE);
+    }
+    segmentIndex = index;
+  }
+
+  /**
+   * Calls the action for each booking which is not cancelled, restored from the last snapshot and the segments after
+   * it. If there is no snapshot, or if the {@link BookingChecksum} of the restored bookings differs from the checksum
+   * of the database, the bookings are read from the database, and a new snapshot is written.
+   *
+   * @return true if the bookings have been restored from the journal, false if they have been read from the database.
+   */
+  public boolean restore(ReservationConsumer action) {
+    synchronized (filesLock) {
+      try {
+        // The events appended so far are in the closed segments
+        final var lastIndex = roll();
+        final var snapshotIndex = lastSnapshotIndex();
+        if (snapshotIndex.isPresent()) {
+          final var snapshot = path(SNAPSHOT_PREFIX, snapshotIndex.getAsLong(), SNAPSHOT_SUFFIX);
+          final var tail = readSegments(snapshotIndex.getAsLong(), lastIndex);
+          final var checksum = new BookingChecksum[] {BookingChecksum.EMPTY};
+          forEachBooking(snapshot, tail,
+              event -> checksum[0] = checksum[0].plus(BookingChecksum.of(event.getId(), event.getVersion())));
+          // Read-write, so that the checksum is read from the primary database (see ReadReplicaRoutingDataSource)
+          final var expectedChecksum = transaction.execute(status -> bookingRepository.checksum());
+          if (checksum[0].equals(expectedChecksum)) {
+            forEachBooking(snapshot, tail, event -> action.accept(event.getId(), event.getCampsiteId(),
+                LocalDate.ofEpochDay(event.getStartEpochDay()), LocalDate.ofEpochDay(event.getEndEpochDay())));
+            compactor.execute(() -> compact(lastIndex));
+            return true;
+          }
+          log.warn("The bookings of the journal {} differ from the bookings of the database {}: reading the bookings from"
+              + " the database", checksum[0], expectedChecksum);
+        }
+        bootstrap(lastIndex, action);
+        return false;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Writes the snapshot of the bookings of the database, which replaces the segments up to lastIndex.
+   */
+  private void bootstrap(long lastIndex, ReservationConsumer action) throws IOException {
+    final var temporarySnapshot = path(SNAPSHOT_PREFIX, lastIndex, SNAPSHOT_SUFFIX + ".tmp");
+    try (var writer = new SnapshotWriter(temporarySnapshot)) {
+      transaction.executeWithoutResult(status -> {
+        try (var bookingEntities = bookingRepository.streamAllOrderedById()) {
+          bookingEntities.forEach(bookingEntity -> {
+            writer.write(Event.of(CREATED, bookingEntity));
+            action.accept(bookingEntity.getId(), bookingEntity.getCampsiteId(), bookingEntity.getArrivalDate(),
+                bookingEntity.getDepartureDate());
+            entityManager.detach(bookingEntity);
+          });
+        }
+      });
+    }
+    replaceSnapshot(temporarySnapshot, lastIndex);
+  }
+
+  /**
+   * Compacts the last snapshot and the segments up to lastIndex into a new snapshot.
+   */
+  private void compact(long lastIndex) {
+    synchronized (filesLock) {
+      try {
+        final var snapshotIndex = lastSnapshotIndex();
+        if (snapshotIndex.isEmpty() || snapshotIndex.getAsLong() >= lastIndex) {
+          return;
+        }
+        final var snapshot = path(SNAPSHOT_PREFIX, snapshotIndex.getAsLong(), SNAPSHOT_SUFFIX);
+        final var tail = readSegments(snapshotIndex.getAsLong(), lastIndex);
+        final var temporarySnapshot = path(SNAPSHOT_PREFIX, lastIndex, SNAPSHOT_SUFFIX + ".tmp");
+        try (var writer = new SnapshotWriter(temporarySnapshot)) {
+          forEachBooking(snapshot, tail, writer::write);
+        }
+        replaceSnapshot(temporarySnapshot, lastIndex);
+        log.info("Compacted {} events into snapshot {}", tail.size(), lastIndex);
+      } catch (IOException | RuntimeException e) {
+        log.error("Compaction of the journal up to segment {} failed", lastIndex, e);
+      }
+    }
+  }
+
+  private void replaceSnapshot(Path temporarySnapshot, long index) throws IOException {
+    Files.move(temporarySnapshot, path(SNAPSHOT_PREFIX, index, SNAPSHOT_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+    // The segments are deleted while they may still be mapped: their memory is released once they are collected
+    for (var oldIndex : indexes(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+      if (oldIndex < index) {
+        Files.delete(path(SNAPSHOT_PREFIX, oldIndex, SNAPSHOT_SUFFIX));
+      }
+    }
+    for (var oldIndex : indexes(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+      if (oldIndex <= index) {
+        Files.delete(path(SEGMENT_PREFIX, oldIndex, SEGMENT_SUFFIX));
+      }
+    }
+  }
+
+  /**
+   * Returns the last event of each booking of the segments after fromIndex (excluded) up to toIndex (included), by id.
+   */
+  private NavigableMap<Long, Event> readSegments(long fromIndex, long toIndex) throws IOException {
+    final var events = new TreeMap<Long, Event>();
+    for (var index : indexes(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+      if (index > fromIndex && index <= toIndex) {
+        final var buffer = map(path(SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        for (var position = 0; position + RECORD_SIZE <= buffer.limit() && buffer.getInt(position) != 0;
+             position += RECORD_SIZE) {
+          final var event = new Event(buffer.getInt(position), buffer.getLong(position + 16),
+              buffer.getLong(position + 24), buffer.getLong(position + 32), buffer.getInt(position + 4),
+              buffer.getInt(position + 8));
+          events.merge(event.getId(), event, Event::latest);
+        }
+      }
+    }
+    return events;
+  }
+
+  /**
+   * Calls the action for each booking of the snapshot and of the tail which is not cancelled, sorted by id.
+   */
+  private static void forEachBooking(Path snapshot, NavigableMap<Long, Event> tail, Consumer<Event> action)
+      throws IOException {
+    final var buffer = map(snapshot);
+    final var count = buffer.getLong(0);
+    final PeekingIterator<Event> tailEvents = Iterators.peekingIterator(tail.values().iterator());
+    for (var i = 0L; i < count; i++) {
+      final var position = (int) (SNAPSHOT_HEADER_SIZE + i * SNAPSHOT_RECORD_SIZE);
+      var event = new Event(CREATED, buffer.getLong(position), buffer.getLong(position + 8),
+          buffer.getLong(position + 16), buffer.getInt(position + 24), buffer.getInt(position + 28));
+      while (tailEvents.hasNext() && tailEvents.peek().getId() <= event.getId()) {
+        final var tailEvent = tailEvents.next();
+        if (tailEvent.getId() == event.getId()) {
+          event = Event.latest(event, tailEvent);
+        } else {
+          acceptIfNotCancelled(tailEvent, action);
+        }
+      }
+      acceptIfNotCancelled(event, action);
+    }
+    tailEvents.forEachRemaining(tailEvent -> acceptIfNotCancelled(tailEvent, action));
+  }
+
+  private static void acceptIfNotCancelled(Event event, Consumer<Event> action) {
+    if (event.getType() != CANCELLED) {
+      action.accept(event);
+    }
+  }
+
+  private static ByteBuffer map(Path path) throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  private OptionalLong lastSnapshotIndex() throws IOException {
+    return indexes(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).stream().mapToLong(Long::longValue).max();
+  }
+
+  /**
+   * Returns the sorted indexes of the files with the given prefix and suffix.
+   */
+  private List<Long> indexes(String prefix, String suffix) throws IOException {
+    try (var paths = Files.list(directory)) {
+      return paths.map(path -> path.getFileName().toString())
+          .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+          .map(name -> Long.valueOf(name.substring(prefix.length(), name.length() - suffix.length())))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private Path path(String prefix, long index, String suffix) {
+    return directory.resolve(prefix + index + suffix);
+  }
+
+  /**
+   * Compacts the journal before the shutdown, so that the next restore only reads a snapshot.
+   */
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    compactor.shutdown();
+    // The compaction in progress is completed first: the last compaction replaces its snapshot
+    if (!compactor.awaitTermination(10, TimeUnit.SECONDS)) {
+      log.warn("The compaction of the journal is still in progress, the journal is not compacted before the shutdown");
+      return;
+    }
+    compact(roll());
+  }
+
+  /**
+   * Event of a booking.
+   */
+  @Value
+  private static class Event {
+    int type;
+    long id;
+    long campsiteId;
+    long version;
+    int startEpochDay;
+    int endEpochDay;
+
+    static Event of(int type, BookingEntity bookingEntity) {
+      return new Event(type, bookingEntity.getId(), bookingEntity.getCampsiteId(), bookingEntity.getVersion(),
+          (int) bookingEntity.getArrivalDate().toEpochDay(), (int) bookingEntity.getDepartureDate().toEpochDay());
+    }
+
+    /**
+     * Returns the last of 2 events of the same booking: the cancellation, or else the event with the highest version
+     * (the second event if the versions are equal).
+     */
+    static Event latest(Event event1, Event event2) {
+      if (event1.getType() == CANCELLED) {
+        return event1;
+      }
+      return event2.getType() == CANCELLED || event2.getVersion() >= event1.getVersion() ? event2 : event1;
+    }
+  }
+
+  /**
+   * Writes the records of a snapshot, then its number of bookings when it is closed.
+   */
+  private static class SnapshotWriter implements Closeable {
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_RECORD_SIZE * 2048);
+
+    private long count;
+
+    SnapshotWriter(Path path) throws IOException {
+      channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+          StandardOpenOption.WRITE);
+      channel.position(SNAPSHOT_HEADER_SIZE);
+    }
+
+    void write(Event event) {
+      if (buffer.remaining() < SNAPSHOT_RECORD_SIZE) {
+        flush();
+      }
+      buffer.putLong(event.getId())
+          .putLong(event.getCampsiteId())
+          .putLong(event.getVersion())
+          .putInt(event.getStartEpochDay())
+          .putInt(event.getEndEpochDay());
+      count++;
+    }
+
+    private void flush() {
+      try {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        buffer.clear();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        flush();
+        channel.write(ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE).putLong(0, count), 0);
+        channel.force(true);
+      } finally {
+        channel.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.util.function.Supplier;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import com.upgrade.interview.challenge.campsitereservation.exception.AlreadyBookedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+
+/**
+ * Metrics of the {@link BookingService} and of the {@link ReactiveBookingService}:
+ * <ul>
+ *   <li>{@value #OPERATION_TIMER}: duration of the operations, by operation and outcome (success, conflict or
+ *   error).</li>
+ *   <li>{@value #CONFLICT_COUNTER}: number of {@link AlreadyBookedException}, by operation.</li>
+ *   <li>{@value #DATA_ACCESS_ERROR_COUNTER}: number of {@link DataAccessException} (lock failures, integrity
+ *   violations...), by operation and exception.</li>
+ *   <li>{@value #RETRY_COUNTER}: number of retries after a transient failure, by operation and exception.</li>
+ *   <li>{@value #LOCK_WAIT_TIMER}: time spent acquiring the pessimistic lock on the booking dates.</li>
+ * </ul>
+ */
+@Component
+public class BookingMetrics {
+
+  static final String OPERATION_TIMER = "campsite.booking.operation";
+
+  static final String CONFLICT_COUNTER = "campsite.booking.conflicts";
+
+  static final String DATA_ACCESS_ERROR_COUNTER = "campsite.booking.data.access.errors";
+
+  static final String RETRY_COUNTER = "campsite.booking.retries";
+
+  static final String LOCK_WAIT_TIMER = "campsite.booking.lock.wait";
+
+  private final MeterRegistry meterRegistry;
+
+  private final Timer lockWaitTimer;
+
+  public BookingMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    this.lockWaitTimer = Timer.builder(LOCK_WAIT_TIMER)
+        .description("Time spent acquiring the pessimistic lock on the booking dates")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  /**
+   * Times the operation, and counts the conflicts and the data access errors.
+   */
+  public <T> T record(String operation, Supplier<T> action) {
+    final var sample = Timer.start(meterRegistry);
+    var outcome = "error";
+    try {
+      final var result = action.get();
+      outcome = "success";
+      return result;
+    } catch (RuntimeException e) {
+      outcome = countFailure(operation, e);
+      throw e;
+    } finally {
+      stop(sample, operation, outcome);
+    }
+  }
+
+  /**
+   * Times the operation from its subscription to its completion, and counts the conflicts and the data access errors.
+   */
+  public <T> Mono<T> record(String operation, Mono<T> action) {
+    return Mono.defer(() -> {
+      final var sample = Timer.start(meterRegistry);
+      return action
+          .doOnSuccess(result -> stop(sample, operation, "success"))
+          .doOnError(e -> stop(sample, operation, countFailure(operation, e)));
+    });
+  }
+
+  /**
+   * Times the operation, and counts the conflicts and the data access errors.
+   */
+  public void record(String operation, Runnable action) {
+    record(operation, () -> {
+      action.run();
+      return null;
+    });
+  }
+
+  /**
+   * Counts a retry of the operation after the exception.
+   */
+  public void countRetry(String operation, RuntimeException exception) {
+    Counter.builder(RETRY_COUNTER)
+        .description("Number of retries after a transient failure")
+        .tag("operation", operation)
+        .tag("exception", exception.getClass().getSimpleName())
+        .register(meterRegistry)
+        .increment();
+  }
+
+  /**
+   * Times the acquisition of the pessimistic lock.
+   */
+  public <T> T recordLockWait(Supplier<T> action) {
+    return lockWaitTimer.record(action);
+  }
+
+  /**
+   * Counts a conflict or a data access error.
+   *
+   * @return the outcome of the operation: conflict or error.
+   */
+  private String countFailure(String operation, Throwable failure) {
+    if (failure instanceof AlreadyBookedException) {
+      Counter.builder(CONFLICT_COUNTER)
+          .description("Number of bookings rejected because the dates are not available")
+          .tag("operation", operation)
+          .register(meterRegistry)
+          .increment();
+      return "conflict";
+    }
+    if (failure instanceof DataAccessException) {
+      Counter.builder(DATA_ACCESS_ERROR_COUNTER)
+          .description("Number of data access errors")
+          .tag("operation", operation)
+          .tag("exception", failure.getClass().getSimpleName())
+          .register(meterRegistry)
+          .increment();
+    }
+    return "error";
+  }
+
+  private void stop(Timer.Sample sample, String operation, String outcome) {
+    sample.stop(Timer.builder(OPERATION_TIMER)
+        .description("Duration of the booking operations")
+        .tag("operation", operation)
+        .tag("outcome", outcome)
+        .publishPercentileHistogram()
+        .register(meterRegistry));
+  }
+}
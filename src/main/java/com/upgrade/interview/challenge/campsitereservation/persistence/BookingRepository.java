@@ -1,14 +1,80 @@
 package com.upgrade.interview.challenge.campsitereservation.persistence;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 
+import org.hibernate.jpa.QueryHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface BookingRepository extends JpaRepository<BookingEntity, Long> {
+
+  String QUERY_FIND_ARRIVING_BETWEEN = "select b from #{#entityName} b"
+      + " where b.campsiteId = ?1 and b.arrivalDate >= ?2 and b.arrivalDate < ?3";
+
   // Automatically increment the version field
   @Lock(LockModeType.PESSIMISTIC_FORCE_INCREMENT)
   <S extends BookingEntity> S save(S entity);
+
+  /**
+   * Streams the bookings of a campsite arriving between startInclusive and endExclusive, sorted by arrival date and id.
+   * <p>The rows are fetched from a database cursor by blocks of 100. The stream must be consumed, and closed, within a
+   * transaction.</p>
+   */
+  @QueryHints({
+      @QueryHint(name = QueryHints.HINT_FETCH_SIZE, value = "100"),
+      @QueryHint(name = QueryHints.HINT_READONLY, value = "true")})
+  @Query(QUERY_FIND_ARRIVING_BETWEEN + " order by b.arrivalDate, b.id")
+  Stream<BookingEntity> streamAllArrivingBetween(long campsiteId, LocalDate startInclusive, LocalDate endExclusive);
+
+  /**
+   * Streams all the bookings, sorted by id.
+   * <p>The rows are fetched from a database cursor by blocks of 1000. The stream must be consumed, and closed, within a
+   * transaction.</p>
+   */
+  @QueryHints({
+      @QueryHint(name = QueryHints.HINT_FETCH_SIZE, value = "1000"),
+      @QueryHint(name = QueryHints.HINT_READONLY, value = "true")})
+  @Query("select b from #{#entityName} b order by b.id")
+  Stream<BookingEntity> streamAllOrderedById();
+
+  /**
+   * Returns the version of the booking of a campsite with the given id (primary key lookup).
+   */
+  @Query("select b.version from #{#entityName} b where b.id = ?1 and b.campsiteId = ?2")
+  Optional<Long> findVersion(long id, long campsiteId);
+
+  /**
+   * Returns the {@link BookingChecksum} of all the bookings, computed by the database.
+   */
+  @Query("select new com.upgrade.interview.challenge.campsitereservation.persistence.BookingChecksum("
+      + "count(b), coalesce(sum(b.id), 0), coalesce(sum(b.version), 0)) from #{#entityName} b")
+  BookingChecksum checksum();
+
+  /**
+   * Finds the bookings with the given ids whose stay overlaps the dates between startInclusive and endExclusive.
+   */
+  @QueryHints(@QueryHint(name = QueryHints.HINT_READONLY, value = "true"))
+  @Query("select b from #{#entityName} b"
+      + " where b.id in ?1 and b.arrivalDate < ?3 and b.departureDate > ?2")
+  List<BookingEntity> findAllOverlapping(Collection<Long> ids, LocalDate startInclusive, LocalDate endExclusive);
+
+  /**
+   * Finds a page of the bookings of a campsite arriving between startInclusive and endExclusive, sorted by arrival
+   * date and id, starting after the booking (afterArrivalDate, afterId) (keyset pagination).
+   */
+  @Query(QUERY_FIND_ARRIVING_BETWEEN
+      + " and (b.arrivalDate > ?4 or (b.arrivalDate = ?4 and b.id > ?5)) order by b.arrivalDate, b.id")
+  List<BookingEntity> findAllArrivingBetweenAfter(long campsiteId, LocalDate startInclusive, LocalDate endExclusive,
+                                                  LocalDate afterArrivalDate, long afterId, Pageable pageable);
 }
@@ -1,18 +1,36 @@
 package com.upgrade.interview.challenge.campsitereservation.persistence;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.upgrade.interview.challenge.campsitereservation.Utils;
+import com.google.common.collect.Lists;
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration.ReservationEngine;
+import com.upgrade.interview.challenge.campsitereservation.DayRange;
 import com.upgrade.interview.challenge.campsitereservation.exception.AlreadyBookedException;
 import lombok.extern.slf4j.Slf4j;
 
@@ -20,27 +38,184 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class BookingService {
 
+  // Maximum number of bind parameters of the queries by id
+  static final int MAX_IDS_PER_QUERY = 1000;
+
   private final BookingRepository bookingRepository;
 
   private final BookingDateRepository bookingDateRepository;
 
-  public BookingService(BookingRepository bookingRepository, BookingDateRepository bookingDateRepository) {
+  private final InventoryDayRepository inventoryDayRepository;
+
+  private final InventoryManager inventoryManager;
+
+  private final OccupancyIndex occupancyIndex;
+
+  private final ReplicaStalenessGuard replicaStalenessGuard;
+
+  private final BookingCache bookingCache;
+
+  private final ObjectProvider<BookingJournal> bookingJournal;
+
+  private final BookingIntervalIndex bookingIntervalIndex;
+
+  private final IndexSynchronizer indexSynchronizer;
+
+  private final DayLockManager dayLockManager;
+
+  private final EntityManager entityManager;
+
+  private final BookingMetrics bookingMetrics;
+
+  private final TransientFailureRetry transientFailureRetry;
+
+  private final ReservationEngine reservationEngine;
+
+  private final TransactionTemplate serializableTransaction;
+
+  private final TransactionTemplate readCommittedTransaction;
+
+  private final TransactionTemplate readOnlyTransaction;
+
+  public BookingService(BookingRepository bookingRepository, BookingDateRepository bookingDateRepository,
+                        InventoryDayRepository inventoryDayRepository, InventoryManager inventoryManager,
+                        OccupancyIndex occupancyIndex, ReplicaStalenessGuard replicaStalenessGuard,
+                        BookingCache bookingCache, ObjectProvider<BookingJournal> bookingJournal,
+                        BookingIntervalIndex bookingIntervalIndex, IndexSynchronizer indexSynchronizer,
+                        DayLockManager dayLockManager, EntityManager entityManager, BookingMetrics bookingMetrics,
+                        TransientFailureRetry transientFailureRetry, CampsiteConfiguration configuration,
+                        PlatformTransactionManager transactionManager) {
     this.bookingRepository = bookingRepository;
     this.bookingDateRepository = bookingDateRepository;
+    this.inventoryDayRepository = inventoryDayRepository;
+    this.inventoryManager = inventoryManager;
+    this.occupancyIndex = occupancyIndex;
+    this.replicaStalenessGuard = replicaStalenessGuard;
+    this.bookingCache = bookingCache;
+    this.bookingJournal = bookingJournal;
+    this.bookingIntervalIndex = bookingIntervalIndex;
+    this.indexSynchronizer = indexSynchronizer;
+    this.dayLockManager = dayLockManager;
+    this.entityManager = entityManager;
+    this.bookingMetrics = bookingMetrics;
+    this.transientFailureRetry = transientFailureRetry;
+    this.reservationEngine = configuration.getReservationEngine();
+    this.serializableTransaction = new TransactionTemplate(transactionManager);
+    this.serializableTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+    this.readCommittedTransaction = new TransactionTemplate(transactionManager);
+    this.readCommittedTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction.setReadOnly(true);
   }
 
-  @Transactional(isolation = Isolation.SERIALIZABLE)
+  /**
+   * Adds a booking to its campsite.
+   * <p>The conflicts are only detected between the bookings of the same campsite. With the
+   * {@link ReservationEngine#DATABASE} engine, the booking dates are locked in memory by the {@link DayLockManager},
+   * then in the database in a serializable transaction. With the {@link ReservationEngine#COMPARE_AND_SET} engine, the
+   * booking dates are first claimed in the {@link OccupancyIndex}, and the claim is released if the booking cannot be
+   * persisted. With the {@link ReservationEngine#INVENTORY} engine, the days of the booking are claimed in the
+   * {@link InventoryDay} table by 1 conditional update, in a read committed transaction.</p>
+   * <p>The transient failures are retried (see {@link TransientFailureRetry}).</p>
+   */
   public BookingEntity add(BookingEntity bookingEntity) {
     log.info("Adding {}", bookingEntity);
-    return privateAdd(bookingEntity);
+    // The id and the version may be set by a failed attempt
+    final var id = bookingEntity.getId();
+    final var version = bookingEntity.getVersion();
+    final var addedBookingEntity = bookingMetrics.record("add", () -> transientFailureRetry.execute("add",
+        () -> engineAdd(bookingEntity),
+        () -> {
+          bookingEntity.setId(id);
+          bookingEntity.setVersion(version);
+        }));
+    replicaStalenessGuard.recordWrite(addedBookingEntity.getCampsiteId(), addedBookingEntity.getId());
+    bookingJournal.ifAvailable(journal -> journal.created(addedBookingEntity));
+    indexSynchronizer.committed(() -> bookingIntervalIndex.put(addedBookingEntity));
+    return addedBookingEntity;
+  }
+
+  private BookingEntity engineAdd(BookingEntity bookingEntity) {
+    switch (reservationEngine) {
+      case COMPARE_AND_SET:
+        return compareAndSetAdd(bookingEntity);
+      case INVENTORY:
+        return inventoryAdd(bookingEntity);
+      default:
+        return databaseAdd(bookingEntity);
+    }
+  }
+
+  private BookingEntity databaseAdd(BookingEntity bookingEntity) {
+    // The conflicting requests wait for each other before opening a transaction
+    try (var ignored = dayLockManager.lock(bookingEntity.getCampsiteId(),
+        bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate())) {
+      return serializableTransaction.execute(status -> {
+        final var addedBookingEntity = privateAdd(bookingEntity);
+        afterCommit(() -> indexSynchronizer.committed(BookingChecksum.of(addedBookingEntity),
+            () -> occupancyIndex.reserve(addedBookingEntity.getCampsiteId(),
+                addedBookingEntity.getArrivalDate(), addedBookingEntity.getDepartureDate())));
+        return addedBookingEntity;
+      });
+    }
+  }
+
+  private BookingEntity compareAndSetAdd(BookingEntity bookingEntity) {
+    final var campsiteId = bookingEntity.getCampsiteId();
+    final var arrivalDate = bookingEntity.getArrivalDate();
+    final var departureDate = bookingEntity.getDepartureDate();
+    if (!occupancyIndex.tryClaim(campsiteId, arrivalDate, departureDate)) {
+      throw notAvailable(arrivalDate, departureDate);
+    }
+    try {
+      return readCommittedTransaction.execute(status -> save(bookingEntity));
+    } catch (RuntimeException e) {
+      occupancyIndex.release(campsiteId, arrivalDate, departureDate);
+      throw e;
+    } finally {
+      // The claimed dates may have been read, even if the claim has been released
+      indexSynchronizer.incrementCalendarVersion();
+    }
+  }
+
+  private BookingEntity inventoryAdd(BookingEntity bookingEntity) {
+    inventoryManager.createDays(bookingEntity.getCampsiteId(),
+        bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate());
+    return readCommittedTransaction.execute(status -> {
+      final var addedBookingEntity = save(bookingEntity);
+      claim(addedBookingEntity);
+      afterCommit(() -> indexSynchronizer.committed(BookingChecksum.of(addedBookingEntity),
+          () -> occupancyIndex.reserve(addedBookingEntity.getCampsiteId(),
+              addedBookingEntity.getArrivalDate(), addedBookingEntity.getDepartureDate())));
+      return addedBookingEntity;
+    });
+  }
+
+  /**
+   * Claims the days of a booking in the {@link InventoryDay} table. The booking must have an id.
+   *
+   * @throws AlreadyBookedException if at least 1 day is not available: the transaction must be rolled back, to release
+   *     the days claimed by the booking.
+   */
+  private void claim(BookingEntity bookingEntity) {
+    final var campsiteId = bookingEntity.getCampsiteId();
+    final var arrivalDate = bookingEntity.getArrivalDate();
+    final var departureDate = bookingEntity.getDepartureDate();
+    // The claim waits for the transactions which are claiming the same days
+    final var claimedDays = bookingMetrics.recordLockWait(
+        () -> inventoryDayRepository.claim(bookingEntity.getId(), campsiteId, arrivalDate, departureDate));
+    if (claimedDays != bookingEntity.dayRange().length()) {
+      throw new AlreadyBookedException("Dates " + inventoryDayRepository.findAllDatesClaimedByOthersBetween(
+          campsiteId, arrivalDate, departureDate, bookingEntity.getId()) + " are not available");
+    }
   }
 
   private BookingEntity privateAdd(BookingEntity bookingEntity) {
-    // Retrieve dates that are potentially reserved by other bookings between the arrival and the departure dates
+    // Retrieve dates of the campsite that are potentially reserved by other bookings between the arrival and the
+    // departure dates. Only the rows of this campsite are locked.
     // Could throw CannotAcquireLockException
-    final var bookingDatesBetween = bookingDateRepository.findAllDatesBetween(
-        bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate());
-    final var bookingDates = convert(bookingDatesBetween);
+    final var bookingDates = bookingMetrics.recordLockWait(() -> convert(bookingDateRepository.findAllDatesBetween(
+        bookingEntity.getCampsiteId(), bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate())));
 
     // If the booking dates are available
     if (bookingDates.isEmpty()) {
@@ -51,59 +226,504 @@ public class BookingService {
   }
 
   private BookingEntity save(BookingEntity bookingEntity) {
-    log.error("Saving {}", bookingEntity);
+    log.debug("Saving {}", bookingEntity);
     insertArtificialDelayForTestsOnly();
-    // Could throw DataIntegrityViolationException (primary key constraint)
-    bookingDateRepository.saveAll(bookingEntity.bookingDates());
+    // The booking is saved first, so that its id is known when the booking dates are created
     // Could fail because of version update ObjectOptimisticLockingFailureException
     final var addedBookingEntity = bookingRepository.save(bookingEntity);
+    // The booking dates are new: they are inserted in a single JDBC batch when the transaction is flushed
+    // Could throw DataIntegrityViolationException (primary key constraint)
+    bookingDateRepository.saveAll(addedBookingEntity.bookingDates());
     log.info("Added {}", addedBookingEntity);
     return addedBookingEntity;
   }
 
-  @Transactional(isolation = Isolation.SERIALIZABLE)
+  /**
+   * Adds a batch of bookings to a campsite, in 1 transaction. The bookings which conflict with the existing bookings, or
+   * with a previous booking of the batch, are not added.
+   * <p>With the {@link ReservationEngine#DATABASE} engine, the whole date range of the batch is locked once, and the
+   * reserved dates are read with 1 select for update. With the {@link ReservationEngine#COMPARE_AND_SET} engine, the
+   * dates of each booking are claimed in the {@link OccupancyIndex}. The added bookings and their dates are inserted in
+   * JDBC batches.</p>
+   * <p>The transient failures are retried (see {@link TransientFailureRetry}).</p>
+   *
+   * @return the result of each booking, in the order of the batch.
+   */
+  public List<BatchAddResult> addAll(long campsiteId, List<BookingEntity> bookingEntities) {
+    log.info("Adding {} bookings to campsite {}", bookingEntities.size(), campsiteId);
+    if (bookingEntities.isEmpty()) {
+      return List.of();
+    }
+    bookingEntities.forEach(bookingEntity -> bookingEntity.setCampsiteId(campsiteId));
+    final var results = bookingMetrics.record("addAll", () -> transientFailureRetry.execute("addAll",
+        () -> engineAddAll(campsiteId, bookingEntities),
+        // The ids and the versions may be set by a failed attempt
+        () -> bookingEntities.forEach(bookingEntity -> {
+          bookingEntity.setId(0);
+          bookingEntity.setVersion(0);
+        })));
+    results.stream()
+        .filter(BatchAddResult::isAdded)
+        .forEach(result -> {
+          replicaStalenessGuard.recordWrite(campsiteId, result.getBookingEntity().getId());
+          bookingJournal.ifAvailable(journal -> journal.created(result.getBookingEntity()));
+          indexSynchronizer.committed(() -> bookingIntervalIndex.put(result.getBookingEntity()));
+        });
+    return results;
+  }
+
+  private List<BatchAddResult> engineAddAll(long campsiteId, List<BookingEntity> bookingEntities) {
+    switch (reservationEngine) {
+      case COMPARE_AND_SET:
+        return compareAndSetAddAll(campsiteId, bookingEntities);
+      case INVENTORY:
+        return inventoryAddAll(campsiteId, bookingEntities);
+      default:
+        return databaseAddAll(campsiteId, bookingEntities);
+    }
+  }
+
+  private List<BatchAddResult> databaseAddAll(long campsiteId, List<BookingEntity> bookingEntities) {
+    final var batchRange = batchRange(bookingEntities);
+    final var startInclusive = batchRange.startInclusive();
+    final var endExclusive = batchRange.endExclusive();
+    try (var ignored = dayLockManager.lock(campsiteId, startInclusive, endExclusive)) {
+      return serializableTransaction.execute(status -> {
+        final var reservedDays = new BitSet((int) batchRange.length());
+        bookingMetrics.recordLockWait(() -> convert(
+            bookingDateRepository.findAllDatesBetween(campsiteId, startInclusive, endExclusive)))
+            .forEach(date -> reservedDays.set((int) (date.toEpochDay() - batchRange.getStartEpochDay())));
+        final var acceptedBookingEntities = new ArrayList<BookingEntity>(bookingEntities.size());
+        final var conflicts = selectAvailable(bookingEntities, batchRange, reservedDays, acceptedBookingEntities);
+        final var addedBookingEntities = saveAll(acceptedBookingEntities);
+        afterCommit(() -> indexSynchronizer.committed(checksum(addedBookingEntities),
+            () -> addedBookingEntities.forEach(bookingEntity -> occupancyIndex.reserve(campsiteId,
+                bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()))));
+        return results(conflicts, addedBookingEntities);
+      });
+    }
+  }
+
+  private List<BatchAddResult> inventoryAddAll(long campsiteId, List<BookingEntity> bookingEntities) {
+    final var batchRange = batchRange(bookingEntities);
+    final var startInclusive = batchRange.startInclusive();
+    final var endExclusive = batchRange.endExclusive();
+    inventoryManager.createDays(campsiteId, startInclusive, endExclusive);
+    return readCommittedTransaction.execute(status -> {
+      // The days are locked, so that the claims of the batch cannot fail
+      final var reservedDays = new BitSet((int) batchRange.length());
+      bookingMetrics.recordLockWait(
+          () -> inventoryDayRepository.findAllDaysBetween(campsiteId, startInclusive, endExclusive)).stream()
+          .filter(inventoryDay -> inventoryDay.getBookingId() != null)
+          .forEach(inventoryDay -> reservedDays.set(
+              (int) (inventoryDay.getDate().toEpochDay() - batchRange.getStartEpochDay())));
+      final var acceptedBookingEntities = new ArrayList<BookingEntity>(bookingEntities.size());
+      final var conflicts = selectAvailable(bookingEntities, batchRange, reservedDays, acceptedBookingEntities);
+      final var addedBookingEntities = saveAll(acceptedBookingEntities);
+      addedBookingEntities.forEach(this::claim);
+      afterCommit(() -> indexSynchronizer.committed(checksum(addedBookingEntities),
+          () -> addedBookingEntities.forEach(bookingEntity -> occupancyIndex.reserve(campsiteId,
+              bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()))));
+      return results(conflicts, addedBookingEntities);
+    });
+  }
+
+  /**
+   * Selects the bookings of a batch whose dates are not reserved, in the order of the batch: the dates of a selected
+   * booking are then reserved for the next bookings.
+   * <p>The bit {@code i} of reservedDays is set if the day {@code i} of the batch range is reserved: the days of the
+   * bookings are checked without creating dates, except for the message of a conflict.</p>
+   *
+   * @return the conflict of each booking of the batch, null if the booking is selected.
+   */
+  private static String[] selectAvailable(List<BookingEntity> bookingEntities, DayRange batchRange,
+                                          BitSet reservedDays, List<BookingEntity> acceptedBookingEntities) {
+    final var conflicts = new String[bookingEntities.size()];
+    for (var i = 0; i < bookingEntities.size(); i++) {
+      final var bookingEntity = bookingEntities.get(i);
+      final var dayRange = bookingEntity.dayRange();
+      final var fromIndex = (int) (dayRange.getStartEpochDay() - batchRange.getStartEpochDay());
+      final var toIndex = (int) (dayRange.getEndEpochDay() - batchRange.getStartEpochDay());
+      final var firstReservedIndex = reservedDays.nextSetBit(fromIndex);
+      if (firstReservedIndex < 0 || firstReservedIndex >= toIndex) {
+        // The next bookings of the batch cannot reserve these dates
+        reservedDays.set(fromIndex, toIndex);
+        acceptedBookingEntities.add(bookingEntity);
+      } else {
+        final var unavailableDates = new ArrayList<LocalDate>();
+        var index = firstReservedIndex;
+        while (index >= 0 && index < toIndex) {
+          unavailableDates.add(LocalDate.ofEpochDay(batchRange.getStartEpochDay() + index));
+          index = reservedDays.nextSetBit(index + 1);
+        }
+        conflicts[i] = "Dates " + unavailableDates + " are not available";
+      }
+    }
+    return conflicts;
+  }
+
+  /**
+   * Returns the smallest range which contains the days of all the bookings of a batch.
+   */
+  private static DayRange batchRange(List<BookingEntity> bookingEntities) {
+    return bookingEntities.stream()
+        .map(BookingEntity::dayRange)
+        .reduce(DayRange::span)
+        .orElseThrow();
+  }
+
+  private List<BatchAddResult> compareAndSetAddAll(long campsiteId, List<BookingEntity> bookingEntities) {
+    final var conflicts = new String[bookingEntities.size()];
+    final var acceptedBookingEntities = new ArrayList<BookingEntity>(bookingEntities.size());
+    for (var i = 0; i < bookingEntities.size(); i++) {
+      final var bookingEntity = bookingEntities.get(i);
+      // The dates claimed by the previous bookings of the batch cannot be claimed again
+      if (occupancyIndex.tryClaim(campsiteId, bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate())) {
+        acceptedBookingEntities.add(bookingEntity);
+      } else {
+        conflicts[i] = notAvailable(bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()).getMessage();
+      }
+    }
+    try {
+      return results(conflicts, readCommittedTransaction.execute(status -> saveAll(acceptedBookingEntities)));
+    } catch (RuntimeException e) {
+      acceptedBookingEntities.forEach(bookingEntity -> occupancyIndex.release(campsiteId,
+          bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()));
+      throw e;
+    } finally {
+      // The claimed dates may have been read, even if the claims have been released
+      indexSynchronizer.incrementCalendarVersion();
+    }
+  }
+
+  private List<BookingEntity> saveAll(List<BookingEntity> bookingEntities) {
+    log.debug("Saving {}", bookingEntities);
+    insertArtificialDelayForTestsOnly();
+    // The ids are allocated when the bookings are persisted, before the booking dates are created
+    final var addedBookingEntities = bookingRepository.saveAll(bookingEntities);
+    // The bookings and the booking dates are inserted in JDBC batches when the transaction is flushed
+    // Could throw DataIntegrityViolationException (primary key constraint)
+    bookingDateRepository.saveAll(addedBookingEntities.stream()
+        .flatMap(bookingEntity -> bookingEntity.bookingDates().stream())
+        .collect(Collectors.toList()));
+    log.info("Added {} bookings", addedBookingEntities.size());
+    return addedBookingEntities;
+  }
+
+  /**
+   * Returns the result of each booking of a batch: the conflict if any, or else the next added booking.
+   */
+  private static List<BatchAddResult> results(String[] conflicts, List<BookingEntity> addedBookingEntities) {
+    final var added = addedBookingEntities.iterator();
+    return Arrays.stream(conflicts)
+        .map(conflict -> conflict == null ? BatchAddResult.added(added.next()) : BatchAddResult.conflict(conflict))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Updates a booking.
+   * <p>The conflicts are detected like in {@link #add(BookingEntity)}, the dates of the old booking being considered
+   * available. The booking stays on the campsite of the old booking.</p>
+   */
   public BookingEntity update(BookingEntity oldBookingEntity, BookingEntity newBookingEntity) {
     log.info("Updating {} with {}", oldBookingEntity, newBookingEntity);
+    newBookingEntity.setCampsiteId(oldBookingEntity.getCampsiteId());
+    final BookingEntity updatedBookingEntity;
+    try {
+      // The id and the version of the new booking are set at each attempt. The booking is invalidated once committed
+      updatedBookingEntity = bookingMetrics.record("update", () -> transientFailureRetry.execute("update",
+          () -> engineUpdate(oldBookingEntity, newBookingEntity)));
+    } catch (RuntimeException e) {
+      // The old booking may be stale (optimistic locking failure)
+      bookingCache.invalidate(oldBookingEntity.getId());
+      throw e;
+    }
+    replicaStalenessGuard.recordWrite(updatedBookingEntity.getCampsiteId(), updatedBookingEntity.getId());
+    bookingJournal.ifAvailable(journal -> journal.updated(updatedBookingEntity));
+    indexSynchronizer.committed(() -> bookingIntervalIndex.put(updatedBookingEntity));
+    return updatedBookingEntity;
+  }
+
+  private BookingEntity engineUpdate(BookingEntity oldBookingEntity, BookingEntity newBookingEntity) {
+    switch (reservationEngine) {
+      case COMPARE_AND_SET:
+        return compareAndSetUpdate(oldBookingEntity, newBookingEntity);
+      case INVENTORY:
+        return inventoryUpdate(oldBookingEntity, newBookingEntity);
+      default:
+        return databaseUpdate(oldBookingEntity, newBookingEntity);
+    }
+  }
+
+  private BookingEntity databaseUpdate(BookingEntity oldBookingEntity, BookingEntity newBookingEntity) {
+    // The dates of the old booking are deleted, and the dates of the new booking are inserted
+    try (var ignored = dayLockManager.lock(oldBookingEntity.getCampsiteId(),
+        oldBookingEntity.getArrivalDate(), oldBookingEntity.getDepartureDate(),
+        newBookingEntity.getArrivalDate(), newBookingEntity.getDepartureDate())) {
+      return serializableTransaction.execute(status -> {
+        prepareUpdate(oldBookingEntity, newBookingEntity);
+
+        // Add the modified booking (this is possible because the booking dates have been deleted
+        final var updatedBookingEntity = privateAdd(newBookingEntity);
+        afterCommit(() -> updated(oldBookingEntity, updatedBookingEntity));
+        return updatedBookingEntity;
+      });
+    }
+  }
+
+  private BookingEntity compareAndSetUpdate(BookingEntity oldBookingEntity, BookingEntity newBookingEntity) {
+    final var campsiteId = oldBookingEntity.getCampsiteId();
+    final var oldArrivalDate = oldBookingEntity.getArrivalDate();
+    final var oldDepartureDate = oldBookingEntity.getDepartureDate();
+    final var newArrivalDate = newBookingEntity.getArrivalDate();
+    final var newDepartureDate = newBookingEntity.getDepartureDate();
+    // Only claim the dates which are not already reserved by the old booking
+    if (!occupancyIndex.tryClaim(campsiteId, newArrivalDate, newDepartureDate, oldArrivalDate, oldDepartureDate)) {
+      throw notAvailable(newArrivalDate, newDepartureDate);
+    }
+    final BookingEntity updatedBookingEntity;
+    try {
+      updatedBookingEntity = readCommittedTransaction.execute(status -> {
+        prepareUpdate(oldBookingEntity, newBookingEntity);
+        return save(newBookingEntity);
+      });
+    } catch (RuntimeException e) {
+      occupancyIndex.releaseExcept(campsiteId, newArrivalDate, newDepartureDate, oldArrivalDate, oldDepartureDate);
+      indexSynchronizer.incrementCalendarVersion();
+      throw e;
+    }
+    occupancyIndex.releaseExcept(campsiteId, oldArrivalDate, oldDepartureDate, newArrivalDate, newDepartureDate);
+    // Before the new calendar version, so that the old booking is not served with it
+    bookingCache.invalidate(oldBookingEntity.getId());
+    indexSynchronizer.incrementCalendarVersion();
+    return updatedBookingEntity;
+  }
+
+  private BookingEntity inventoryUpdate(BookingEntity oldBookingEntity, BookingEntity newBookingEntity) {
+    inventoryManager.createDays(oldBookingEntity.getCampsiteId(),
+        newBookingEntity.getArrivalDate(), newBookingEntity.getDepartureDate());
+    return readCommittedTransaction.execute(status -> {
+      prepareUpdate(oldBookingEntity, newBookingEntity);
+      // The days of the old booking can be claimed again by the new booking
+      inventoryDayRepository.releaseAll(oldBookingEntity.getId());
+      final var updatedBookingEntity = save(newBookingEntity);
+      claim(updatedBookingEntity);
+      afterCommit(() -> updated(oldBookingEntity, updatedBookingEntity));
+      return updatedBookingEntity;
+    });
+  }
+
+  /**
+   * Invalidates the old booking, then moves its dates in the {@link OccupancyIndex}, once the update is committed: the
+   * old booking is not served with the new calendar version.
+   */
+  private void updated(BookingEntity oldBookingEntity, BookingEntity updatedBookingEntity) {
+    bookingCache.invalidate(oldBookingEntity.getId());
+    indexSynchronizer.committed(checksum(oldBookingEntity, updatedBookingEntity),
+        () -> occupancyIndex.move(oldBookingEntity.getCampsiteId(),
+            oldBookingEntity.getArrivalDate(), oldBookingEntity.getDepartureDate(),
+            updatedBookingEntity.getArrivalDate(), updatedBookingEntity.getDepartureDate()));
+  }
 
+  private void prepareUpdate(BookingEntity oldBookingEntity, BookingEntity newBookingEntity) {
     // Set the id and the version of the modified booking
     newBookingEntity.setId(oldBookingEntity.getId());
     newBookingEntity.setVersion(oldBookingEntity.getVersion());
 
     // First delete the booking dates of the booking that will be modified
-    bookingDateRepository.deleteAll(oldBookingEntity.bookingDates());
+    deleteBookingDates(oldBookingEntity);
+  }
 
-    // Add the modified booking (this is possible because the booking dates have been deleted
-    return privateAdd(newBookingEntity);
+  private void deleteBookingDates(BookingEntity bookingEntity) {
+    bookingDateRepository.deleteAllDatesOfBooking(bookingEntity.getId(), bookingEntity.getCampsiteId(),
+        bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate());
   }
 
-  @Transactional(readOnly = true)
+  /**
+   * Returns the booking with the given id from the {@link BookingCache}, or else from the read replica if any (see
+   * {@link ReplicaStalenessGuard}). No transaction is started if the booking is cached.
+   */
   public Optional<BookingEntity> findById(long id) {
     log.info("Find booking with id {}", id);
-    return bookingRepository.findById(id);
+    return bookingCache.get(id, key -> readOnlyTransaction.execute(status -> {
+      replicaStalenessGuard.beforeReadBooking(key);
+      return bookingRepository.findById(key);
+    }));
+  }
+
+  /**
+   * Returns the booking with the given id, like {@link #findById(long)}, with at least the given version: a cached
+   * booking updated since by another instance is reloaded.
+   */
+  public Optional<BookingEntity> findById(long id, long minVersion) {
+    final var bookingEntity = findById(id);
+    if (bookingEntity.isPresent() && bookingEntity.get().getVersion() < minVersion) {
+      bookingCache.invalidate(id);
+      return findById(id);
+    }
+    return bookingEntity;
+  }
+
+  /**
+   * Returns the version of the booking of a campsite with the given id, read from the read replica if any (see
+   * {@link ReplicaStalenessGuard}), without reading the booking itself.
+   */
+  public Optional<Long> findVersion(long campsiteId, long id) {
+    log.info("Find version of booking with id {} of campsite {}", id, campsiteId);
+    return readOnlyTransaction.execute(status -> {
+      replicaStalenessGuard.beforeReadBooking(id);
+      return bookingRepository.findVersion(id, campsiteId);
+    });
   }
 
+  /**
+   * Returns the booking with the given id from the {@link BookingCache}, or else from the primary database, before
+   * being updated. A stale booking (updated by another instance) is rejected by the update.
+   */
+  public Optional<BookingEntity> findCurrentById(long id) {
+    log.info("Find current booking with id {}", id);
+    return bookingCache.get(id, key -> readCommittedTransaction.execute(status -> bookingRepository.findById(key)));
+  }
+
+  /**
+   * Deletes the booking of a campsite with the given id.
+   *
+   * @throws EmptyResultDataAccessException if the campsite has no booking with this id.
+   */
   @Transactional
-  public void deleteById(long id) {
-    log.info("Deleting booking with id {}", id);
-    findById(id).ifPresent(booking ->
-        bookingDateRepository.deleteAll(booking.bookingDates()));
-    bookingRepository.deleteById(id);
+  public void deleteById(long campsiteId, long id) {
+    log.info("Deleting booking with id {} of campsite {}", id, campsiteId);
+    bookingMetrics.record("delete", () -> {
+      // Not read from the cache: the dates of the booking must be up to date
+      final var booking = bookingRepository.findById(id)
+          .filter(bookingEntity -> bookingEntity.getCampsiteId() == campsiteId)
+          .orElseThrow(() -> new EmptyResultDataAccessException(
+              "No booking with id " + id + " on campsite " + campsiteId, 1));
+      deleteBookingDates(booking);
+      if (reservationEngine == ReservationEngine.INVENTORY) {
+        inventoryDayRepository.releaseAll(id);
+      }
+      afterCommit(() -> {
+        replicaStalenessGuard.recordWrite(campsiteId, id);
+        bookingCache.invalidate(id);
+        bookingJournal.ifAvailable(journal -> journal.cancelled(booking));
+        indexSynchronizer.committed(() -> bookingIntervalIndex.remove(campsiteId, id));
+        indexSynchronizer.committed(BookingChecksum.EMPTY.minus(BookingChecksum.of(booking)),
+            () -> occupancyIndex.release(campsiteId, booking.getArrivalDate(), booking.getDepartureDate()));
+      });
+      bookingRepository.deleteById(id);
+    });
   }
 
   @Transactional(readOnly = true)
   public List<BookingEntity> findAll() {
     log.info("Find all booking");
+    replicaStalenessGuard.beforeReadAll();
     return bookingRepository.findAll(Sort.by("arrivalDate"));
   }
 
+  /**
+   * Calls the action for each booking of a campsite arriving between startInclusive and endExclusive, sorted by arrival
+   * date and id.
+   * <p>The bookings are read from a database cursor, and detached once processed: the memory used does not depend on
+   * the number of bookings.</p>
+   */
+  @Transactional(readOnly = true)
+  public void forEach(long campsiteId, LocalDate startInclusive, LocalDate endExclusive,
+                      Consumer<BookingEntity> action) {
+    log.info("For each booking of campsite {} arriving between {} and {}", campsiteId, startInclusive, endExclusive);
+    replicaStalenessGuard.beforeReadCampsite(campsiteId);
+    try (var bookingEntities = bookingRepository.streamAllArrivingBetween(campsiteId, startInclusive, endExclusive)) {
+      bookingEntities.forEach(bookingEntity -> {
+        action.accept(bookingEntity);
+        entityManager.detach(bookingEntity);
+      });
+    }
+  }
+
+  /**
+   * Returns at most limit bookings of a campsite arriving between startInclusive and endExclusive, sorted by arrival
+   * date and id, which are after the booking (afterArrivalDate, afterId).
+   */
   @Transactional(readOnly = true)
-  public List<LocalDate> getAvailabilities(LocalDate startInclusive, LocalDate endExclusive) {
-    log.info("Get availabilities between {} and {}", startInclusive, endExclusive);
-    final var availableDates = Utils.datesBetween(startInclusive, endExclusive);
-    final var reservedDates = convert(
-        bookingDateRepository.fastFindAllDatesBetween(startInclusive, endExclusive));
-    availableDates.removeAll(reservedDates);
-    return availableDates;
+  public List<BookingEntity> findPage(long campsiteId, LocalDate startInclusive, LocalDate endExclusive,
+                                      LocalDate afterArrivalDate, long afterId, int limit) {
+    log.info("Find {} bookings of campsite {} arriving between {} and {} after ({}, {})",
+        limit, campsiteId, startInclusive, endExclusive, afterArrivalDate, afterId);
+    replicaStalenessGuard.beforeReadCampsite(campsiteId);
+    return bookingRepository.findAllArrivingBetweenAfter(
+        campsiteId, startInclusive, endExclusive, afterArrivalDate, afterId, PageRequest.of(0, limit));
+  }
+
+  /**
+   * Returns the bookings of a campsite whose stay overlaps the dates between startInclusive and endExclusive, sorted by
+   * arrival date and id.
+   * <p>The ids of the bookings are found in the {@link BookingIntervalIndex}, and the bookings are read by id, by
+   * blocks of {@value #MAX_IDS_PER_QUERY}: the bookings outside of the date range are not read.</p>
+   */
+  @Transactional(readOnly = true)
+  public List<BookingEntity> findOverlapping(long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    log.info("Find bookings of campsite {} overlapping {} and {}", campsiteId, startInclusive, endExclusive);
+    final var ids = bookingIntervalIndex.overlapping(campsiteId, startInclusive, endExclusive);
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+    replicaStalenessGuard.beforeReadCampsite(campsiteId);
+    // The dates are checked again, in case the bookings have been updated since the lookup
+    return Lists.partition(ids, MAX_IDS_PER_QUERY).stream()
+        .flatMap(someIds -> bookingRepository.findAllOverlapping(someIds, startInclusive, endExclusive).stream())
+        .sorted(Comparator.comparing(BookingEntity::getArrivalDate).thenComparingLong(BookingEntity::getId))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Returns the available dates of a campsite between startInclusive and endExclusive.
+   * <p>The availabilities are computed from the {@link OccupancyIndex}, the database is not queried.</p>
+   */
+  public List<LocalDate> getAvailabilities(long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    log.info("Get availabilities of campsite {} between {} and {}", campsiteId, startInclusive, endExclusive);
+    return bookingMetrics.record("availabilities",
+        () -> occupancyIndex.availabilities(campsiteId, startInclusive, endExclusive));
+  }
+
+  /**
+   * Calls the action with the first date (included) and the last date (excluded) of each range of consecutive available
+   * dates of a campsite between startInclusive and endExclusive.
+   */
+  public void forEachAvailabilityRange(long campsiteId, LocalDate startInclusive, LocalDate endExclusive,
+                                       BiConsumer<LocalDate, LocalDate> action) {
+    log.info("Get availability ranges of campsite {} between {} and {}", campsiteId, startInclusive, endExclusive);
+    occupancyIndex.forEachFreeRun(campsiteId, startInclusive, endExclusive,
+        (start, end) -> action.accept(LocalDate.ofEpochDay(start), LocalDate.ofEpochDay(end)));
+  }
+
+  /**
+   * Returns the bitmap of the available dates of a campsite between startInclusive and endExclusive (see
+   * {@link OccupancyIndex#freeBitmap(long, LocalDate, LocalDate)}).
+   */
+  public byte[] getAvailabilityBitmap(long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    log.info("Get availability bitmap of campsite {} between {} and {}", campsiteId, startInclusive, endExclusive);
+    return occupancyIndex.freeBitmap(campsiteId, startInclusive, endExclusive);
+  }
+
+  /**
+   * Returns the first dates (at most limit) between startInclusive and endExclusive from which a campsite is available
+   * for length consecutive days, ending before endExclusive (see
+   * {@link OccupancyIndex#windowStarts(long, LocalDate, LocalDate, int, int)}).
+   */
+  public List<LocalDate> getAvailabilityWindows(long campsiteId, LocalDate startInclusive, LocalDate endExclusive,
+                                                int length, int limit) {
+    log.info("Get {} availability windows of {} days of campsite {} between {} and {}",
+        limit, length, campsiteId, startInclusive, endExclusive);
+    return bookingMetrics.record("windows",
+        () -> occupancyIndex.windowStarts(campsiteId, startInclusive, endExclusive, length, limit));
+  }
+
+  /**
+   * Returns the version of the calendar (see {@link IndexSynchronizer#getCalendarVersion()}).
+   */
+  public String getCalendarVersion() {
+    return indexSynchronizer.getCalendarVersion();
   }
 
   @VisibleForTesting
@@ -112,6 +732,39 @@ public class BookingService {
     // It can be use in unit test to insert an artificial delay for concurrency testing.
   }
 
+  /**
+   * Executes the action after the commit of the current transaction (nothing is executed on rollback).
+   */
+  private void afterCommit(Runnable action) {
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        action.run();
+      }
+    });
+  }
+
+  /**
+   * Returns the checksum of added bookings, once committed.
+   */
+  private static BookingChecksum checksum(List<BookingEntity> addedBookingEntities) {
+    return addedBookingEntities.stream()
+        .map(BookingChecksum::of)
+        .reduce(BookingChecksum.EMPTY, BookingChecksum::plus);
+  }
+
+  /**
+   * Returns the change of the checksum of an updated booking, once committed.
+   */
+  private static BookingChecksum checksum(BookingEntity oldBookingEntity, BookingEntity updatedBookingEntity) {
+    return BookingChecksum.of(updatedBookingEntity).minus(BookingChecksum.of(oldBookingEntity));
+  }
+
+  private static AlreadyBookedException notAvailable(LocalDate startInclusive, LocalDate endExclusive) {
+    return new AlreadyBookedException(
+        "Dates between " + startInclusive + " and " + endExclusive + " are not available");
+  }
+
   private List<LocalDate> convert(Stream<BookingDate> bookingDateStream) {
     return bookingDateStream
         .map(BookingDate::getDate)
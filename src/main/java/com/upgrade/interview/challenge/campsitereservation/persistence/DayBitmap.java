@@ -0,0 +1,409 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bitmap of the reserved dates of a campsite, keyed by epoch-day: the bit {@code d % 64} of the word {@code d / 64} is
+ * set when the epoch-day {@code d} is reserved. Only the words between the first and the last reserved dates are
+ * allocated.
+ * <p>The words are updated with compare-and-set, so that dates can be claimed concurrently without locking (see
+ * {@link #tryClaim(LocalDate, LocalDate)}). The read-write lock only protects the growth of the bitmap: the updates
+ * hold the read lock, and the bitmap is reallocated while holding the write lock.</p>
+ */
+final class DayBitmap {
+
+  private static final int WORD_SIZE = Long.SIZE;
+
+  static final int MAX_WINDOW_LENGTH = WORD_SIZE;
+
+  // Initial capacity of the list of the available dates: the list grows with the dates found, not with the range
+  private static final int INITIAL_AVAILABILITIES_CAPACITY = 366;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  // Absolute number of the first word of the bitmap (the word n covers the epoch-days [n * 64, n * 64 + 64[)
+  private long firstWord;
+
+  private AtomicLongArray words = new AtomicLongArray(0);
+
+  /**
+   * Marks the dates between startInclusive and endExclusive as reserved.
+   */
+  void reserve(LocalDate startInclusive, LocalDate endExclusive) {
+    final var start = startInclusive.toEpochDay();
+    final var end = endExclusive.toEpochDay();
+    ensureCapacity(start, end);
+    lock.readLock().lock();
+    try {
+      setBits(start, end);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Marks the dates between startInclusive and endExclusive as available.
+   */
+  void release(LocalDate startInclusive, LocalDate endExclusive) {
+    lock.readLock().lock();
+    try {
+      clearBits(startInclusive.toEpochDay(), endExclusive.toEpochDay());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Marks the dates between startInclusive and endExclusive as available, except the dates between keptStartInclusive
+   * and keptEndExclusive.
+   */
+  void releaseExcept(LocalDate startInclusive, LocalDate endExclusive,
+                            LocalDate keptStartInclusive, LocalDate keptEndExclusive) {
+    release(startInclusive, min(endExclusive, keptStartInclusive));
+    release(max(startInclusive, keptEndExclusive), endExclusive);
+  }
+
+  /**
+   * Releases the dates of an old booking and reserves the dates of the new booking.
+   * <p>The new dates are reserved before the old ones are released, so that the dates common to both bookings are
+   * never seen available.</p>
+   */
+  void move(LocalDate oldStartInclusive, LocalDate oldEndExclusive,
+                   LocalDate newStartInclusive, LocalDate newEndExclusive) {
+    reserve(newStartInclusive, newEndExclusive);
+    releaseExcept(oldStartInclusive, oldEndExclusive, newStartInclusive, newEndExclusive);
+  }
+
+  /**
+   * Atomically claims the dates between startInclusive and endExclusive.
+   * <p>Each word is claimed with a compare-and-set. If a date is already reserved, the words already claimed are
+   * released.</p>
+   *
+   * @return true if all the dates have been claimed, false if at least 1 date is already reserved.
+   */
+  boolean tryClaim(LocalDate startInclusive, LocalDate endExclusive) {
+    final var start = startInclusive.toEpochDay();
+    final var end = endExclusive.toEpochDay();
+    if (start >= end) {
+      return true;
+    }
+    ensureCapacity(start, end);
+    lock.readLock().lock();
+    try {
+      for (var day = start; day < end; ) {
+        final var wordFirstDay = Math.floorDiv(day, WORD_SIZE) * WORD_SIZE;
+        final var wordEndDay = Math.min(end, wordFirstDay + WORD_SIZE);
+        if (!compareAndSetBits(index(wordFirstDay), mask(day - wordFirstDay, wordEndDay - wordFirstDay))) {
+          clearBits(start, day);
+          return false;
+        }
+        day = wordEndDay;
+      }
+      return true;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Atomically claims the dates between startInclusive and endExclusive which are not between ownedStartInclusive
+   * and ownedEndExclusive (these dates are already reserved by the caller).
+   *
+   * @return true if all the dates have been claimed, false if at least 1 date is already reserved.
+   */
+  boolean tryClaim(LocalDate startInclusive, LocalDate endExclusive,
+                          LocalDate ownedStartInclusive, LocalDate ownedEndExclusive) {
+    final var firstEnd = min(endExclusive, ownedStartInclusive);
+    if (!tryClaim(startInclusive, firstEnd)) {
+      return false;
+    }
+    if (!tryClaim(max(startInclusive, ownedEndExclusive), endExclusive)) {
+      release(startInclusive, firstEnd);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the list of the available dates between startInclusive and endExclusive.
+   * <p>The bitmap is scanned word by word: only the available dates are visited.</p>
+   */
+  List<LocalDate> availabilities(LocalDate startInclusive, LocalDate endExclusive) {
+    final var start = startInclusive.toEpochDay();
+    final var end = endExclusive.toEpochDay();
+    if (start >= end) {
+      return new ArrayList<>();
+    }
+    final List<LocalDate> availableDates = new ArrayList<>((int) Math.min(end - start,
+        INITIAL_AVAILABILITIES_CAPACITY));
+    lock.readLock().lock();
+    try {
+      var day = start;
+      while (day < end) {
+        final var wordFirstDay = Math.floorDiv(day, WORD_SIZE) * WORD_SIZE;
+        final var wordEndDay = Math.min(end, wordFirstDay + WORD_SIZE);
+        var available = ~word(wordFirstDay) & mask(day - wordFirstDay, wordEndDay - wordFirstDay);
+        while (available != 0) {
+          availableDates.add(LocalDate.ofEpochDay(wordFirstDay + Long.numberOfTrailingZeros(available)));
+          available &= available - 1;
+        }
+        day = wordEndDay;
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return availableDates;
+  }
+
+  /**
+   * Calls the consumer for each run of consecutive available dates between startInclusive and endExclusive.
+   * <p>The bitmap is scanned word by word: the bounds of the runs are found with {@link Long#numberOfTrailingZeros},
+   * without visiting each date.</p>
+   */
+  void forEachFreeRun(LocalDate startInclusive, LocalDate endExclusive, OccupancyIndex.RunConsumer consumer) {
+    final var start = startInclusive.toEpochDay();
+    final var end = endExclusive.toEpochDay();
+    // Start of the current run of available dates, or Long.MIN_VALUE if the current date is reserved
+    var runStart = Long.MIN_VALUE;
+    lock.readLock().lock();
+    try {
+      for (var day = start; day < end; ) {
+        final var wordFirstDay = Math.floorDiv(day, WORD_SIZE) * WORD_SIZE;
+        final var wordEndDay = Math.min(end, wordFirstDay + WORD_SIZE);
+        final var mask = mask(day - wordFirstDay, wordEndDay - wordFirstDay);
+        final var available = ~word(wordFirstDay) & mask;
+        final var reserved = ~available & mask;
+        var bit = day - wordFirstDay;
+        while (bit < wordEndDay - wordFirstDay) {
+          // Look for the next bound of a run in the rest of the word
+          final var bounds = (runStart == Long.MIN_VALUE ? available : reserved) & (-1L << bit);
+          if (bounds == 0) {
+            break;
+          }
+          bit = Long.numberOfTrailingZeros(bounds);
+          if (runStart == Long.MIN_VALUE) {
+            runStart = wordFirstDay + bit;
+          } else {
+            consumer.accept(runStart, wordFirstDay + bit);
+            runStart = Long.MIN_VALUE;
+          }
+        }
+        day = wordEndDay;
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    if (runStart != Long.MIN_VALUE) {
+      consumer.accept(runStart, end);
+    }
+  }
+
+  /**
+   * Returns the bitmap of the available dates between startInclusive and endExclusive: the bit {@code i % 8} of the
+   * byte {@code i / 8} is set when the date startInclusive + i is available (least significant bit first).
+   */
+  byte[] freeBitmap(LocalDate startInclusive, LocalDate endExclusive) {
+    final var start = startInclusive.toEpochDay();
+    final var length = Math.max(endExclusive.toEpochDay() - start, 0);
+    final var bitmap = new byte[Math.toIntExact((length + Byte.SIZE - 1) / Byte.SIZE)];
+    lock.readLock().lock();
+    try {
+      // 64 dates at a time
+      for (var offset = 0L; offset < length; offset += WORD_SIZE) {
+        var available = ~window(start + offset);
+        if (length - offset < WORD_SIZE) {
+          available &= mask(0, length - offset);
+        }
+        final var firstByte = (int) (offset / Byte.SIZE);
+        for (var i = 0; i < Long.BYTES && firstByte + i < bitmap.length; i++) {
+          bitmap[firstByte + i] = (byte) (available >>> (i * Byte.SIZE));
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return bitmap;
+  }
+
+  /**
+   * Returns the first dates (at most limit) between startInclusive and endExclusive which start a window of length
+   * consecutive available dates, ending before endExclusive, with 1 <= length <= {@value #MAX_WINDOW_LENGTH}.
+   * <p>The window starts are computed 64 dates at a time with a bit-parallel shift-and of the available dates of the
+   * 64 dates and of the 64 next dates, in log2(length) steps.</p>
+   */
+  List<LocalDate> windowStarts(LocalDate startInclusive, LocalDate endExclusive, int length, int limit) {
+    if (length < 1 || length > MAX_WINDOW_LENGTH) {
+      throw new IllegalArgumentException("Window length " + length + " should be between 1 and " + MAX_WINDOW_LENGTH);
+    }
+    final var start = startInclusive.toEpochDay();
+    final var end = endExclusive.toEpochDay();
+    // The windows start before lastStart (excluded)
+    final var lastStart = end - length + 1;
+    final List<LocalDate> windowStarts = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      for (var first = start; first < lastStart && windowStarts.size() < limit; first += WORD_SIZE) {
+        // Available dates from first (low) and from first + 64 (high), the dates after endExclusive being unavailable
+        var low = ~window(first) & prefix(end - first);
+        var high = ~window(first + WORD_SIZE) & prefix(end - first - WORD_SIZE);
+        // After each step, the bit i is set when the covered dates from first + i are available
+        for (var covered = 1; covered < length; ) {
+          final var shift = Math.min(covered, length - covered);
+          low &= (low >>> shift) | (high << (WORD_SIZE - shift));
+          high &= high >>> shift;
+          covered += shift;
+        }
+        while (low != 0 && windowStarts.size() < limit) {
+          windowStarts.add(LocalDate.ofEpochDay(first + Long.numberOfTrailingZeros(low)));
+          low &= low - 1;
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return windowStarts;
+  }
+
+
+  private static LocalDate min(LocalDate date1, LocalDate date2) {
+    return date1.isBefore(date2) ? date1 : date2;
+  }
+
+  private static LocalDate max(LocalDate date1, LocalDate date2) {
+    return date1.isAfter(date2) ? date1 : date2;
+  }
+
+  /**
+   * Returns the index in the bitmap of the word starting at wordFirstDay, or -1 if the word is not allocated.
+   */
+  private int index(long wordFirstDay) {
+    final var index = wordFirstDay / WORD_SIZE - firstWord;
+    return index >= 0 && index < words.length() ? (int) index : -1;
+  }
+
+  private long word(long wordFirstDay) {
+    final var index = index(wordFirstDay);
+    return index >= 0 ? words.get(index) : 0L;
+  }
+
+  /**
+   * Returns the 64 bits of the epoch-days between firstDay (included) and firstDay + 64 (excluded).
+   */
+  private long window(long firstDay) {
+    final var wordFirstDay = Math.floorDiv(firstDay, WORD_SIZE) * WORD_SIZE;
+    final var shift = (int) (firstDay - wordFirstDay);
+    if (shift == 0) {
+      return word(wordFirstDay);
+    }
+    return (word(wordFirstDay) >>> shift) | (word(wordFirstDay + WORD_SIZE) << (WORD_SIZE - shift));
+  }
+
+  /**
+   * Returns a mask with the bits fromBit (included) to toBit (excluded) set, with 0 <= fromBit < toBit <= 64.
+   */
+  private static long mask(long fromBit, long toBit) {
+    return (-1L >>> (WORD_SIZE - (toBit - fromBit))) << fromBit;
+  }
+
+  /**
+   * Returns a mask with the first bits set: none if bits <= 0, all of them if bits >= 64.
+   */
+  private static long prefix(long bits) {
+    if (bits <= 0) {
+      return 0L;
+    }
+    return bits >= WORD_SIZE ? -1L : mask(0, bits);
+  }
+
+  /**
+   * Sets the bits of the mask if none of them is already set.
+   */
+  private boolean compareAndSetBits(int index, long mask) {
+    long word;
+    do {
+      word = words.get(index);
+      if ((word & mask) != 0) {
+        return false;
+      }
+    } while (!words.compareAndSet(index, word, word | mask));
+    return true;
+  }
+
+  private void setBits(long start, long end) {
+    for (var day = start; day < end; ) {
+      final var wordFirstDay = Math.floorDiv(day, WORD_SIZE) * WORD_SIZE;
+      final var wordEndDay = Math.min(end, wordFirstDay + WORD_SIZE);
+      final var mask = mask(day - wordFirstDay, wordEndDay - wordFirstDay);
+      words.getAndAccumulate(index(wordFirstDay), mask, (word, bits) -> word | bits);
+      day = wordEndDay;
+    }
+  }
+
+  private void clearBits(long start, long end) {
+    for (var day = start; day < end; ) {
+      final var wordFirstDay = Math.floorDiv(day, WORD_SIZE) * WORD_SIZE;
+      final var wordEndDay = Math.min(end, wordFirstDay + WORD_SIZE);
+      final var index = index(wordFirstDay);
+      if (index >= 0) {
+        final var mask = mask(day - wordFirstDay, wordEndDay - wordFirstDay);
+        words.getAndAccumulate(index, mask, (word, bits) -> word & ~bits);
+      }
+      day = wordEndDay;
+    }
+  }
+
+  /**
+   * Makes sure the bitmap covers the epoch-days between start (included) and end (excluded).
+   */
+  private void ensureCapacity(long start, long end) {
+    if (start >= end) {
+      return;
+    }
+    lock.readLock().lock();
+    try {
+      if (index(Math.floorDiv(start, WORD_SIZE) * WORD_SIZE) >= 0
+          && index(Math.floorDiv(end - 1, WORD_SIZE) * WORD_SIZE) >= 0) {
+        return;
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    lock.writeLock().lock();
+    try {
+      grow(start, end);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Reallocates the bitmap to cover the epoch-days between start (included) and end (excluded). The write lock must be
+   * held.
+   */
+  private void grow(long start, long end) {
+    final var fromWord = Math.floorDiv(start, WORD_SIZE);
+    final var toWord = Math.floorDiv(end - 1, WORD_SIZE);
+    if (words.length() == 0) {
+      firstWord = fromWord;
+      words = new AtomicLongArray(Math.toIntExact(toWord - fromWord + 1));
+      return;
+    }
+    final var lastWord = firstWord + words.length() - 1;
+    if (fromWord >= firstWord && toWord <= lastWord) {
+      return;
+    }
+    final var newFirstWord = Math.min(firstWord, fromWord);
+    final var newWords = new AtomicLongArray(Math.toIntExact(Math.max(lastWord, toWord) - newFirstWord + 1));
+    final var offset = (int) (firstWord - newFirstWord);
+    for (var i = 0; i < words.length(); i++) {
+      newWords.set(offset + i, words.get(i));
+    }
+    firstWord = newFirstWord;
+    words = newWords;
+  }
+}
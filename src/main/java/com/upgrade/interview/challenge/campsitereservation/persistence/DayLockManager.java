@@ -0,0 +1,119 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.Striped;
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+
+/**
+ * In-memory locks of the days of the campsites, keyed by (campsite, epoch-day).
+ * <p>The locks of the days of a booking are acquired before its transaction is opened: the conflicting requests wait
+ * for each other in memory, instead of holding a connection and a transaction that the database would abort. The
+ * database stays the reference: the locks are local to the application instance.</p>
+ * <p>The days are mapped by hash to a fixed number of locks (stripes), acquired in the order of the stripes, so that 2
+ * operations cannot wait for each other (no deadlock).</p>
+ */
+@Component
+public class DayLockManager {
+
+  private final Striped<Lock> stripes;
+
+  private final long timeoutInNanos;
+
+  public DayLockManager(CampsiteConfiguration configuration) {
+    this.stripes = Striped.lock(configuration.getDayLock().getStripes());
+    this.timeoutInNanos = configuration.getDayLock().getTimeout().toNanos();
+  }
+
+  /**
+   * Locks the days of a campsite between startInclusive and endExclusive.
+   *
+   * @return the acquired locks, released when closed.
+   * @throws CannotAcquireLockException if the locks cannot be acquired before the timeout.
+   */
+  public DayLocks lock(long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    final var keys = new LinkedHashSet<Long>();
+    addKeys(keys, campsiteId, startInclusive, endExclusive);
+    return lock(keys);
+  }
+
+  /**
+   * Locks the days of a campsite between startInclusive and endExclusive, and between otherStartInclusive and
+   * otherEndExclusive.
+   *
+   * @return the acquired locks, released when closed.
+   * @throws CannotAcquireLockException if the locks cannot be acquired before the timeout.
+   */
+  public DayLocks lock(long campsiteId, LocalDate startInclusive, LocalDate endExclusive,
+                       LocalDate otherStartInclusive, LocalDate otherEndExclusive) {
+    final var keys = new LinkedHashSet<Long>();
+    addKeys(keys, campsiteId, startInclusive, endExclusive);
+    addKeys(keys, campsiteId, otherStartInclusive, otherEndExclusive);
+    return lock(keys);
+  }
+
+  private DayLocks lock(Set<Long> keys) {
+    // The locks are sorted by stripe: the same lock is returned consecutively for the keys of the same stripe
+    final var locks = stripes.bulkGet(keys);
+    final var acquiredLocks = new ArrayList<Lock>(locks.size());
+    final var deadline = System.nanoTime() + timeoutInNanos;
+    try {
+      for (final var lock : locks) {
+        if (!acquiredLocks.isEmpty() && acquiredLocks.get(acquiredLocks.size() - 1) == lock) {
+          continue;
+        }
+        if (!lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+          throw new CannotAcquireLockException("Timeout while waiting for the locks of the booking dates");
+        }
+        acquiredLocks.add(lock);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      unlock(acquiredLocks);
+      throw new CannotAcquireLockException("Interrupted while waiting for the locks of the booking dates", e);
+    } catch (RuntimeException e) {
+      unlock(acquiredLocks);
+      throw e;
+    }
+    return new DayLocks(acquiredLocks);
+  }
+
+  private static void addKeys(Set<Long> keys, long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    for (var day = startInclusive.toEpochDay(); day < endExclusive.toEpochDay(); day++) {
+      // The epoch-days of the supported dates fit in 24 bits
+      keys.add(campsiteId << 24 ^ day);
+    }
+  }
+
+  private static void unlock(List<Lock> locks) {
+    for (var i = locks.size() - 1; i >= 0; i--) {
+      locks.get(i).unlock();
+    }
+  }
+
+  /**
+   * Locks acquired by {@link DayLockManager}, released when closed (by the thread which acquired them).
+   */
+  public static final class DayLocks implements AutoCloseable {
+
+    private final List<Lock> locks;
+
+    private DayLocks(List<Lock> locks) {
+      this.locks = locks;
+    }
+
+    @Override
+    public void close() {
+      unlock(locks);
+    }
+  }
+}
@@ -0,0 +1,228 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+import com.upgrade.interview.challenge.campsitereservation.exception.AlreadyBookedException;
+import com.upgrade.interview.challenge.campsitereservation.exception.BadRequestException;
+import com.upgrade.interview.challenge.campsitereservation.validation.BookingRules;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Queues the additions of bookings, and commits them by micro-batches with {@link BookingService#addAll(long, List)}:
+ * the throughput is bounded by the size of the batches instead of the number of commits per second.
+ * <p>A single thread drains the queue: a batch is committed when it is full, or when no other booking has been queued
+ * during the maximum wait after its first booking. The conflicts between the bookings of a batch are resolved in
+ * memory, in the order of the queue. Each caller gets the outcome of its own booking: if the transaction of a batch
+ * fails, its bookings are added one by one. A caller waits at most {@code campsite.group-commit.timeout}.</p>
+ * <p>Enabled with {@code campsite.group-commit.enabled=true}.</p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "campsite.group-commit", name = "enabled", havingValue = "true")
+@Slf4j
+public class GroupCommitPipeline {
+
+  private final BookingService bookingService;
+
+  private final BookingRules bookingRules;
+
+  private final int maxBatchSize;
+
+  private final long maxWaitInNanos;
+
+  private final Duration timeout;
+
+  private final BlockingQueue<PendingAdd> queue;
+
+  private final Thread drainer;
+
+  // Set before the drainer is interrupted, or when it exits: the bookings queued after are rejected
+  private volatile boolean stopped;
+
+  public GroupCommitPipeline(BookingService bookingService, BookingRules bookingRules,
+                             CampsiteConfiguration configuration) {
+    this.bookingService = bookingService;
+    this.bookingRules = bookingRules;
+    this.maxBatchSize = configuration.getGroupCommit().getMaxBatchSize();
+    this.maxWaitInNanos = configuration.getGroupCommit().getMaxWait().toNanos();
+    this.timeout = configuration.getGroupCommit().getTimeout();
+    this.queue = new ArrayBlockingQueue<>(configuration.getGroupCommit().getQueueCapacity());
+    this.drainer = new Thread(this::drain, "group-commit");
+    this.drainer.setDaemon(true);
+    this.drainer.start();
+  }
+
+  /**
+   * Queues the addition of a booking, once its dates are checked with the {@link BookingRules}.
+   *
+   * @return the future added booking, completed with an {@link AlreadyBookedException} if the dates are not available.
+   * @throws BadRequestException if the dates do not respect the rules.
+   * @throws TransientDataAccessResourceException if the queue is full, or if the pipeline is stopped.
+   */
+  public CompletableFuture<BookingEntity> submit(BookingEntity bookingEntity) {
+    return enqueue(bookingEntity).getFuture();
+  }
+
+  private PendingAdd enqueue(BookingEntity bookingEntity) {
+    bookingRules.check(bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate());
+    if (stopped) {
+      throw stoppedException();
+    }
+    final var pendingAdd = new PendingAdd(bookingEntity, new CompletableFuture<>());
+    if (!queue.offer(pendingAdd)) {
+      throw new TransientDataAccessResourceException("Too many pending bookings");
+    }
+    // The pipeline may have been stopped meanwhile: the booking is rejected, unless the drainer has already taken it
+    if (stopped && queue.remove(pendingAdd)) {
+      throw stoppedException();
+    }
+    return pendingAdd;
+  }
+
+  /**
+   * Adds a booking through the pipeline, and waits for its outcome.
+   *
+   * @throws TransientDataAccessResourceException if the booking has no outcome within the timeout: it is removed from
+   *                                              the queue, unless the drainer is already committing it.
+   */
+  public BookingEntity add(BookingEntity bookingEntity) {
+    final var pendingAdd = enqueue(bookingEntity);
+    try {
+      return pendingAdd.getFuture().get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      final var message = queue.remove(pendingAdd)
+          ? "The booking has not been committed within " + timeout
+          : "The booking is still being committed after " + timeout;
+      throw new TransientDataAccessResourceException(message, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TransientDataAccessResourceException("Interrupted while waiting for the booking", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  private void drain() {
+    final var batch = new ArrayList<PendingAdd>(maxBatchSize);
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        batch.add(queue.take());
+        final var deadline = System.nanoTime() + maxWaitInNanos;
+        while (batch.size() < maxBatchSize) {
+          final var pendingAdd = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (pendingAdd == null) {
+            break;
+          }
+          batch.add(pendingAdd);
+        }
+        commit(batch);
+        batch.clear();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException e) {
+      log.error("The group commit drainer has failed, the pipeline is stopped", e);
+    } finally {
+      // Nobody completes the bookings once the drainer has exited, even unexpectedly
+      stopped = true;
+      final var exception = stoppedException();
+      batch.forEach(pendingAdd -> pendingAdd.getFuture().completeExceptionally(exception));
+      rejectPending();
+    }
+  }
+
+  /**
+   * Rejects the queued bookings, once the pipeline is stopped.
+   */
+  private void rejectPending() {
+    final var pendingAdds = new ArrayList<PendingAdd>();
+    queue.drainTo(pendingAdds);
+    final var exception = stoppedException();
+    pendingAdds.forEach(pendingAdd -> pendingAdd.getFuture().completeExceptionally(exception));
+  }
+
+  private static TransientDataAccessResourceException stoppedException() {
+    return new TransientDataAccessResourceException("The booking pipeline is stopped");
+  }
+
+  /**
+   * Commits the bookings of a batch, in 1 transaction per campsite.
+   */
+  private void commit(List<PendingAdd> batch) {
+    final var batchesByCampsite = new LinkedHashMap<Long, List<PendingAdd>>();
+    batch.forEach(pendingAdd -> batchesByCampsite
+        .computeIfAbsent(pendingAdd.getBookingEntity().getCampsiteId(), campsiteId -> new ArrayList<>())
+        .add(pendingAdd));
+    batchesByCampsite.forEach((campsiteId, campsiteBatch) -> {
+      final List<BatchAddResult> results;
+      try {
+        final var bookingEntities = new ArrayList<BookingEntity>(campsiteBatch.size());
+        campsiteBatch.forEach(pendingAdd -> bookingEntities.add(pendingAdd.getBookingEntity()));
+        results = bookingService.addAll(campsiteId, bookingEntities);
+      } catch (RuntimeException e) {
+        log.warn("Commit of {} bookings of campsite {} failed, adding them one by one: {}", campsiteBatch.size(),
+            campsiteId, e.toString());
+        campsiteBatch.forEach(this::addOneByOne);
+        return;
+      }
+      for (var i = 0; i < results.size(); i++) {
+        final var result = results.get(i);
+        final var future = campsiteBatch.get(i).getFuture();
+        if (result.isAdded()) {
+          future.complete(result.getBookingEntity());
+        } else {
+          future.completeExceptionally(new AlreadyBookedException(result.getConflict()));
+        }
+      }
+    });
+  }
+
+  private void addOneByOne(PendingAdd pendingAdd) {
+    final var bookingEntity = pendingAdd.getBookingEntity();
+    // The id and the version may be set by the failed batch
+    bookingEntity.setId(0);
+    bookingEntity.setVersion(0);
+    try {
+      pendingAdd.getFuture().complete(bookingService.add(bookingEntity));
+    } catch (RuntimeException e) {
+      pendingAdd.getFuture().completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Stops the pipeline: the queued bookings, and the bookings submitted after, are rejected.
+   */
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    stopped = true;
+    drainer.interrupt();
+    drainer.join(TimeUnit.SECONDS.toMillis(10));
+    // The bookings queued after the last drain of the drainer, or while it is still committing after the timeout
+    rejectPending();
+  }
+
+  @Value
+  private static class PendingAdd {
+    BookingEntity bookingEntity;
+    CompletableFuture<BookingEntity> future;
+  }
+}
@@ -0,0 +1,16 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+/**
+ * Load of an index from the reservations it accepts: the loaded index replaces the current index once the load is
+ * completed. Used to restore the indexes from the {@link BookingJournal} in a single pass (see
+ * {@link IndexSynchronizer#restore()}).
+ */
+interface IndexLoader extends BookingJournal.ReservationConsumer {
+
+  /**
+   * Replaces the current index with the loaded index.
+   *
+   * @param source source of the reservations, logged.
+   */
+  void complete(String source);
+}
@@ -0,0 +1,271 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration.ReservationEngine;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the {@link OccupancyIndex} and the {@link BookingIntervalIndex} in sync with the database, and versions the
+ * calendar.
+ * <p>Each instance updates its indexes after the changes it commits, and keeps the {@link BookingChecksum} of the
+ * bookings of its indexes. Every {@code campsite.index-sync.interval}, this checksum is compared with the checksum of
+ * the database: if they differ, another instance has committed a change, and the indexes are reloaded from the
+ * database. The availabilities and the overlapping bookings served by an instance are at most 1 interval (plus the
+ * reload) behind the other instances.</p>
+ * <p>The reload does not block the changes committed meanwhile: they are applied to the current indexes, and applied
+ * again to the loaded indexes.</p>
+ * <p>With the {@link ReservationEngine#COMPARE_AND_SET} engine, the dates are claimed in the index before the commit:
+ * the engine is meant for a single instance, and the indexes are never reloaded (a reload would drop the claims in
+ * progress).</p>
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class IndexSynchronizer implements ApplicationRunner {
+
+  private final OccupancyIndex occupancyIndex;
+
+  private final BookingIntervalIndex bookingIntervalIndex;
+
+  private final BookingRepository bookingRepository;
+
+  private final ObjectProvider<BookingJournal> bookingJournal;
+
+  private final TransactionTemplate transaction;
+
+  private final Duration interval;
+
+  private final boolean reloadable;
+
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    final var thread = new Thread(runnable, "index-sync");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  // Held for reading by the changes committed by this instance, and for writing by the start and the end of a reload
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  // Checksum of the bookings of the index
+  private final AtomicReference<BookingChecksum> checksum = new AtomicReference<>(BookingChecksum.EMPTY);
+
+  // Changes committed during the current reload, null if there is no reload. Guarded by lock
+  private Queue<Change> reloadChanges;
+
+  // Identifies this instance in the calendar version: the counter is not shared between the replicas, and is reset on
+  // restart
+  private final String instanceId = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+  private final AtomicLong calendarVersion = new AtomicLong();
+
+  public IndexSynchronizer(OccupancyIndex occupancyIndex, BookingIntervalIndex bookingIntervalIndex,
+                           BookingRepository bookingRepository, ObjectProvider<BookingJournal> bookingJournal,
+                           CampsiteConfiguration configuration, PlatformTransactionManager transactionManager) {
+    this.occupancyIndex = occupancyIndex;
+    this.bookingIntervalIndex = bookingIntervalIndex;
+    this.bookingRepository = bookingRepository;
+    this.bookingJournal = bookingJournal;
+    // Read-write, so that the bookings are read from the primary database, not from a read replica (see
+    // ReadReplicaRoutingDataSource)
+    this.transaction = new TransactionTemplate(transactionManager);
+    this.interval = configuration.getIndexSync().getInterval();
+    this.reloadable = configuration.getReservationEngine() != ReservationEngine.COMPARE_AND_SET;
+  }
+
+  /**
+   * Restores the indexes (see {@link #restore()}), then compares the checksums at each interval, unless the engine is
+   * {@link ReservationEngine#COMPARE_AND_SET}.
+   * <p>The first application runner: the indexes are loaded before the other runners (see {@code StartupWarmUp}), and
+   * before the readiness state becomes {@code ACCEPTING_TRAFFIC}.</p>
+   */
+  @Override
+  public void run(ApplicationArguments args) {
+    restore();
+    if (reloadable && !interval.isZero()) {
+      scheduler.scheduleWithFixedDelay(this::sync, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Reloads the index from the database if the checksum of the database differs from the checksum of the index.
+   *
+   * @return true if the index has been reloaded.
+   */
+  public boolean sync() {
+    try {
+      final var databaseChecksum = transaction.execute(status -> bookingRepository.checksum());
+      if (databaseChecksum.equals(checksum.get())) {
+        return false;
+      }
+      log.info("The bookings of the database {} differ from the bookings of the index {}: reloading the index",
+          databaseChecksum, checksum.get());
+      reload();
+      return true;
+    } catch (RuntimeException e) {
+      // Retried at the next interval
+      log.error("Synchronization of the index failed", e);
+      return false;
+    }
+  }
+
+  /**
+   * Restores the indexes from the {@link BookingJournal} if it is enabled, or else loads them from the database.
+   * <p>The journal is restored once: each restored booking is loaded in both indexes.</p>
+   */
+  public void restore() {
+    final var journal = bookingJournal.getIfAvailable();
+    if (journal == null) {
+      reload();
+      return;
+    }
+    load(() -> {
+      final var occupancyLoader = occupancyIndex.loader();
+      final var intervalLoader = bookingIntervalIndex.loader();
+      final var restored = journal.restore((id, campsiteId, startInclusive, endExclusive) -> {
+        occupancyLoader.accept(id, campsiteId, startInclusive, endExclusive);
+        intervalLoader.accept(id, campsiteId, startInclusive, endExclusive);
+      });
+      final var source = restored ? "journal" : "database";
+      occupancyLoader.complete(source);
+      intervalLoader.complete(source);
+    });
+  }
+
+  /**
+   * Reloads the indexes from the database (see {@link OccupancyIndex#load()} and {@link BookingIntervalIndex#load()}).
+   */
+  public void reload() {
+    load(() -> {
+      occupancyIndex.load();
+      bookingIntervalIndex.load();
+    });
+  }
+
+  /**
+   * Applies a change committed by this instance to the index, and increments the calendar version.
+   *
+   * @param change change of the checksum of the bookings.
+   * @param indexUpdate update of the index, which may be applied twice if the index is being reloaded.
+   */
+  public void committed(BookingChecksum change, Runnable indexUpdate) {
+    apply(change, indexUpdate);
+    calendarVersion.incrementAndGet();
+  }
+
+  /**
+   * Applies a change committed by this instance to the {@link BookingIntervalIndex}: its checksum is counted by
+   * {@link #committed(BookingChecksum, Runnable)}, and it does not change the calendar.
+   *
+   * @param indexUpdate update of the index, which may be applied twice if the index is being reloaded.
+   */
+  public void committed(Runnable indexUpdate) {
+    apply(BookingChecksum.EMPTY, indexUpdate);
+  }
+
+  /**
+   * Returns the version of the calendar: the id of this instance, followed by a counter incremented after each change
+   * of the index (committed change or reload).
+   */
+  public String getCalendarVersion() {
+    return instanceId + "-" + calendarVersion.get();
+  }
+
+  /**
+   * Increments the calendar version after a change of the index which is not tracked by the checksum (claims of the
+   * {@link ReservationEngine#COMPARE_AND_SET} engine).
+   */
+  public void incrementCalendarVersion() {
+    calendarVersion.incrementAndGet();
+  }
+
+  @PreDestroy
+  public void stop() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Loads the indexes with the loader, in a read-write transaction.
+   * <p>The checksum is read before the indexes: a change committed in between is loaded but not counted, and only
+   * causes another reload. The changes committed by this instance during the load may be missing from the loaded
+   * indexes: they are applied again once they are loaded. The loads are serialized.</p>
+   */
+  private synchronized void load(Runnable loader) {
+    final Queue<Change> changes = new ConcurrentLinkedQueue<>();
+    setReloadChanges(changes);
+    BookingChecksum loadedChecksum = null;
+    try {
+      loadedChecksum = transaction.execute(status -> {
+        final var databaseChecksum = bookingRepository.checksum();
+        loader.run();
+        return databaseChecksum;
+      });
+    } finally {
+      lock.writeLock().lock();
+      try {
+        reloadChanges = null;
+        if (loadedChecksum != null) {
+          checksum.set(changes.stream().map(Change::getChecksum).reduce(loadedChecksum, BookingChecksum::plus));
+          changes.forEach(change -> change.getIndexUpdate().run());
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+    calendarVersion.incrementAndGet();
+  }
+
+  private void apply(BookingChecksum change, Runnable indexUpdate) {
+    lock.readLock().lock();
+    try {
+      indexUpdate.run();
+      checksum.accumulateAndGet(change, BookingChecksum::plus);
+      if (reloadChanges != null) {
+        reloadChanges.add(new Change(change, indexUpdate));
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void setReloadChanges(Queue<Change> changes) {
+    lock.writeLock().lock();
+    try {
+      reloadChanges = changes;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Change committed by this instance.
+   */
+  @Value
+  private static class Change {
+    BookingChecksum checksum;
+    Runnable indexUpdate;
+  }
+}
@@ -0,0 +1,71 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.time.LocalDate;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+
+import org.springframework.data.domain.Persistable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * A bookable day of a campsite, created in advance for the
+ * {@link com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration.ReservationEngine#INVENTORY} engine,
+ * and claimed by a booking.
+ * <p>The primary key is the pair (campsite, date), like {@link BookingDate}. The days of a booking are claimed with 1
+ * conditional update of the existing rows, so the claim needs neither a range lock nor a serializable transaction.</p>
+ */
+@Entity
+@Table(indexes = @Index(name = "inventory_day_booking_id_idx", columnList = "booking_id"))
+@IdClass(BookingDateId.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryDay implements Persistable<BookingDateId> {
+  @Id
+  @Column(name = "campsite_id")
+  private long campsiteId;
+
+  @Id
+  private LocalDate date;
+
+  // Id of the booking which has claimed this day (null if the day is available)
+  @Column(name = "booking_id")
+  @EqualsAndHashCode.Exclude
+  private Long bookingId;
+
+  @Transient
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private boolean persisted;
+
+  @Override
+  public BookingDateId getId() {
+    return new BookingDateId(campsiteId, date);
+  }
+
+  @Override
+  public boolean isNew() {
+    return !persisted;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markPersisted() {
+    persisted = true;
+  }
+}
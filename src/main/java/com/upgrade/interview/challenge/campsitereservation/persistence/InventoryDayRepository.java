@@ -0,0 +1,56 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import javax.persistence.LockModeType;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface InventoryDayRepository extends JpaRepository<InventoryDay, BookingDateId> {
+
+  @Query("select d.date from #{#entityName} d where d.campsiteId = ?1 and d.date >= ?2 and d.date < ?3")
+  List<LocalDate> findAllDatesBetween(long campsiteId, LocalDate startInclusive, LocalDate endExclusive);
+
+  /**
+   * Returns the days of a campsite between startInclusive and endExclusive, locked until the end of the transaction.
+   * <p>The days exist before they are claimed: only these rows are locked, there is no range lock.</p>
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE) // Use select for update
+  @Query("select d from #{#entityName} d where d.campsiteId = ?1 and d.date >= ?2 and d.date < ?3")
+  List<InventoryDay> findAllDaysBetween(long campsiteId, LocalDate startInclusive, LocalDate endExclusive);
+
+  /**
+   * Returns the dates of a campsite between startInclusive and endExclusive which are claimed by another booking than
+   * the given one.
+   */
+  @Query("select d.date from #{#entityName} d where d.campsiteId = ?1 and d.date >= ?2 and d.date < ?3"
+      + " and d.bookingId is not null and d.bookingId <> ?4 order by d.date")
+  List<LocalDate> findAllDatesClaimedByOthersBetween(long campsiteId, LocalDate startInclusive,
+                                                      LocalDate endExclusive, long bookingId);
+
+  /**
+   * Claims the available days of a campsite between startInclusive and endExclusive for a booking, with a single
+   * statement.
+   *
+   * @return the number of claimed days, lower than the number of days of the range if at least 1 day is not available.
+   */
+  @Modifying
+  @Query("update #{#entityName} d set d.bookingId = ?1"
+      + " where d.campsiteId = ?2 and d.date >= ?3 and d.date < ?4 and d.bookingId is null")
+  int claim(long bookingId, long campsiteId, LocalDate startInclusive, LocalDate endExclusive);
+
+  /**
+   * Releases the days claimed by a booking, with a single statement.
+   *
+   * @return the number of released days.
+   */
+  @Modifying
+  @Query("update #{#entityName} d set d.bookingId = null where d.bookingId = ?1")
+  int releaseAll(long bookingId);
+}
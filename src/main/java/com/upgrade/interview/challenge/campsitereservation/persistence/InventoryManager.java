@@ -0,0 +1,98 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration.ReservationEngine;
+import com.upgrade.interview.challenge.campsitereservation.DayRange;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Creates the days of the inventory ({@link InventoryDay}) of the {@link ReservationEngine#INVENTORY} engine.
+ * <p>The days of the default campsite are created for the booking window (up to {@code maxDaysAheadOfArrival} days
+ * ahead, plus the longest booking) when the application is ready. The other days are created on demand, before their
+ * first claim, so that the window rolls with the dates of the bookings. A new day is claimed by the booking which owns
+ * its {@link BookingDate}, if any.</p>
+ */
+@Component
+@Slf4j
+public class InventoryManager {
+
+  private final InventoryDayRepository inventoryDayRepository;
+
+  private final BookingDateRepository bookingDateRepository;
+
+  private final CampsiteConfiguration configuration;
+
+  private final TransactionTemplate newTransaction;
+
+  public InventoryManager(InventoryDayRepository inventoryDayRepository, BookingDateRepository bookingDateRepository,
+                          CampsiteConfiguration configuration, PlatformTransactionManager transactionManager) {
+    this.inventoryDayRepository = inventoryDayRepository;
+    this.bookingDateRepository = bookingDateRepository;
+    this.configuration = configuration;
+    this.newTransaction = new TransactionTemplate(transactionManager);
+    this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+  }
+
+  /**
+   * Creates the days of the booking window of the default campsite, if the inventory engine is used.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void createBookingWindow() {
+    if (configuration.getReservationEngine() != ReservationEngine.INVENTORY) {
+      return;
+    }
+    final var today = LocalDate.now();
+    createDays(configuration.getDefaultCampsiteId(), today,
+        today.plusDays(configuration.getMaxDaysAheadOfArrival() + configuration.getMaxBookingDurationInDays() + 1));
+  }
+
+  /**
+   * Creates the missing days of a campsite between startInclusive and endExclusive, in a new transaction. The days
+   * created concurrently by another transaction are ignored.
+   */
+  public void createDays(long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    if (!startInclusive.isBefore(endExclusive)) {
+      return;
+    }
+    try {
+      newTransaction.executeWithoutResult(status -> {
+        final var existingDates = new HashSet<>(
+            inventoryDayRepository.findAllDatesBetween(campsiteId, startInclusive, endExclusive));
+        final var dayRange = DayRange.of(startInclusive, endExclusive);
+        if (existingDates.size() == dayRange.length()) {
+          return;
+        }
+        // The dates booked before the days are created (with another engine) are claimed by their booking
+        final var owners = new HashMap<LocalDate, Long>();
+        bookingDateRepository.readAllDatesBetween(campsiteId, startInclusive, endExclusive)
+            .forEach(bookingDate -> owners.put(bookingDate.getDate(), bookingDate.getBookingId()));
+        final var newDays = new ArrayList<InventoryDay>((int) dayRange.length() - existingDates.size());
+        dayRange.forEachDate(date -> {
+          if (!existingDates.contains(date)) {
+            newDays.add(InventoryDay.builder().campsiteId(campsiteId).date(date).bookingId(owners.get(date)).build());
+          }
+        });
+        // The new days are inserted in a single JDBC batch
+        inventoryDayRepository.saveAll(newDays);
+        log.info("Created {} days of campsite {} between {} and {}", newDays.size(), campsiteId, startInclusive,
+            endExclusive);
+      });
+    } catch (DataIntegrityViolationException e) {
+      log.debug("Days of campsite {} between {} and {} created concurrently", campsiteId, startInclusive,
+          endExclusive);
+    }
+  }
+}
@@ -0,0 +1,195 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory index of the reserved dates, used to answer the availability requests without querying the database.
+ * <p>The reserved dates of each campsite are stored in a {@link DayBitmap}: the campsites are independent, and the
+ * updates of different campsites never contend with each other. The bitmap of a campsite is allocated at its first
+ * reservation.</p>
+ * <p>The index is loaded from the {@link BookingDateRepository} before the application runners, and it is kept in sync
+ * by the {@link BookingService} after each committed transaction. If the {@link BookingJournal} is enabled, the index
+ * is restored from the journal instead (see {@link #loader()}). The changes committed by the other instances are loaded
+ * by the {@link IndexSynchronizer}.</p>
+ */
+@Component
+@Slf4j
+public class OccupancyIndex {
+
+  /**
+   * Maximum length of the windows of {@link #windowStarts(long, LocalDate, LocalDate, int, int)}.
+   */
+  public static final int MAX_WINDOW_LENGTH = DayBitmap.MAX_WINDOW_LENGTH;
+
+  // Bitmap of a campsite without reservation (never updated)
+  private static final DayBitmap EMPTY = new DayBitmap();
+
+  private final BookingDateRepository bookingDateRepository;
+
+  private volatile ConcurrentMap<Long, DayBitmap> bitmaps = new ConcurrentHashMap<>();
+
+  public OccupancyIndex(BookingDateRepository bookingDateRepository) {
+    this.bookingDateRepository = bookingDateRepository;
+  }
+
+  /**
+   * (Re)loads the index from the {@link BookingDateRepository}.
+   * <p>The dates are read in a read-write transaction, so that they are read from the primary database, not from a
+   * read replica (see {@link ReadReplicaRoutingDataSource}).</p>
+   */
+  @Transactional
+  public void load() {
+    final var bookingDates = bookingDateRepository.findAll();
+    final ConcurrentMap<Long, DayBitmap> loadedBitmaps = new ConcurrentHashMap<>();
+    bookingDates.forEach(bookingDate -> loadedBitmaps
+        .computeIfAbsent(bookingDate.getCampsiteId(), campsiteId -> new DayBitmap())
+        .reserve(bookingDate.getDate(), bookingDate.getDate().plusDays(1)));
+    bitmaps = loadedBitmaps;
+    log.info("Loaded {} reserved dates of {} campsites in the occupancy index", bookingDates.size(),
+        loadedBitmaps.size());
+  }
+
+  /**
+   * Returns a loader of the index, which reserves the dates of each reservation it accepts in a new index.
+   */
+  IndexLoader loader() {
+    final ConcurrentMap<Long, DayBitmap> loadedBitmaps = new ConcurrentHashMap<>();
+    final var start = System.nanoTime();
+    return new IndexLoader() {
+      @Override
+      public void accept(long id, long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+        loadedBitmaps.computeIfAbsent(campsiteId, key -> new DayBitmap()).reserve(startInclusive, endExclusive);
+      }
+
+      @Override
+      public void complete(String source) {
+        bitmaps = loadedBitmaps;
+        log.info("Loaded the reservations of {} campsites in the occupancy index from the {} in {} ms",
+            loadedBitmaps.size(), source, (System.nanoTime() - start) / 1_000_000);
+      }
+    };
+  }
+
+  /**
+   * Marks the dates between startInclusive and endExclusive as reserved.
+   */
+  public void reserve(long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    writableBitmap(campsiteId).reserve(startInclusive, endExclusive);
+  }
+
+  /**
+   * Marks the dates between startInclusive and endExclusive as available.
+   */
+  public void release(long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    bitmap(campsiteId).release(startInclusive, endExclusive);
+  }
+
+  /**
+   * Marks the dates between startInclusive and endExclusive as available, except the dates between keptStartInclusive
+   * and keptEndExclusive.
+   */
+  public void releaseExcept(long campsiteId, LocalDate startInclusive, LocalDate endExclusive,
+                            LocalDate keptStartInclusive, LocalDate keptEndExclusive) {
+    bitmap(campsiteId).releaseExcept(startInclusive, endExclusive, keptStartInclusive, keptEndExclusive);
+  }
+
+  /**
+   * Releases the dates of an old booking and reserves the dates of the new booking.
+   * <p>The new dates are reserved before the old ones are released, so that the dates common to both bookings are
+   * never seen available.</p>
+   */
+  public void move(long campsiteId, LocalDate oldStartInclusive, LocalDate oldEndExclusive,
+                   LocalDate newStartInclusive, LocalDate newEndExclusive) {
+    writableBitmap(campsiteId).move(oldStartInclusive, oldEndExclusive, newStartInclusive, newEndExclusive);
+  }
+
+  /**
+   * Atomically claims the dates between startInclusive and endExclusive.
+   * <p>Each word is claimed with a compare-and-set. If a date is already reserved, the words already claimed are
+   * released.</p>
+   *
+   * @return true if all the dates have been claimed, false if at least 1 date is already reserved.
+   */
+  public boolean tryClaim(long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    return writableBitmap(campsiteId).tryClaim(startInclusive, endExclusive);
+  }
+
+  /**
+   * Atomically claims the dates between startInclusive and endExclusive which are not between ownedStartInclusive
+   * and ownedEndExclusive (these dates are already reserved by the caller).
+   *
+   * @return true if all the dates have been claimed, false if at least 1 date is already reserved.
+   */
+  public boolean tryClaim(long campsiteId, LocalDate startInclusive, LocalDate endExclusive,
+                          LocalDate ownedStartInclusive, LocalDate ownedEndExclusive) {
+    return writableBitmap(campsiteId)
+        .tryClaim(startInclusive, endExclusive, ownedStartInclusive, ownedEndExclusive);
+  }
+
+  /**
+   * Returns the list of the available dates between startInclusive and endExclusive.
+   * <p>The bitmap is scanned word by word: only the available dates are visited.</p>
+   */
+  public List<LocalDate> availabilities(long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    return bitmap(campsiteId).availabilities(startInclusive, endExclusive);
+  }
+
+  /**
+   * Calls the consumer for each run of consecutive available dates between startInclusive and endExclusive.
+   * <p>The bitmap is scanned word by word: the bounds of the runs are found with {@link Long#numberOfTrailingZeros},
+   * without visiting each date.</p>
+   */
+  public void forEachFreeRun(long campsiteId, LocalDate startInclusive, LocalDate endExclusive,
+                             RunConsumer consumer) {
+    bitmap(campsiteId).forEachFreeRun(startInclusive, endExclusive, consumer);
+  }
+
+  /**
+   * Returns the bitmap of the available dates between startInclusive and endExclusive: the bit {@code i % 8} of the
+   * byte {@code i / 8} is set when the date startInclusive + i is available (least significant bit first).
+   */
+  public byte[] freeBitmap(long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    return bitmap(campsiteId).freeBitmap(startInclusive, endExclusive);
+  }
+
+  /**
+   * Returns the first dates (at most limit) between startInclusive and endExclusive which start a window of length
+   * consecutive available dates, ending before endExclusive, with 1 <= length <= {@value #MAX_WINDOW_LENGTH}.
+   * <p>The window starts are computed 64 dates at a time with a bit-parallel shift-and of the bitmap words.</p>
+   */
+  public List<LocalDate> windowStarts(long campsiteId, LocalDate startInclusive, LocalDate endExclusive, int length,
+                                      int limit) {
+    return bitmap(campsiteId).windowStarts(startInclusive, endExclusive, length, limit);
+  }
+
+  /**
+   * Returns the bitmap of the campsite, or an empty bitmap if the campsite has no reservation. The returned bitmap must
+   * not be updated with new reservations.
+   */
+  private DayBitmap bitmap(long campsiteId) {
+    return bitmaps.getOrDefault(campsiteId, EMPTY);
+  }
+
+  /**
+   * Returns the bitmap of the campsite, allocated if the campsite has no reservation.
+   */
+  private DayBitmap writableBitmap(long campsiteId) {
+    return bitmaps.computeIfAbsent(campsiteId, id -> new DayBitmap());
+  }
+
+  /**
+   * Consumer of a run of consecutive epoch-days.
+   */
+  @FunctionalInterface
+  public interface RunConsumer {
+    void accept(long startInclusive, long endExclusive);
+  }
+}
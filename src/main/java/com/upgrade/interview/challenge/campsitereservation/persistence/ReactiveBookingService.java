@@ -0,0 +1,522 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import com.google.common.collect.Lists;
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration.ReservationEngine;
+import com.upgrade.interview.challenge.campsitereservation.exception.AlreadyBookedException;
+import com.upgrade.interview.challenge.campsitereservation.exception.BadRequestException;
+import com.upgrade.interview.challenge.campsitereservation.exception.BookingNotFoundException;
+import com.upgrade.interview.challenge.campsitereservation.validation.BookingRules;
+import io.r2dbc.spi.Row;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non-blocking version of the {@link BookingService}, used by the reactive stack.
+ * <p>The bookings are read and written with R2DBC, in the tables of the JPA entities. The conflicts are detected like
+ * with the blocking engines: with the {@link ReservationEngine#DATABASE} engine, the booking dates of the campsite are
+ * selected for update in a serializable transaction, and with the {@link ReservationEngine#INVENTORY} engine, the days
+ * of the booking are claimed in the {@link InventoryDay} table in a read committed transaction. The in-memory day locks
+ * are not used, because they would block the event loop, so the {@link ReservationEngine#COMPARE_AND_SET} engine is not
+ * supported.</p>
+ * <p>The availabilities are read from the {@link OccupancyIndex} (see {@link BookingService}), which is updated after
+ * each committed transaction (see {@link IndexSynchronizer}), like the {@link BookingIntervalIndex}, and the committed
+ * events are appended to the {@link BookingJournal} if it is enabled. The operations are recorded by the
+ * {@link BookingMetrics}.</p>
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Slf4j
+public class ReactiveBookingService {
+
+  private static final String SELECT_BOOKINGS = "select id, version, campsite_id, email, fullname, arrival_date,"
+      + " departure_date from booking";
+
+  private static final String SELECT_BOOKINGS_ARRIVING_BETWEEN = SELECT_BOOKINGS
+      + " where campsite_id = :campsiteId and arrival_date >= :start and arrival_date < :end";
+
+  private final DatabaseClient databaseClient;
+
+  private final OccupancyIndex occupancyIndex;
+
+  private final ObjectProvider<BookingJournal> bookingJournal;
+
+  private final BookingIntervalIndex bookingIntervalIndex;
+
+  private final IndexSynchronizer indexSynchronizer;
+
+  private final TransientFailureRetry transientFailureRetry;
+
+  private final BookingRules bookingRules;
+
+  private final InventoryManager inventoryManager;
+
+  private final BookingMetrics bookingMetrics;
+
+  private final ReservationEngine reservationEngine;
+
+  private final TransactionalOperator serializableTransaction;
+
+  private final TransactionalOperator readCommittedTransaction;
+
+  // Next id of the current block of ids, and last id of the block. Guarded by this
+  private long nextId = 1;
+
+  private long lastId;
+
+  public ReactiveBookingService(DatabaseClient databaseClient, OccupancyIndex occupancyIndex,
+                                ObjectProvider<BookingJournal> bookingJournal,
+                                BookingIntervalIndex bookingIntervalIndex, IndexSynchronizer indexSynchronizer,
+                                TransientFailureRetry transientFailureRetry, BookingRules bookingRules,
+                                InventoryManager inventoryManager, BookingMetrics bookingMetrics,
+                                CampsiteConfiguration configuration, ReactiveTransactionManager transactionManager) {
+    this.databaseClient = databaseClient;
+    this.occupancyIndex = occupancyIndex;
+    this.bookingJournal = bookingJournal;
+    this.bookingIntervalIndex = bookingIntervalIndex;
+    this.indexSynchronizer = indexSynchronizer;
+    this.transientFailureRetry = transientFailureRetry;
+    this.bookingRules = bookingRules;
+    this.inventoryManager = inventoryManager;
+    this.bookingMetrics = bookingMetrics;
+    this.reservationEngine = configuration.getReservationEngine();
+    if (reservationEngine == ReservationEngine.COMPARE_AND_SET) {
+      throw new IllegalStateException("The " + reservationEngine + " reservation engine is not supported by the"
+          + " reactive stack");
+    }
+    final var serializable = new DefaultTransactionDefinition();
+    serializable.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+    this.serializableTransaction = TransactionalOperator.create(transactionManager, serializable);
+    final var readCommitted = new DefaultTransactionDefinition();
+    readCommitted.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    this.readCommittedTransaction = TransactionalOperator.create(transactionManager, readCommitted);
+  }
+
+  /**
+   * Adds a booking to its campsite.
+   * <p>The transient failures are retried (see {@link TransientFailureRetry#retrySpec(String)}).</p>
+   *
+   * @return the added booking, or a {@link BadRequestException} if its dates do not respect the {@link BookingRules}.
+   */
+  public Mono<BookingEntity> add(BookingEntity bookingEntity) {
+    log.info("Adding {}", bookingEntity);
+    final var campsiteId = bookingEntity.getCampsiteId();
+    final var arrivalDate = bookingEntity.getArrivalDate();
+    final var departureDate = bookingEntity.getDepartureDate();
+    return bookingMetrics.record("add", checkRules(bookingEntity)
+        .then(insert(bookingEntity))
+        .retryWhen(transientFailureRetry.retrySpec("add"))
+        .doOnSuccess(addedBookingEntity -> {
+          indexSynchronizer.committed(BookingChecksum.of(addedBookingEntity),
+              () -> occupancyIndex.reserve(campsiteId, arrivalDate, departureDate));
+          bookingJournal.ifAvailable(journal -> journal.created(addedBookingEntity));
+          indexSynchronizer.committed(() -> bookingIntervalIndex.put(addedBookingEntity));
+          log.info("Added {}", addedBookingEntity);
+        }));
+  }
+
+  /**
+   * Updates a booking.
+   * <p>The conflicts are detected like in {@link #add(BookingEntity)}, the dates of the old booking being considered
+   * available. The booking stays on the campsite of the old booking.</p>
+   *
+   * @return the updated booking, a {@link BadRequestException} if the new dates do not respect the
+   *     {@link BookingRules}, or an {@link OptimisticLockingFailureException} if the old booking has been modified
+   *     concurrently.
+   */
+  public Mono<BookingEntity> update(BookingEntity oldBookingEntity, BookingEntity newBookingEntity) {
+    log.info("Updating {} with {}", oldBookingEntity, newBookingEntity);
+    final var campsiteId = oldBookingEntity.getCampsiteId();
+    final var updatedBookingEntity = copyOf(newBookingEntity, oldBookingEntity.getId(),
+        oldBookingEntity.getVersion() + 1);
+    updatedBookingEntity.setCampsiteId(campsiteId);
+    return bookingMetrics.record("update", checkRules(newBookingEntity)
+        .then(replace(oldBookingEntity, updatedBookingEntity))
+        .retryWhen(transientFailureRetry.retrySpec("update"))
+        .doOnSuccess(bookingEntity -> {
+          indexSynchronizer.committed(BookingChecksum.of(bookingEntity).minus(BookingChecksum.of(oldBookingEntity)),
+              () -> occupancyIndex.move(campsiteId,
+                  oldBookingEntity.getArrivalDate(), oldBookingEntity.getDepartureDate(),
+                  bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()));
+          bookingJournal.ifAvailable(journal -> journal.updated(bookingEntity));
+          indexSynchronizer.committed(() -> bookingIntervalIndex.put(bookingEntity));
+        }));
+  }
+
+  public Mono<BookingEntity> findById(long id) {
+    log.info("Find booking with id {}", id);
+    return databaseClient.sql(SELECT_BOOKINGS + " where id = :id")
+        .bind("id", id)
+        .map(ReactiveBookingService::toBookingEntity)
+        .one();
+  }
+
+  /**
+   * Returns the version of the booking of a campsite with the given id, without reading the booking itself.
+   */
+  public Mono<Long> findVersion(long campsiteId, long id) {
+    return databaseClient.sql("select version from booking where id = :id and campsite_id = :campsiteId")
+        .bind("id", id)
+        .bind("campsiteId", campsiteId)
+        .map(row -> row.get("version", Long.class))
+        .one();
+  }
+
+  /**
+   * Deletes the booking of a campsite with the given id.
+   *
+   * @return an empty Mono, or a {@link BookingNotFoundException} if the campsite has no booking with this id.
+   */
+  public Mono<Void> deleteById(long campsiteId, long id) {
+    log.info("Deleting booking with id {} of campsite {}", id, campsiteId);
+    return bookingMetrics.record("delete", findById(id)
+        .filter(bookingEntity -> bookingEntity.getCampsiteId() == campsiteId)
+        .switchIfEmpty(Mono.error(() -> new BookingNotFoundException(id)))
+        .flatMap(bookingEntity -> deleteBookingDates(bookingEntity)
+            .then(reservationEngine == ReservationEngine.INVENTORY ? releaseDays(id) : Mono.<Integer>empty())
+            .then(databaseClient.sql("delete from booking where id = :id")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated())
+            .thenReturn(bookingEntity))
+        .as(serializableTransaction::transactional)
+        .doOnSuccess(bookingEntity -> {
+          indexSynchronizer.committed(BookingChecksum.EMPTY.minus(BookingChecksum.of(bookingEntity)),
+              () -> occupancyIndex.release(campsiteId, bookingEntity.getArrivalDate(),
+                  bookingEntity.getDepartureDate()));
+          bookingJournal.ifAvailable(journal -> journal.cancelled(bookingEntity));
+          indexSynchronizer.committed(() -> bookingIntervalIndex.remove(campsiteId, id));
+        })
+        .then());
+  }
+
+  /**
+   * Returns the bookings of a campsite arriving between startInclusive and endExclusive, sorted by arrival date and
+   * id. The rows are emitted as they are read from the database.
+   */
+  public Flux<BookingEntity> findAll(long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    log.info("Find bookings of campsite {} arriving between {} and {}", campsiteId, startInclusive, endExclusive);
+    return databaseClient.sql(SELECT_BOOKINGS_ARRIVING_BETWEEN + " order by arrival_date, id")
+        .bind("campsiteId", campsiteId)
+        .bind("start", startInclusive)
+        .bind("end", endExclusive)
+        .map(ReactiveBookingService::toBookingEntity)
+        .all();
+  }
+
+  /**
+   * Returns the bookings of a campsite whose stay overlaps the dates between startInclusive and endExclusive, sorted by
+   * arrival date and id. The ids of the bookings are found in the {@link BookingIntervalIndex} (see
+   * {@link BookingService#findOverlapping(long, LocalDate, LocalDate)}).
+   */
+  public Flux<BookingEntity> findOverlapping(long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    log.info("Find bookings of campsite {} overlapping {} and {}", campsiteId, startInclusive, endExclusive);
+    final var ids = bookingIntervalIndex.overlapping(campsiteId, startInclusive, endExclusive);
+    // The dates are checked again, in case the bookings have been updated since the lookup
+    return Flux.fromIterable(Lists.partition(ids, BookingService.MAX_IDS_PER_QUERY))
+        .concatMap(someIds -> databaseClient.sql(SELECT_BOOKINGS
+            + " where id in (:ids) and arrival_date < :end and departure_date > :start")
+            .bind("ids", someIds)
+            .bind("start", startInclusive)
+            .bind("end", endExclusive)
+            .map(ReactiveBookingService::toBookingEntity)
+            .all())
+        .sort(Comparator.comparing(BookingEntity::getArrivalDate).thenComparingLong(BookingEntity::getId));
+  }
+
+  /**
+   * Returns at most limit bookings of a campsite arriving between startInclusive and endExclusive, sorted by arrival
+   * date and id, which are after the booking (afterArrivalDate, afterId).
+   */
+  public Flux<BookingEntity> findPage(long campsiteId, LocalDate startInclusive, LocalDate endExclusive,
+                                      LocalDate afterArrivalDate, long afterId, int limit) {
+    log.info("Find {} bookings of campsite {} arriving between {} and {} after ({}, {})",
+        limit, campsiteId, startInclusive, endExclusive, afterArrivalDate, afterId);
+    return databaseClient.sql(SELECT_BOOKINGS_ARRIVING_BETWEEN
+        + " and (arrival_date > :afterArrivalDate or (arrival_date = :afterArrivalDate and id > :afterId))"
+        + " order by arrival_date, id limit :limit")
+        .bind("campsiteId", campsiteId)
+        .bind("start", startInclusive)
+        .bind("end", endExclusive)
+        .bind("afterArrivalDate", afterArrivalDate)
+        .bind("afterId", afterId)
+        .bind("limit", limit)
+        .map(ReactiveBookingService::toBookingEntity)
+        .all();
+  }
+
+  /**
+   * Checks the dates of a booking with the {@link BookingRules}: a {@link BadRequestException} is not retried.
+   */
+  private Mono<Void> checkRules(BookingEntity bookingEntity) {
+    return Mono.fromRunnable(() -> bookingRules.check(bookingEntity.getArrivalDate(),
+        bookingEntity.getDepartureDate()));
+  }
+
+  /**
+   * Inserts a new booking in a transaction, once its dates are checked with the reservation engine.
+   *
+   * @return the added booking, with its id.
+   */
+  private Mono<BookingEntity> insert(BookingEntity bookingEntity) {
+    final var campsiteId = bookingEntity.getCampsiteId();
+    final var arrivalDate = bookingEntity.getArrivalDate();
+    final var departureDate = bookingEntity.getDepartureDate();
+    if (reservationEngine == ReservationEngine.INVENTORY) {
+      return createDays(campsiteId, arrivalDate, departureDate)
+          .then(nextId()
+              .map(id -> copyOf(bookingEntity, id, 0))
+              .flatMap(addedBookingEntity -> insertBooking(addedBookingEntity)
+                  .then(claim(addedBookingEntity))
+                  .then(insertBookingDates(addedBookingEntity))
+                  .thenReturn(addedBookingEntity))
+              .as(readCommittedTransaction::transactional));
+    }
+    return checkAvailable(campsiteId, arrivalDate, departureDate)
+        .then(nextId())
+        .map(id -> copyOf(bookingEntity, id, 0))
+        .flatMap(addedBookingEntity -> insertBooking(addedBookingEntity)
+            .then(insertBookingDates(addedBookingEntity))
+            .thenReturn(addedBookingEntity))
+        .as(serializableTransaction::transactional);
+  }
+
+  /**
+   * Replaces a booking by the updated booking in a transaction, once the new dates are checked with the reservation
+   * engine.
+   */
+  private Mono<BookingEntity> replace(BookingEntity oldBookingEntity, BookingEntity updatedBookingEntity) {
+    final var campsiteId = updatedBookingEntity.getCampsiteId();
+    final var arrivalDate = updatedBookingEntity.getArrivalDate();
+    final var departureDate = updatedBookingEntity.getDepartureDate();
+    if (reservationEngine == ReservationEngine.INVENTORY) {
+      // The days of the old booking can be claimed again by the updated booking
+      return createDays(campsiteId, arrivalDate, departureDate)
+          .then(deleteBookingDates(oldBookingEntity)
+              .then(releaseDays(oldBookingEntity.getId()))
+              .then(updateBooking(updatedBookingEntity, oldBookingEntity.getVersion()))
+              .then(claim(updatedBookingEntity))
+              .then(insertBookingDates(updatedBookingEntity))
+              .thenReturn(updatedBookingEntity)
+              .as(readCommittedTransaction::transactional));
+    }
+    return deleteBookingDates(oldBookingEntity)
+        .then(checkAvailable(campsiteId, arrivalDate, departureDate))
+        .then(updateBooking(updatedBookingEntity, oldBookingEntity.getVersion()))
+        .then(insertBookingDates(updatedBookingEntity))
+        .thenReturn(updatedBookingEntity)
+        .as(serializableTransaction::transactional);
+  }
+
+  /**
+   * Creates the missing days of the inventory (see {@link InventoryManager#createDays(long, LocalDate, LocalDate)}).
+   * JPA is blocking: the days are created on the bounded elastic scheduler, not on the event loop.
+   */
+  private Mono<Void> createDays(long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    return Mono.<Void>fromRunnable(() -> inventoryManager.createDays(campsiteId, startInclusive, endExclusive))
+        .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  /**
+   * Claims the days of a booking in the {@link InventoryDay} table with 1 conditional update, like the
+   * {@link BookingService}. The booking must have an id.
+   *
+   * @return an empty Mono, or an {@link AlreadyBookedException} if at least 1 day is not available: the transaction
+   *     is then rolled back, which releases the days claimed by the booking.
+   */
+  private Mono<Void> claim(BookingEntity bookingEntity) {
+    return databaseClient.sql("update inventory_day set booking_id = :bookingId"
+        + " where campsite_id = :campsiteId and date >= :start and date < :end and booking_id is null")
+        .bind("bookingId", bookingEntity.getId())
+        .bind("campsiteId", bookingEntity.getCampsiteId())
+        .bind("start", bookingEntity.getArrivalDate())
+        .bind("end", bookingEntity.getDepartureDate())
+        .fetch()
+        .rowsUpdated()
+        .filter(claimedDays -> claimedDays != bookingEntity.dayRange().length())
+        .flatMap(claimedDays -> databaseClient.sql("select date from inventory_day"
+            + " where campsite_id = :campsiteId and date >= :start and date < :end"
+            + " and booking_id is not null and booking_id <> :bookingId order by date")
+            .bind("campsiteId", bookingEntity.getCampsiteId())
+            .bind("start", bookingEntity.getArrivalDate())
+            .bind("end", bookingEntity.getDepartureDate())
+            .bind("bookingId", bookingEntity.getId())
+            .map(row -> row.get("date", LocalDate.class))
+            .all()
+            .collectList())
+        .flatMap(claimedDates -> Mono.error(new AlreadyBookedException("Dates " + claimedDates + " are not available")))
+        .then();
+  }
+
+  /**
+   * Releases the days claimed by a booking in the {@link InventoryDay} table.
+   */
+  private Mono<Integer> releaseDays(long bookingId) {
+    return databaseClient.sql("update inventory_day set booking_id = null where booking_id = :bookingId")
+        .bind("bookingId", bookingId)
+        .fetch()
+        .rowsUpdated();
+  }
+
+  /**
+   * Selects for update the booking dates of a campsite between startInclusive and endExclusive.
+   *
+   * @return an empty Mono, or an {@link AlreadyBookedException} if at least 1 date is booked.
+   */
+  private Mono<Void> checkAvailable(long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    return databaseClient.sql("select date from booking_date"
+        + " where campsite_id = :campsiteId and date >= :start and date < :end order by date for update")
+        .bind("campsiteId", campsiteId)
+        .bind("start", startInclusive)
+        .bind("end", endExclusive)
+        .map(row -> row.get("date", LocalDate.class))
+        .all()
+        .collectList()
+        .flatMap(bookingDates -> bookingDates.isEmpty()
+            ? Mono.empty()
+            : Mono.error(new AlreadyBookedException("Dates " + bookingDates + " are not available")));
+  }
+
+  /**
+   * Allocates a booking id from the sequence of the {@link BookingEntity}, like Hibernate: each value hi of the
+   * sequence reserves the block of ids ]hi - {@value BookingEntity#ID_ALLOCATION_SIZE}, hi] (pooled optimizer), and
+   * the sequence is only called when the current block is exhausted.
+   * <p>The blocks fetched concurrently replace each other: the remaining ids of the replaced block are never used.</p>
+   */
+  private Mono<Long> nextId() {
+    return Mono.defer(() -> {
+      final var id = nextIdOfBlock();
+      if (id > 0) {
+        return Mono.just(id);
+      }
+      return databaseClient.sql("select nextval('booking_id_seq') as hi")
+          .map(row -> row.get("hi", Long.class))
+          .one()
+          .map(this::firstIdOfBlock);
+    });
+  }
+
+  /**
+   * Returns the next id of the current block, or 0 if the block is exhausted.
+   */
+  private synchronized long nextIdOfBlock() {
+    return nextId <= lastId ? nextId++ : 0;
+  }
+
+  /**
+   * Starts the block of ids below hi, and returns its first id.
+   */
+  private synchronized long firstIdOfBlock(long hi) {
+    // The first value of the sequence (1) only reserves itself
+    nextId = Math.max(hi - BookingEntity.ID_ALLOCATION_SIZE + 1, 1);
+    lastId = hi;
+    return nextId++;
+  }
+
+  private Mono<Integer> insertBooking(BookingEntity bookingEntity) {
+    return databaseClient.sql("insert into booking"
+        + " (id, version, campsite_id, email, fullname, arrival_date, departure_date)"
+        + " values (:id, :version, :campsiteId, :email, :fullname, :arrivalDate, :departureDate)")
+        .bind("id", bookingEntity.getId())
+        .bind("version", bookingEntity.getVersion())
+        .bind("campsiteId", bookingEntity.getCampsiteId())
+        .bind("email", bookingEntity.getEmail())
+        .bind("fullname", bookingEntity.getFullname())
+        .bind("arrivalDate", bookingEntity.getArrivalDate())
+        .bind("departureDate", bookingEntity.getDepartureDate())
+        .fetch()
+        .rowsUpdated();
+  }
+
+  /**
+   * Updates the booking if its version has not changed.
+   *
+   * @return an {@link OptimisticLockingFailureException} if the booking has been modified or deleted concurrently.
+   */
+  private Mono<Integer> updateBooking(BookingEntity bookingEntity, long expectedVersion) {
+    return databaseClient.sql("update booking set version = :version, email = :email, fullname = :fullname,"
+        + " arrival_date = :arrivalDate, departure_date = :departureDate"
+        + " where id = :id and version = :expectedVersion")
+        .bind("version", bookingEntity.getVersion())
+        .bind("email", bookingEntity.getEmail())
+        .bind("fullname", bookingEntity.getFullname())
+        .bind("arrivalDate", bookingEntity.getArrivalDate())
+        .bind("departureDate", bookingEntity.getDepartureDate())
+        .bind("id", bookingEntity.getId())
+        .bind("expectedVersion", expectedVersion)
+        .fetch()
+        .rowsUpdated()
+        .filter(rowsUpdated -> rowsUpdated == 1)
+        .switchIfEmpty(Mono.error(() -> new OptimisticLockingFailureException(
+            "Booking " + bookingEntity.getId() + " has been modified concurrently")));
+  }
+
+  /**
+   * Inserts the booking dates of a booking with 1 statement.
+   * <p>Could fail with a DataIntegrityViolationException (primary key constraint).</p>
+   */
+  private Mono<Integer> insertBookingDates(BookingEntity bookingEntity) {
+    final var dayRange = bookingEntity.dayRange();
+    final var sql = new StringBuilder("insert into booking_date (campsite_id, date, booking_id) values ");
+    for (var i = 0; i < dayRange.length(); i++) {
+      sql.append(i == 0 ? "" : ", ").append("(:campsiteId, :date").append(i).append(", :bookingId)");
+    }
+    var spec = databaseClient.sql(sql.toString())
+        .bind("campsiteId", bookingEntity.getCampsiteId())
+        .bind("bookingId", bookingEntity.getId());
+    for (var i = 0; i < dayRange.length(); i++) {
+      spec = spec.bind("date" + i, LocalDate.ofEpochDay(dayRange.getStartEpochDay() + i));
+    }
+    return spec.fetch().rowsUpdated();
+  }
+
+  private Mono<Integer> deleteBookingDates(BookingEntity bookingEntity) {
+    return databaseClient.sql("delete from booking_date where booking_id = :bookingId"
+        + " or (booking_id is null and campsite_id = :campsiteId and date >= :start and date < :end)")
+        .bind("bookingId", bookingEntity.getId())
+        .bind("campsiteId", bookingEntity.getCampsiteId())
+        .bind("start", bookingEntity.getArrivalDate())
+        .bind("end", bookingEntity.getDepartureDate())
+        .fetch()
+        .rowsUpdated();
+  }
+
+  private static BookingEntity copyOf(BookingEntity bookingEntity, long id, long version) {
+    return BookingEntity.builder()
+        .id(id)
+        .version(version)
+        .campsiteId(bookingEntity.getCampsiteId())
+        .email(bookingEntity.getEmail())
+        .fullname(bookingEntity.getFullname())
+        .arrivalDate(bookingEntity.getArrivalDate())
+        .departureDate(bookingEntity.getDepartureDate())
+        .build();
+  }
+
+  private static BookingEntity toBookingEntity(Row row) {
+    return BookingEntity.builder()
+        .id(row.get("id", Long.class))
+        .version(row.get("version", Long.class))
+        .campsiteId(row.get("campsite_id", Long.class))
+        .email(row.get("email", String.class))
+        .fullname(row.get("fullname", String.class))
+        .arrivalDate(row.get("arrival_date", LocalDate.class))
+        .departureDate(row.get("departure_date", LocalDate.class))
+        .build();
+  }
+}
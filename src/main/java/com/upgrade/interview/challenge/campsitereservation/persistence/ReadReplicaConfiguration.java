@@ -0,0 +1,59 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Data sources of the primary database and of its read replica, each with its own connection pool.
+ * <p>Enabled with {@code campsite.read-replica.url}: the read-only transactions are routed to the replica (see
+ * {@link ReadReplicaRoutingDataSource}), and the other transactions to the primary database configured by
+ * {@code spring.datasource}. The replication itself is done by the database.</p>
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "campsite.read-replica", name = "url")
+public class ReadReplicaConfiguration {
+
+  @Bean
+  public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+    final var dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    dataSource.setPoolName("primary");
+    return dataSource;
+  }
+
+  @Bean
+  public HikariDataSource replicaDataSource(CampsiteConfiguration configuration) {
+    final var readReplica = configuration.getReadReplica();
+    final var dataSource = DataSourceBuilder.create()
+        .type(HikariDataSource.class)
+        .url(readReplica.getUrl())
+        .username(readReplica.getUsername())
+        .password(readReplica.getPassword())
+        .build();
+    dataSource.setPoolName("replica");
+    dataSource.setMaximumPoolSize(readReplica.getMaxPoolSize());
+    dataSource.setReadOnly(true);
+    return dataSource;
+  }
+
+  /**
+   * The data source used by JPA: the connections are obtained lazily, so that they are routed once the transaction is
+   * declared read-only.
+   */
+  @Bean
+  @Primary
+  public DataSource dataSource(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource) {
+    final var routingDataSource = new ReadReplicaRoutingDataSource(primaryDataSource, replicaDataSource);
+    routingDataSource.afterPropertiesSet();
+    return new LazyConnectionDataSourceProxy(routingDataSource);
+  }
+}
@@ -0,0 +1,45 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Routes the connections of the read-only transactions to the read replica, and the other connections to the primary
+ * database.
+ * <p>The route is determined when the connection is obtained: this data source must be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, so that the connection of a transaction
+ * is obtained by its first statement, once the transaction is declared read-only. A read-only transaction goes to the
+ * primary database if the {@link ReplicaStalenessGuard} requires it.</p>
+ * <p>Note that the methods of the repositories called outside of a transaction are read-only transactions.</p>
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+  private enum Route {
+    PRIMARY, REPLICA
+  }
+
+  private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+  public ReadReplicaRoutingDataSource(DataSource primaryDataSource, DataSource replicaDataSource) {
+    setTargetDataSources(Map.of(Route.PRIMARY, primaryDataSource, Route.REPLICA, replicaDataSource));
+    setDefaultTargetDataSource(primaryDataSource);
+  }
+
+  /**
+   * Routes the read-only transaction of the current thread to the primary database, until it is reset.
+   */
+  static void setPrimaryRequired(boolean primaryRequired) {
+    PRIMARY_REQUIRED.set(primaryRequired);
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !PRIMARY_REQUIRED.get()
+        ? Route.REPLICA
+        : Route.PRIMARY;
+  }
+}
@@ -0,0 +1,101 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.time.Duration;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+
+/**
+ * Read-your-writes guard of the read replica: the bookings and the campsites written by this instance during the
+ * maximum replication lag ({@code campsite.read-replica.max-lag}) are read from the primary database.
+ * <p>A read-only transaction declares what it reads before its first statement (see
+ * {@link ReadReplicaRoutingDataSource}). The guard is disabled if there is no read replica, or if the maximum lag is
+ * 0.</p>
+ */
+@Component
+public class ReplicaStalenessGuard {
+
+  private final boolean enabled;
+
+  private final Cache<Long, Boolean> recentBookings;
+
+  private final Cache<Long, Boolean> recentCampsites;
+
+  public ReplicaStalenessGuard(CampsiteConfiguration configuration) {
+    this(configuration.getReadReplica().getUrl() == null ? Duration.ZERO : configuration.getReadReplica().getMaxLag(),
+        Ticker.systemTicker());
+  }
+
+  ReplicaStalenessGuard(Duration maxLag, Ticker ticker) {
+    this.enabled = !maxLag.isNegative() && !maxLag.isZero();
+    this.recentBookings = CacheBuilder.newBuilder().expireAfterWrite(maxLag).ticker(ticker).build();
+    this.recentCampsites = CacheBuilder.newBuilder().expireAfterWrite(maxLag).ticker(ticker).build();
+  }
+
+  /**
+   * Records a committed write of a booking of a campsite.
+   */
+  public void recordWrite(long campsiteId, long bookingId) {
+    if (enabled) {
+      recentBookings.put(bookingId, Boolean.TRUE);
+      recentCampsites.put(campsiteId, Boolean.TRUE);
+    }
+  }
+
+  /**
+   * Routes the current read-only transaction to the primary database if the booking has been written recently.
+   */
+  public void beforeReadBooking(long bookingId) {
+    requirePrimaryIf(isRecentBooking(bookingId));
+  }
+
+  /**
+   * Routes the current read-only transaction to the primary database if a booking of the campsite has been written
+   * recently.
+   */
+  public void beforeReadCampsite(long campsiteId) {
+    requirePrimaryIf(isRecentCampsite(campsiteId));
+  }
+
+  /**
+   * Routes the current read-only transaction to the primary database if any booking has been written recently.
+   */
+  public void beforeReadAll() {
+    requirePrimaryIf(isAnyRecent());
+  }
+
+  boolean isRecentBooking(long bookingId) {
+    return enabled && recentBookings.getIfPresent(bookingId) != null;
+  }
+
+  boolean isRecentCampsite(long campsiteId) {
+    return enabled && recentCampsites.getIfPresent(campsiteId) != null;
+  }
+
+  boolean isAnyRecent() {
+    if (!enabled) {
+      return false;
+    }
+    // The expired entries are only counted until they are cleaned up
+    recentCampsites.cleanUp();
+    return recentCampsites.size() > 0;
+  }
+
+  private static void requirePrimaryIf(boolean recent) {
+    if (recent && TransactionSynchronizationManager.isSynchronizationActive()) {
+      ReadReplicaRoutingDataSource.setPrimaryRequired(true);
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          ReadReplicaRoutingDataSource.setPrimaryRequired(false);
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.TransactionManagementConfigurer;
+
+/**
+ * Selects the JPA transaction manager for the {@code @Transactional} methods.
+ * <p>The R2DBC transaction manager of the reactive stack is also defined: it is only used explicitly, with a
+ * {@link org.springframework.transaction.reactive.TransactionalOperator} (see {@link ReactiveBookingService}).</p>
+ */
+@Configuration
+public class TransactionConfiguration implements TransactionManagementConfigurer {
+
+  private final ObjectProvider<PlatformTransactionManager> transactionManager;
+
+  public TransactionConfiguration(ObjectProvider<PlatformTransactionManager> transactionManager) {
+    this.transactionManager = transactionManager;
+  }
+
+  @Override
+  public TransactionManager annotationDrivenTransactionManager() {
+    return transactionManager.getObject();
+  }
+}
@@ -0,0 +1,116 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import reactor.util.retry.Retry;
+
+/**
+ * Retries the operations which failed because of a transient failure: lock timeout, deadlock or serialization failure
+ * ({@link PessimisticLockingFailureException}), query timeout, or temporary unavailability of the database.
+ * <p>The optimistic locking failures are not retried: the entity has been modified concurrently, and a retry would fail
+ * again.</p>
+ * <p>The number of attempts is bounded, and no retry is done after the deadline. The backoff is random between 0 and
+ * an exponentially increasing maximum (full jitter), so that the conflicting operations do not retry at the same
+ * time.</p>
+ */
+@Component
+@Slf4j
+public class TransientFailureRetry {
+
+  private final CampsiteConfiguration.Retry configuration;
+
+  private final BookingMetrics bookingMetrics;
+
+  public TransientFailureRetry(CampsiteConfiguration configuration, BookingMetrics bookingMetrics) {
+    this.configuration = configuration.getRetry();
+    this.bookingMetrics = bookingMetrics;
+  }
+
+  /**
+   * Executes the action, and retries it after a transient failure.
+   *
+   * @param beforeRetry executed before each retry, to reset the state modified by the failed attempt.
+   */
+  public <T> T execute(String operation, Supplier<T> action, Runnable beforeRetry) {
+    final var deadline = System.nanoTime() + configuration.getDeadline().toNanos();
+    for (var attempt = 1; ; attempt++) {
+      try {
+        return action.get();
+      } catch (RuntimeException e) {
+        if (!isTransient(e)) {
+          throw e;
+        }
+        final var backoffInMillis = backoffInMillis(attempt);
+        if (attempt >= configuration.getMaxAttempts()
+            || System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffInMillis) >= deadline) {
+          throw e;
+        }
+        log.warn("Attempt {} of {} failed, retrying in {} ms: {}", attempt, operation, backoffInMillis, e.toString());
+        bookingMetrics.countRetry(operation, e);
+        sleep(backoffInMillis, e);
+        beforeRetry.run();
+      }
+    }
+  }
+
+  /**
+   * Executes the action, and retries it after a transient failure.
+   */
+  public <T> T execute(String operation, Supplier<T> action) {
+    return execute(operation, action, () -> {
+    });
+  }
+
+  /**
+   * Returns the retry of the reactive operations, with the same attempts, backoffs and deadline.
+   * <p>The deadline starts when this method is called.</p>
+   */
+  public Retry retrySpec(String operation) {
+    final var deadline = System.nanoTime() + configuration.getDeadline().toNanos();
+    return Retry.backoff(configuration.getMaxAttempts() - 1L, configuration.getInitialBackoff())
+        .maxBackoff(configuration.getMaxBackoff())
+        .filter(e -> isTransient(e) && System.nanoTime() < deadline)
+        .doBeforeRetry(signal -> {
+          log.warn("Attempt {} of {} failed, retrying: {}",
+              signal.totalRetries() + 1, operation, signal.failure().toString());
+          bookingMetrics.countRetry(operation, (RuntimeException) signal.failure());
+        })
+        .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+  }
+
+  /**
+   * Returns true if the failure is transient: lock failure, query timeout or temporary unavailability of the database.
+   */
+  public static boolean isTransient(Throwable throwable) {
+    return throwable instanceof PessimisticLockingFailureException
+        || throwable instanceof QueryTimeoutException
+        || throwable instanceof TransientDataAccessResourceException;
+  }
+
+  /**
+   * Returns a random backoff between 0 and min(maxBackoff, initialBackoff * 2^(attempt - 1)).
+   */
+  private long backoffInMillis(int attempt) {
+    final var maxBackoff = Math.min(configuration.getMaxBackoff().toMillis(),
+        configuration.getInitialBackoff().toMillis() << Math.min(attempt - 1, 20));
+    return ThreadLocalRandom.current().nextLong(maxBackoff + 1);
+  }
+
+  private static void sleep(long millis, RuntimeException failure) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw failure;
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package com.upgrade.interview.challenge.campsitereservation.rest;
+
+import java.time.LocalDate;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * The availabilities of a date range, encoded as a bitmap.
+ */
+@Value
+@Builder
+@Schema(title = "Bitmap of the available dates")
+public class AvailabilityBitmap {
+
+  @Schema(description = "Start date (included)")
+  LocalDate start;
+
+  @Schema(description = "End date (excluded)")
+  LocalDate end;
+
+  @Schema(description = "Base64 bitmap: the bit i % 8 of the byte i / 8 is set when the date start + i is available")
+  String bitmap;
+}
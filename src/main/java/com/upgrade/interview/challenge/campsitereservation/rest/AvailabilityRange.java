@@ -0,0 +1,22 @@
+package com.upgrade.interview.challenge.campsitereservation.rest;
+
+import java.time.LocalDate;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * A run of consecutive available dates.
+ */
+@Value
+@Builder
+@Schema(title = "Range of available dates")
+public class AvailabilityRange {
+
+  @Schema(description = "First available date (included)")
+  LocalDate from;
+
+  @Schema(description = "End of the range (excluded)")
+  LocalDate to;
+}
@@ -18,19 +18,34 @@ import lombok.Value;
 @BookingConstraint
 public class Booking {
 
-  @Email(message = "Email should be valid")
-  @NotBlank(message = "Email cannot be blank")
+  // Messages of the constraints, also checked without the Validator by the batch (see BookingController)
+  static final String EMAIL_INVALID = "Email should be valid";
+
+  static final String EMAIL_BLANK = "Email cannot be blank";
+
+  static final String FULLNAME_BLANK = "Fullname cannot be blank";
+
+  static final String ARRIVAL_DATE_NOT_FUTURE = "ArrivalDate should be in the future";
+
+  static final String ARRIVAL_DATE_MANDATORY = "ArrivalDate is mandatory";
+
+  static final String DEPARTURE_DATE_NOT_FUTURE = "DepartureDate should be in the future";
+
+  static final String DEPARTURE_DATE_MANDATORY = "DepartureDate is mandatory";
+
+  @Email(message = EMAIL_INVALID)
+  @NotBlank(message = EMAIL_BLANK)
   String email;
 
-  @NotBlank(message = "Fullname cannot be blank")
+  @NotBlank(message = FULLNAME_BLANK)
   String fullname;
 
-  @Future(message = "ArrivalDate should be in the future")
-  @NotNull(message = "ArrivalDate is mandatory")
+  @Future(message = ARRIVAL_DATE_NOT_FUTURE)
+  @NotNull(message = ARRIVAL_DATE_MANDATORY)
   LocalDate arrivalDate;
 
-  @Future(message = "DepartureDate should be in the future")
-  @NotNull(message = "DepartureDate is mandatory")
+  @Future(message = DEPARTURE_DATE_NOT_FUTURE)
+  @NotNull(message = DEPARTURE_DATE_MANDATORY)
   LocalDate departureDate;
 
   // This is only used in the response, to return the id of a booking
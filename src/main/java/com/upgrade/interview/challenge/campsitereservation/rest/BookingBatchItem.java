@@ -0,0 +1,26 @@
+package com.upgrade.interview.challenge.campsitereservation.rest;
+
+import org.springframework.http.HttpStatus;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Result of 1 booking of a batch.
+ */
+@Value
+@Builder
+@Schema(title = "Result of a booking of a batch")
+public class BookingBatchItem {
+
+  @Schema(description = "OK if the booking has been added, BAD_REQUEST if it is invalid, CONFLICT if the dates are not"
+      + " available")
+  HttpStatus status;
+
+  @Schema(description = "Id of the added booking (null if the booking has not been added)")
+  Long id;
+
+  @Schema(description = "Reason why the booking has not been added")
+  String message;
+}
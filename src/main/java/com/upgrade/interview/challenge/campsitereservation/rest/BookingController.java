@@ -1,15 +1,32 @@
 package com.upgrade.interview.challenge.campsitereservation.rest;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.text.MessageFormat;
+import java.time.Clock;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
 
-import org.springframework.dao.DataAccessException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -18,12 +35,23 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+import com.upgrade.interview.challenge.campsitereservation.DayRange;
 import com.upgrade.interview.challenge.campsitereservation.exception.AlreadyBookedException;
 import com.upgrade.interview.challenge.campsitereservation.exception.BadRequestException;
 import com.upgrade.interview.challenge.campsitereservation.exception.BookingNotFoundException;
+import com.upgrade.interview.challenge.campsitereservation.persistence.BatchAddResult;
 import com.upgrade.interview.challenge.campsitereservation.persistence.BookingEntity;
 import com.upgrade.interview.challenge.campsitereservation.persistence.BookingService;
+import com.upgrade.interview.challenge.campsitereservation.persistence.GroupCommitPipeline;
+import com.upgrade.interview.challenge.campsitereservation.persistence.OccupancyIndex;
+import com.upgrade.interview.challenge.campsitereservation.validation.BookingRules;
 import io.swagger.v3.oas.annotations.ExternalDocumentation;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.Operation;
@@ -34,6 +62,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @Slf4j
 @OpenAPIDefinition(
     externalDocs = @ExternalDocumentation(description = "https://github.com/nicolasbrouard/campsite-reservation"),
@@ -50,31 +79,244 @@ public class BookingController {
   @SuppressWarnings("java:S1075")
   static final String BASE_AVAILABLE_PATH = "/availabilities";
 
+  static final String WINDOWS_PATH = BASE_AVAILABLE_PATH + "/windows";
+
+  // Prefix of the paths of a campsite. The paths without this prefix address the default campsite.
+  @SuppressWarnings("java:S1075")
+  static final String CAMPSITE_PATH = "/campsites/{campsiteId}";
+
+  static final String AVAILABILITY_RANGES_JSON_VALUE = "application/vnd.campsite.availability-ranges+json";
+
+  static final String AVAILABILITY_BITMAP_JSON_VALUE = "application/vnd.campsite.availability-bitmap+json";
+
+  static final int MAX_PAGE_SIZE = 1000;
+
+  static final int MAX_BATCH_SIZE = 100;
+
+  static final int DEFAULT_WINDOW_LIMIT = 10;
+
+  // Bounds used when the date filters are not specified (supported by all the databases, unlike LocalDate.MIN/MAX)
+  static final LocalDate MIN_DATE = LocalDate.of(1, 1, 1);
+
+  static final LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+
   private final BookingService bookingService;
 
-  public BookingController(BookingService bookingService) {
+  private final ObjectMapper objectMapper;
+
+  private final Validator validator;
+
+  private final BookingRules bookingRules;
+
+  // Null if the group commit is disabled
+  private final GroupCommitPipeline groupCommitPipeline;
+
+  private final long defaultCampsiteId;
+
+  private final Clock clock;
+
+  public BookingController(BookingService bookingService, ObjectMapper objectMapper, Validator validator,
+                           BookingRules bookingRules, ObjectProvider<GroupCommitPipeline> groupCommitPipeline,
+                           CampsiteConfiguration configuration, Clock clock) {
     this.bookingService = bookingService;
+    this.objectMapper = objectMapper;
+    this.validator = validator;
+    this.bookingRules = bookingRules;
+    this.groupCommitPipeline = groupCommitPipeline.getIfAvailable();
+    this.defaultCampsiteId = configuration.getDefaultCampsiteId();
+    this.clock = clock;
   }
 
-  @Operation(summary = "Get the list of all reservations.")
-  @GetMapping(path = BASE_PATH)
-  public Stream<Booking> getBookingList() {
-    return bookingService.findAll()
-        .stream()
-        .map(Booking::createFrom);
+  @Operation(summary = "Get the list of all reservations, sorted by arrival date.",
+      description = "The JSON array is streamed from a database cursor.")
+  @GetMapping(path = {BASE_PATH, CAMPSITE_PATH + BASE_PATH})
+  public ResponseEntity<StreamingResponseBody> getBookingList(@PathVariable(required = false)
+                                                              @Parameter(name = "Campsite id",
+                                                                  description = "Id of the campsite, default: campsite.default-campsite-id")
+                                                                  Long campsiteId,
+                                                              @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                              @RequestParam(required = false)
+                                                              @Parameter(name = "From",
+                                                                  description = "Minimum arrival date (included)")
+                                                                  LocalDate from,
+                                                              @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                              @RequestParam(required = false)
+                                                              @Parameter(name = "To",
+                                                                  description = "Maximum arrival date (excluded)")
+                                                                  LocalDate to) {
+    final var campsite = campsiteOrDefault(campsiteId);
+    final var startInclusive = from == null ? MIN_DATE : from;
+    final var endExclusive = to == null ? MAX_DATE : to;
+    log.info("Get bookings of campsite {} arriving between {} and {}", campsite, startInclusive, endExclusive);
+    final StreamingResponseBody body = outputStream -> {
+      try (var generator = objectMapper.getFactory().createGenerator(outputStream)) {
+        generator.writeStartArray();
+        bookingService.forEach(campsite, startInclusive, endExclusive, bookingEntity -> write(generator, bookingEntity));
+        generator.writeEndArray();
+      }
+    };
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
   }
 
-  @Operation(summary = "Get the information of the reservation with the given id.")
-  @GetMapping(path = BASE_PATH + "/{id}")
-  public Booking getBooking(@PathVariable long id) {
-    return bookingService.findById(id)
+  private static void write(JsonGenerator generator, BookingEntity bookingEntity) {
+    try {
+      generator.writeObject(Booking.createFrom(bookingEntity));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Operation(summary = "Get a page of reservations, sorted by arrival date.",
+      description = "The next page is requested with the cursor returned in the current page.")
+  @GetMapping(path = {BASE_PATH, CAMPSITE_PATH + BASE_PATH}, params = {"limit", "!overlapping"})
+  public BookingPage getBookingPage(@PathVariable(required = false)
+                                    @Parameter(name = "Campsite id",
+                                        description = "Id of the campsite, default: campsite.default-campsite-id")
+                                        Long campsiteId,
+                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                    @RequestParam(required = false)
+                                    @Parameter(name = "From", description = "Minimum arrival date (included)")
+                                        LocalDate from,
+                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                    @RequestParam(required = false)
+                                    @Parameter(name = "To", description = "Maximum arrival date (excluded)")
+                                        LocalDate to,
+                                    @RequestParam
+                                    @Parameter(name = "Limit", description = "Maximum number of reservations (1 to 1000)")
+                                        int limit,
+                                    @RequestParam(required = false)
+                                    @Parameter(name = "Cursor", description = "Cursor returned by the previous page")
+                                        String cursor) {
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new BadRequestException("Limit " + limit + " should be between 1 and " + MAX_PAGE_SIZE);
+    }
+    final var startInclusive = from == null ? MIN_DATE : from;
+    final var endExclusive = to == null ? MAX_DATE : to;
+    // The first page starts at the start date (the ids are positive)
+    var afterArrivalDate = startInclusive;
+    var afterId = 0L;
+    if (cursor != null) {
+      final var separator = cursor.lastIndexOf(':');
+      try {
+        afterArrivalDate = LocalDate.parse(cursor.substring(0, Math.max(separator, 0)));
+        afterId = Long.parseLong(cursor.substring(separator + 1));
+      } catch (DateTimeParseException | NumberFormatException e) {
+        throw new BadRequestException(MessageFormat.format("Invalid cursor {0}", cursor));
+      }
+    }
+    final var campsite = campsiteOrDefault(campsiteId);
+    log.info("Get {} bookings of campsite {} arriving between {} and {} after {}",
+        limit, campsite, startInclusive, endExclusive, cursor);
+    final var bookingEntities = bookingService.findPage(
+        campsite, startInclusive, endExclusive, afterArrivalDate, afterId, limit);
+    final var last = bookingEntities.isEmpty() ? null : bookingEntities.get(bookingEntities.size() - 1);
+    return BookingPage.builder()
+        .bookings(bookingEntities.stream().map(Booking::createFrom).collect(Collectors.toList()))
+        // A full page may be followed by other bookings
+        .nextCursor(bookingEntities.size() == limit ? last.getArrivalDate() + ":" + last.getId() : null)
+        .build();
+  }
+
+  @Operation(summary = "Get the reservations overlapping a date range, sorted by arrival date.",
+      description = "The reservations are found in an in-memory interval index, and read by id. They are not paged: "
+          + "the range spans at most 1000 days.")
+  @GetMapping(path = {BASE_PATH, CAMPSITE_PATH + BASE_PATH}, params = "overlapping")
+  public List<Booking> getOverlappingBookings(@PathVariable(required = false)
+                                              @Parameter(name = "Campsite id",
+                                                  description = "Id of the campsite, default: campsite.default-campsite-id")
+                                                  Long campsiteId,
+                                              @RequestParam
+                                              @Parameter(name = "Overlapping",
+                                                  description = "Date range from,to (to excluded), for example 2021-04-17,2021-04-20")
+                                                  String overlapping,
+                                              @RequestParam(required = false)
+                                              @Parameter(hidden = true)
+                                                  Integer limit) {
+    checkNotPaged(limit);
+    final var campsite = campsiteOrDefault(campsiteId);
+    final var dayRange = overlappingRange(overlapping);
+    log.info("Get bookings of campsite {} overlapping {}", campsite, dayRange);
+    return bookingService.findOverlapping(campsite, dayRange.startInclusive(), dayRange.endExclusive()).stream()
         .map(Booking::createFrom)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Rejects a limit on the overlapping bookings, rather than ignoring it: they are not paged.
+   */
+  static void checkNotPaged(Integer limit) {
+    if (limit != null) {
+      throw new BadRequestException("The overlapping bookings are not paged, limit " + limit + " is not supported");
+    }
+  }
+
+  /**
+   * Parses the date range {@code from,to} of the overlapping bookings.
+   * <p>The bookings of a campsite do not overlap each other: a range of at most {@value #MAX_PAGE_SIZE} days overlaps
+   * at most {@value #MAX_PAGE_SIZE} bookings.</p>
+   *
+   * @throws BadRequestException if the dates are invalid, if the start date is after the end date, or if the range is
+   *                             longer than {@value #MAX_PAGE_SIZE} days.
+   */
+  static DayRange overlappingRange(String overlapping) {
+    final var dates = overlapping.split(",", -1);
+    if (dates.length != 2) {
+      throw new BadRequestException(MessageFormat.format("Invalid date range {0}, expected from,to", overlapping));
+    }
+    final DayRange dayRange;
+    try {
+      final var start = LocalDate.parse(dates[0].trim());
+      dayRange = DayRange.of(start, endOrDefault(start, LocalDate.parse(dates[1].trim())));
+    } catch (DateTimeParseException e) {
+      throw new BadRequestException(MessageFormat.format("Invalid date range {0}, expected from,to", overlapping));
+    }
+    if (dayRange.length() > MAX_PAGE_SIZE) {
+      throw new BadRequestException("Date range " + overlapping + " should span at most " + MAX_PAGE_SIZE + " days");
+    }
+    return dayRange;
+  }
+
+  @Operation(summary = "Get the information of the reservation with the given id.")
+  @GetMapping(path = {BASE_PATH + "/{id}", CAMPSITE_PATH + BASE_PATH + "/{id}"})
+  public Booking getBooking(@PathVariable(required = false)
+                            @Parameter(name = "Campsite id",
+                                description = "Id of the campsite, default: campsite.default-campsite-id")
+                                Long campsiteId,
+                            @PathVariable long id, ServletWebRequest webRequest) {
+    final var campsite = campsiteOrDefault(campsiteId);
+    // The version is read from the database: the booking may have been updated by another instance
+    final long version = bookingService.findVersion(campsite, id).orElseThrow(() -> new BookingNotFoundException(id));
+    if (checkNotModified(webRequest, bookingVersion(id, version))) {
+      return null;
+    }
+    return Booking.createFrom(ofCampsite(bookingService.findById(id, version), campsite, id));
+  }
+
+  /**
+   * Returns the version of a booking, from its {@code version} column.
+   */
+  static String bookingVersion(long id, long version) {
+    return "booking-" + id + "-" + version;
+  }
+
+  /**
+   * Returns the booking if it belongs to the campsite.
+   *
+   * @throws BookingNotFoundException if the campsite has no booking with this id.
+   */
+  private static BookingEntity ofCampsite(Optional<BookingEntity> booking, long campsiteId, long id) {
+    return booking
+        .filter(bookingEntity -> bookingEntity.getCampsiteId() == campsiteId)
         .orElseThrow(() -> new BookingNotFoundException(id));
   }
 
   @Operation(summary = "Get information of the availability of the campsite for a given date range with the default being 1 month since today.")
-  @GetMapping(path = BASE_AVAILABLE_PATH)
-  public List<LocalDate> getAvailabilitiesBetween(@DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+  @GetMapping(path = {BASE_AVAILABLE_PATH, CAMPSITE_PATH + BASE_AVAILABLE_PATH})
+  public List<LocalDate> getAvailabilitiesBetween(@PathVariable(required = false)
+                                                  @Parameter(name = "Campsite id",
+                                                      description = "Id of the campsite, default: campsite.default-campsite-id")
+                                                      Long campsiteId,
+                                                  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
                                                   @RequestParam(required = false)
                                                   @Parameter(name = "Start date",
                                                       description = "Start date (included), default: today")
@@ -83,48 +325,313 @@ public class BookingController {
                                                   @RequestParam(required = false)
                                                   @Parameter(name = "End date",
                                                       description = "End date (excluded), default: start date + 1 month")
-                                                      LocalDate end) {
-    if (start == null) {
-      start = LocalDate.now();
+                                                      LocalDate end,
+                                                  ServletWebRequest webRequest) {
+    final var campsite = campsiteOrDefault(campsiteId);
+    final var startInclusive = startOrDefault(start, clock);
+    final var endExclusive = endOrDefault(startInclusive, end);
+    if (checkNotModified(webRequest, availabilitiesVersion(campsite, startInclusive, endExclusive, "dates"))) {
+      return null;
     }
+    log.info("Get availabilities of campsite {} between {} and {}", campsite, startInclusive, endExclusive);
+    return bookingService.getAvailabilities(campsite, startInclusive, endExclusive);
+  }
+
+  @Operation(summary = "Get the ranges of consecutive available dates for a given date range with the default being 1 month since today.")
+  @GetMapping(path = {BASE_AVAILABLE_PATH, CAMPSITE_PATH + BASE_AVAILABLE_PATH}, produces = AVAILABILITY_RANGES_JSON_VALUE)
+  public List<AvailabilityRange> getAvailabilityRangesBetween(@PathVariable(required = false)
+                                                              @Parameter(name = "Campsite id",
+                                                                  description = "Id of the campsite, default: campsite.default-campsite-id")
+                                                                  Long campsiteId,
+                                                              @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                              @RequestParam(required = false)
+                                                              @Parameter(name = "Start date",
+                                                                  description = "Start date (included), default: today")
+                                                                  LocalDate start,
+                                                              @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                              @RequestParam(required = false)
+                                                              @Parameter(name = "End date",
+                                                                  description = "End date (excluded), default: start date + 1 month")
+                                                                  LocalDate end,
+                                                              ServletWebRequest webRequest) {
+    final var campsite = campsiteOrDefault(campsiteId);
+    final var startInclusive = startOrDefault(start, clock);
+    final var endExclusive = endOrDefault(startInclusive, end);
+    if (checkNotModified(webRequest, availabilitiesVersion(campsite, startInclusive, endExclusive, "ranges"))) {
+      return null;
+    }
+    final var availabilityRanges = new ArrayList<AvailabilityRange>();
+    bookingService.forEachAvailabilityRange(campsite, startInclusive, endExclusive,
+        (from, to) -> availabilityRanges.add(AvailabilityRange.builder().from(from).to(to).build()));
+    return availabilityRanges;
+  }
+
+  @Operation(summary = "Get the bitmap of the available dates for a given date range with the default being 1 month since today.")
+  @GetMapping(path = {BASE_AVAILABLE_PATH, CAMPSITE_PATH + BASE_AVAILABLE_PATH}, produces = AVAILABILITY_BITMAP_JSON_VALUE)
+  public AvailabilityBitmap getAvailabilityBitmapBetween(@PathVariable(required = false)
+                                                         @Parameter(name = "Campsite id",
+                                                             description = "Id of the campsite, default: campsite.default-campsite-id")
+                                                             Long campsiteId,
+                                                         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                         @RequestParam(required = false)
+                                                         @Parameter(name = "Start date",
+                                                             description = "Start date (included), default: today")
+                                                             LocalDate start,
+                                                         @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                         @RequestParam(required = false)
+                                                         @Parameter(name = "End date",
+                                                             description = "End date (excluded), default: start date + 1 month")
+                                                             LocalDate end,
+                                                         ServletWebRequest webRequest) {
+    final var campsite = campsiteOrDefault(campsiteId);
+    final var startInclusive = startOrDefault(start, clock);
+    final var endExclusive = endOrDefault(startInclusive, end);
+    if (checkNotModified(webRequest, availabilitiesVersion(campsite, startInclusive, endExclusive, "bitmap"))) {
+      return null;
+    }
+    return AvailabilityBitmap.builder()
+        .start(startInclusive)
+        .end(endExclusive)
+        .bitmap(Base64.getEncoder().encodeToString(
+            bookingService.getAvailabilityBitmap(campsite, startInclusive, endExclusive)))
+        .build();
+  }
+
+  @Operation(summary = "Get the first dates from which the campsite is available for a number of consecutive days, for a given date range with the default being 1 month since today.",
+      description = "The windows are searched in the in-memory index, 64 dates at a time.")
+  @GetMapping(path = {WINDOWS_PATH, CAMPSITE_PATH + WINDOWS_PATH})
+  public List<LocalDate> getAvailabilityWindows(@PathVariable(required = false)
+                                                @Parameter(name = "Campsite id",
+                                                    description = "Id of the campsite, default: campsite.default-campsite-id")
+                                                    Long campsiteId,
+                                                @RequestParam
+                                                @Parameter(name = "Length", description = "Number of consecutive available days (1 to 64)")
+                                                    int length,
+                                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                @RequestParam(required = false)
+                                                @Parameter(name = "From", description = "First date of the windows (included), default: today")
+                                                    LocalDate from,
+                                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                @RequestParam(required = false)
+                                                @Parameter(name = "To",
+                                                    description = "End of the windows (excluded), default: from date + 1 month")
+                                                    LocalDate to,
+                                                @RequestParam(defaultValue = "" + DEFAULT_WINDOW_LIMIT)
+                                                @Parameter(name = "Limit", description = "Maximum number of windows (1 to 1000), default: 10")
+                                                    int limit,
+                                                ServletWebRequest webRequest) {
+    checkWindows(length, limit);
+    final var campsite = campsiteOrDefault(campsiteId);
+    final var startInclusive = startOrDefault(from, clock);
+    final var endExclusive = endOrDefault(startInclusive, to);
+    if (checkNotModified(webRequest,
+        availabilitiesVersion(campsite, startInclusive, endExclusive, "windows-" + length + "-" + limit))) {
+      return null;
+    }
+    return bookingService.getAvailabilityWindows(campsite, startInclusive, endExclusive, length, limit);
+  }
+
+  /**
+   * Checks the length and the maximum number of the availability windows.
+   *
+   * @throws BadRequestException if the length or the limit is out of bounds.
+   */
+  static void checkWindows(int length, int limit) {
+    if (length < 1 || length > OccupancyIndex.MAX_WINDOW_LENGTH) {
+      throw new BadRequestException("Length " + length + " should be between 1 and " + OccupancyIndex.MAX_WINDOW_LENGTH);
+    }
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new BadRequestException("Limit " + limit + " should be between 1 and " + MAX_PAGE_SIZE);
+    }
+  }
+
+  /**
+   * Returns the version of the availabilities of a campsite between startInclusive and endExclusive in the given format.
+   */
+  private String availabilitiesVersion(long campsiteId, LocalDate startInclusive, LocalDate endExclusive,
+                                       String format) {
+    return bookingService.getCalendarVersion() + "-" + campsiteId + "-" + startInclusive + "-" + endExclusive + "-" + format;
+  }
+
+  /**
+   * Sets the strong ETag of the response from the version, and checks the {@code If-None-Match} header of the request.
+   * The clients must revalidate their cached responses before using them ({@code Cache-Control: no-cache}).
+   *
+   * @return true if the response has not been modified (the status 304 is set), false otherwise.
+   */
+  private static boolean checkNotModified(ServletWebRequest webRequest, String version) {
+    final var response = webRequest.getResponse();
+    if (response != null) {
+      response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+      response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    }
+    return webRequest.checkNotModified(version);
+  }
+
+  private long campsiteOrDefault(Long campsiteId) {
+    return campsiteId == null ? defaultCampsiteId : campsiteId;
+  }
+
+  /**
+   * Returns the start date, or today in the clock by default.
+   */
+  static LocalDate startOrDefault(LocalDate start, Clock clock) {
+    return start == null ? LocalDate.now(clock) : start;
+  }
+
+  /**
+   * Returns the end date, or 1 month after the start date by default.
+   *
+   * @throws BadRequestException if the start date is after the end date.
+   */
+  static LocalDate endOrDefault(LocalDate start, LocalDate end) {
     if (end == null) {
-      end = start.plusMonths(1);
+      return start.plusMonths(1);
     }
     if (start.isAfter(end)) {
       throw new BadRequestException(
           MessageFormat.format("Start date {0} is after end date {1}", start, end));
     }
-    log.info("Get availabilities between {} and {}", start, end);
-    return bookingService.getAvailabilities(start, end);
+    return end;
   }
 
   @Operation(summary = "Reserve the campsite.")
-  @PostMapping(path = BASE_PATH)
-  public Booking addBooking(@Valid @RequestBody Booking booking) {
+  @PostMapping(path = {BASE_PATH, CAMPSITE_PATH + BASE_PATH})
+  public Booking addBooking(@PathVariable(required = false)
+                            @Parameter(name = "Campsite id",
+                                description = "Id of the campsite, default: campsite.default-campsite-id")
+                                Long campsiteId,
+                            @Valid @RequestBody Booking booking) {
+    final var campsite = campsiteOrDefault(campsiteId);
     try {
-      log.info("Add booking {}", booking);
-      return Booking.createFrom(bookingService.add(BookingEntity.createFrom(booking)));
-    } catch (DataAccessException e) {
+      log.info("Add booking {} to campsite {}", booking, campsite);
+      final var bookingEntity = BookingEntity.createFrom(booking, campsite);
+      return Booking.createFrom(groupCommitPipeline == null
+          ? bookingService.add(bookingEntity)
+          : groupCommitPipeline.add(bookingEntity));
+    } catch (DataIntegrityViolationException e) {
+      // The dates have been booked concurrently (primary key of the booking dates)
       throw new AlreadyBookedException("Dates are not available");
     }
   }
 
+  @Operation(summary = "Reserve the campsite for several bookings at once.",
+      description = "The valid bookings are added in 1 transaction, except the bookings whose dates are not available."
+          + " The result of each booking is returned in the order of the request.")
+  @PostMapping(path = {BASE_PATH + "/batch", CAMPSITE_PATH + BASE_PATH + "/batch"})
+  public List<BookingBatchItem> addBookings(@PathVariable(required = false)
+                                            @Parameter(name = "Campsite id",
+                                                description = "Id of the campsite, default: campsite.default-campsite-id")
+                                                Long campsiteId,
+                                            @RequestBody List<Booking> bookings) {
+    if (bookings.isEmpty() || bookings.size() > MAX_BATCH_SIZE) {
+      throw new BadRequestException(
+          "The number of bookings " + bookings.size() + " should be between 1 and " + MAX_BATCH_SIZE);
+    }
+    final var campsite = campsiteOrDefault(campsiteId);
+    log.info("Add {} bookings to campsite {}", bookings.size(), campsite);
+    // The bookings are validated in 1 pass: the invalid bookings are not added
+    final var items = new BookingBatchItem[bookings.size()];
+    final var validBookingEntities = new ArrayList<BookingEntity>(bookings.size());
+    for (var i = 0; i < bookings.size(); i++) {
+      final var violations = validate(bookings.get(i));
+      if (violations == null) {
+        validBookingEntities.add(BookingEntity.createFrom(bookings.get(i), campsite));
+      } else {
+        items[i] = BookingBatchItem.builder().status(HttpStatus.BAD_REQUEST).message(violations).build();
+      }
+    }
+    final List<BatchAddResult> results;
+    try {
+      results = bookingService.addAll(campsite, validBookingEntities);
+    } catch (DataIntegrityViolationException e) {
+      // The dates have been booked concurrently (primary key of the booking dates)
+      throw new AlreadyBookedException("Dates are not available");
+    }
+    final var resultIterator = results.iterator();
+    for (var i = 0; i < items.length; i++) {
+      if (items[i] == null) {
+        final var result = resultIterator.next();
+        items[i] = result.isAdded()
+            ? BookingBatchItem.builder().status(HttpStatus.OK).id(result.getBookingEntity().getId()).build()
+            : BookingBatchItem.builder().status(HttpStatus.CONFLICT).message(result.getConflict()).build();
+      }
+    }
+    return Arrays.asList(items);
+  }
+
+  /**
+   * Returns the messages of the constraint violations of the booking, formatted like the errors of a single booking
+   * (see {@link BookingRules#format(List)}), or null if the booking is valid.
+   * <p>The constraints of the fields are checked directly, and the dates with the {@link BookingRules}: only the
+   * {@link javax.validation.constraints.Email} constraint is checked by the {@link Validator}. The messages are in the
+   * order of the fields, then of the rules.</p>
+   */
+  private String validate(Booking booking) {
+    if (booking == null) {
+      return "Booking cannot be null.";
+    }
+    final var violations = new ArrayList<String>();
+    if (booking.getEmail() == null || booking.getEmail().isBlank()) {
+      violations.add(Booking.EMAIL_BLANK);
+    } else {
+      validator.validateValue(Booking.class, "email", booking.getEmail()).stream()
+          .map(ConstraintViolation::getMessage)
+          .forEach(violations::add);
+    }
+    if (booking.getFullname() == null || booking.getFullname().isBlank()) {
+      violations.add(Booking.FULLNAME_BLANK);
+    }
+    final var today = LocalDate.now(clock);
+    final var arrivalDate = booking.getArrivalDate();
+    if (arrivalDate == null) {
+      violations.add(Booking.ARRIVAL_DATE_MANDATORY);
+    } else if (!arrivalDate.isAfter(today)) {
+      violations.add(Booking.ARRIVAL_DATE_NOT_FUTURE);
+    }
+    final var departureDate = booking.getDepartureDate();
+    if (departureDate == null) {
+      violations.add(Booking.DEPARTURE_DATE_MANDATORY);
+    } else if (!departureDate.isAfter(today)) {
+      violations.add(Booking.DEPARTURE_DATE_NOT_FUTURE);
+    }
+    if (arrivalDate != null && departureDate != null) {
+      violations.addAll(bookingRules.violations(arrivalDate, departureDate));
+    }
+    return violations.isEmpty() ? null : BookingRules.format(violations);
+  }
+
   @Operation(summary = "Update the reservation with the given id.")
-  @PutMapping(path = BASE_PATH + "/{id}")
-  public Booking updateBooking(@PathVariable long id, @Valid @RequestBody Booking booking) {
-    log.info("Update booking {} with {}", id, booking);
-    final var oldBookingEntity = bookingService.findById(id)
-        .orElseThrow(() -> new BookingNotFoundException(id));
-    final var newBookingEntity = BookingEntity.createFrom(booking);
-    return Booking.createFrom(bookingService.update(oldBookingEntity, newBookingEntity));
+  @PutMapping(path = {BASE_PATH + "/{id}", CAMPSITE_PATH + BASE_PATH + "/{id}"})
+  public Booking updateBooking(@PathVariable(required = false)
+                               @Parameter(name = "Campsite id",
+                                   description = "Id of the campsite, default: campsite.default-campsite-id")
+                                   Long campsiteId,
+                               @PathVariable long id, @Valid @RequestBody Booking booking) {
+    final var campsite = campsiteOrDefault(campsiteId);
+    log.info("Update booking {} of campsite {} with {}", id, campsite, booking);
+    // The old booking is read from the primary database, not from a stale read replica
+    final var oldBookingEntity = ofCampsite(bookingService.findCurrentById(id), campsite, id);
+    final var newBookingEntity = BookingEntity.createFrom(booking, campsite);
+    try {
+      return Booking.createFrom(bookingService.update(oldBookingEntity, newBookingEntity));
+    } catch (DataIntegrityViolationException e) {
+      // The dates have been booked concurrently (primary key of the booking dates)
+      throw new AlreadyBookedException("Dates are not available");
+    }
   }
 
   @Operation(summary = "Cancel the reservation with the given id.")
-  @DeleteMapping(path = BASE_PATH + "/{id}")
-  public void deleteBooking(@PathVariable long id) {
-    log.info("Delete booking {}", id);
+  @DeleteMapping(path = {BASE_PATH + "/{id}", CAMPSITE_PATH + BASE_PATH + "/{id}"})
+  public void deleteBooking(@PathVariable(required = false)
+                            @Parameter(name = "Campsite id",
+                                description = "Id of the campsite, default: campsite.default-campsite-id")
+                                Long campsiteId,
+                            @PathVariable long id) {
+    final var campsite = campsiteOrDefault(campsiteId);
+    log.info("Delete booking {} of campsite {}", id, campsite);
     try {
-      bookingService.deleteById(id);
+      bookingService.deleteById(campsite, id);
     } catch (EmptyResultDataAccessException e) {
       throw new BookingNotFoundException(id);
     }
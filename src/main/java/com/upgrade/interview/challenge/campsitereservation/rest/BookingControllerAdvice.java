@@ -4,13 +4,18 @@ import java.util.stream.Collectors;
 
 import org.springframework.beans.BeansException;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.validation.BindException;
+import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ServerWebInputException;
 
 import com.google.common.base.Throwables;
 import com.upgrade.interview.challenge.campsitereservation.exception.AlreadyBookedException;
@@ -65,7 +70,21 @@ public class BookingControllerAdvice {
   @ExceptionHandler(BindException.class)
   @ResponseStatus(HttpStatus.BAD_REQUEST)
   ErrorResponse constraintViolationHandler(BindException e) {
-    final var message = e.getBindingResult().getAllErrors()
+    return constraintViolationResponse(e.getBindingResult());
+  }
+
+  /**
+   * Reformat the messages of the constraint violation with the reactive stack (See {@link BookingValidator}.
+   */
+  @ResponseBody
+  @ExceptionHandler(WebExchangeBindException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  ErrorResponse webExchangeConstraintViolationHandler(WebExchangeBindException e) {
+    return constraintViolationResponse(e.getBindingResult());
+  }
+
+  private static ErrorResponse constraintViolationResponse(BindingResult bindingResult) {
+    final var message = bindingResult.getAllErrors()
         .stream()
         .map(DefaultMessageSourceResolvable::getDefaultMessage)
         .collect(Collectors.joining(". "))
@@ -76,6 +95,16 @@ public class BookingControllerAdvice {
         .build();
   }
 
+  /**
+   * Error when parsing the request body or a request parameter with the reactive stack
+   */
+  @ResponseBody
+  @ExceptionHandler(ServerWebInputException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  ErrorResponse serverWebInputHandler(ServerWebInputException e) {
+    return errorHandler(HttpStatus.BAD_REQUEST, e);
+  }
+
   @ResponseBody
   @ExceptionHandler(BookingNotFoundException.class)
   @ResponseStatus(HttpStatus.NOT_FOUND)
@@ -90,6 +119,31 @@ public class BookingControllerAdvice {
     return errorHandler(HttpStatus.CONFLICT, e);
   }
 
+  /**
+   * The booking has been modified concurrently
+   */
+  @ResponseBody
+  @ExceptionHandler(OptimisticLockingFailureException.class)
+  @ResponseStatus(HttpStatus.CONFLICT)
+  ErrorResponse optimisticLockingFailureHandler(OptimisticLockingFailureException e) {
+    return ErrorResponse.builder()
+        .status(HttpStatus.CONFLICT)
+        .message("The booking has been modified concurrently")
+        .build();
+  }
+
+  /**
+   * Transient failure which has not been solved by the retries (see
+   * {@link com.upgrade.interview.challenge.campsitereservation.persistence.TransientFailureRetry}): the client may
+   * retry later.
+   */
+  @ResponseBody
+  @ExceptionHandler(TransientDataAccessException.class)
+  @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+  ErrorResponse transientDataAccessHandler(TransientDataAccessException e) {
+    return errorHandler(HttpStatus.SERVICE_UNAVAILABLE, e);
+  }
+
   @ResponseBody
   @ExceptionHandler(RuntimeException.class)
   @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
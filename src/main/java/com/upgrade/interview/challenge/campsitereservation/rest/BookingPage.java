@@ -0,0 +1,21 @@
+package com.upgrade.interview.challenge.campsitereservation.rest;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * A page of bookings, sorted by arrival date and id.
+ */
+@Value
+@Builder
+@Schema(title = "Page of bookings")
+public class BookingPage {
+
+  List<Booking> bookings;
+
+  @Schema(description = "Cursor of the next page (null on the last page)")
+  String nextCursor;
+}
@@ -0,0 +1,308 @@
+package com.upgrade.interview.challenge.campsitereservation.rest;
+
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.AVAILABILITY_BITMAP_JSON_VALUE;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.AVAILABILITY_RANGES_JSON_VALUE;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.BASE_AVAILABLE_PATH;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.BASE_PATH;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.CAMPSITE_PATH;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.DEFAULT_WINDOW_LIMIT;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.MAX_DATE;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.MAX_PAGE_SIZE;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.MIN_DATE;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.WINDOWS_PATH;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.checkNotPaged;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.checkWindows;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.endOrDefault;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.overlappingRange;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.startOrDefault;
+
+import java.text.MessageFormat;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import javax.validation.Valid;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+import com.upgrade.interview.challenge.campsitereservation.exception.AlreadyBookedException;
+import com.upgrade.interview.challenge.campsitereservation.exception.BadRequestException;
+import com.upgrade.interview.challenge.campsitereservation.exception.BookingNotFoundException;
+import com.upgrade.interview.challenge.campsitereservation.persistence.BookingEntity;
+import com.upgrade.interview.challenge.campsitereservation.persistence.BookingService;
+import com.upgrade.interview.challenge.campsitereservation.persistence.ReactiveBookingService;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking version of the {@link BookingController}, with the same paths, validation and errors.
+ * <p>The bookings are read and written with the {@link ReactiveBookingService}. The availabilities are read from the
+ * in-memory index of the {@link BookingService}, which never blocks.</p>
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Slf4j
+public class ReactiveBookingController {
+
+  private final ReactiveBookingService reactiveBookingService;
+
+  private final BookingService bookingService;
+
+  private final long defaultCampsiteId;
+
+  private final Clock clock;
+
+  public ReactiveBookingController(ReactiveBookingService reactiveBookingService, BookingService bookingService,
+                                   CampsiteConfiguration configuration, Clock clock) {
+    this.reactiveBookingService = reactiveBookingService;
+    this.bookingService = bookingService;
+    this.defaultCampsiteId = configuration.getDefaultCampsiteId();
+    this.clock = clock;
+  }
+
+  @GetMapping(path = {BASE_PATH, CAMPSITE_PATH + BASE_PATH})
+  public Flux<Booking> getBookingList(@PathVariable(required = false) Long campsiteId,
+                                      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                      @RequestParam(required = false) LocalDate from,
+                                      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                      @RequestParam(required = false) LocalDate to) {
+    final var campsite = campsiteOrDefault(campsiteId);
+    final var startInclusive = from == null ? MIN_DATE : from;
+    final var endExclusive = to == null ? MAX_DATE : to;
+    log.info("Get bookings of campsite {} arriving between {} and {}", campsite, startInclusive, endExclusive);
+    return reactiveBookingService.findAll(campsite, startInclusive, endExclusive).map(Booking::createFrom);
+  }
+
+  @GetMapping(path = {BASE_PATH, CAMPSITE_PATH + BASE_PATH}, params = {"limit", "!overlapping"})
+  public Mono<BookingPage> getBookingPage(@PathVariable(required = false) Long campsiteId,
+                                          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                          @RequestParam(required = false) LocalDate from,
+                                          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                          @RequestParam(required = false) LocalDate to,
+                                          @RequestParam int limit,
+                                          @RequestParam(required = false) String cursor) {
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new BadRequestException("Limit " + limit + " should be between 1 and " + MAX_PAGE_SIZE);
+    }
+    final var startInclusive = from == null ? MIN_DATE : from;
+    final var endExclusive = to == null ? MAX_DATE : to;
+    // The first page starts at the start date (the ids are positive)
+    var afterArrivalDate = startInclusive;
+    var afterId = 0L;
+    if (cursor != null) {
+      final var separator = cursor.lastIndexOf(':');
+      try {
+        afterArrivalDate = LocalDate.parse(cursor.substring(0, Math.max(separator, 0)));
+        afterId = Long.parseLong(cursor.substring(separator + 1));
+      } catch (DateTimeParseException | NumberFormatException e) {
+        throw new BadRequestException(MessageFormat.format("Invalid cursor {0}", cursor));
+      }
+    }
+    final var campsite = campsiteOrDefault(campsiteId);
+    log.info("Get {} bookings of campsite {} arriving between {} and {} after {}",
+        limit, campsite, startInclusive, endExclusive, cursor);
+    return reactiveBookingService
+        .findPage(campsite, startInclusive, endExclusive, afterArrivalDate, afterId, limit)
+        .collectList()
+        .map(bookingEntities -> {
+          final var last = bookingEntities.isEmpty() ? null : bookingEntities.get(bookingEntities.size() - 1);
+          final var bookings = new ArrayList<Booking>(bookingEntities.size());
+          bookingEntities.forEach(bookingEntity -> bookings.add(Booking.createFrom(bookingEntity)));
+          return BookingPage.builder()
+              .bookings(bookings)
+              // A full page may be followed by other bookings
+              .nextCursor(bookingEntities.size() == limit ? last.getArrivalDate() + ":" + last.getId() : null)
+              .build();
+        });
+  }
+
+  @GetMapping(path = {BASE_PATH, CAMPSITE_PATH + BASE_PATH}, params = "overlapping")
+  public Flux<Booking> getOverlappingBookings(@PathVariable(required = false) Long campsiteId,
+                                              @RequestParam String overlapping,
+                                              @RequestParam(required = false) Integer limit) {
+    checkNotPaged(limit);
+    final var campsite = campsiteOrDefault(campsiteId);
+    final var dayRange = overlappingRange(overlapping);
+    log.info("Get bookings of campsite {} overlapping {}", campsite, dayRange);
+    return reactiveBookingService.findOverlapping(campsite, dayRange.startInclusive(), dayRange.endExclusive())
+        .map(Booking::createFrom);
+  }
+
+  @GetMapping(path = {BASE_PATH + "/{id}", CAMPSITE_PATH + BASE_PATH + "/{id}"})
+  public Mono<Booking> getBooking(@PathVariable(required = false) Long campsiteId, @PathVariable long id,
+                                  ServerWebExchange exchange) {
+    final var campsite = campsiteOrDefault(campsiteId);
+    // The version is read from the database, the booking is only read if it has been modified
+    return reactiveBookingService.findVersion(campsite, id)
+        .switchIfEmpty(Mono.error(() -> new BookingNotFoundException(id)))
+        .flatMap(version -> checkNotModified(exchange, BookingController.bookingVersion(id, version))
+            ? Mono.empty()
+            : findById(campsite, id).map(Booking::createFrom));
+  }
+
+  /**
+   * Returns the booking of the campsite with the given id, or a {@link BookingNotFoundException} if the campsite has
+   * no booking with this id.
+   */
+  private Mono<BookingEntity> findById(long campsiteId, long id) {
+    return reactiveBookingService.findById(id)
+        .filter(bookingEntity -> bookingEntity.getCampsiteId() == campsiteId)
+        .switchIfEmpty(Mono.error(() -> new BookingNotFoundException(id)));
+  }
+
+  @GetMapping(path = {BASE_AVAILABLE_PATH, CAMPSITE_PATH + BASE_AVAILABLE_PATH})
+  public Mono<List<LocalDate>> getAvailabilitiesBetween(@PathVariable(required = false) Long campsiteId,
+                                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                        @RequestParam(required = false) LocalDate start,
+                                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                        @RequestParam(required = false) LocalDate end,
+                                                        ServerWebExchange exchange) {
+    final var campsite = campsiteOrDefault(campsiteId);
+    final var startInclusive = startOrDefault(start, clock);
+    final var endExclusive = endOrDefault(startInclusive, end);
+    if (checkNotModified(exchange, availabilitiesVersion(campsite, startInclusive, endExclusive, "dates"))) {
+      return Mono.empty();
+    }
+    log.info("Get availabilities of campsite {} between {} and {}", campsite, startInclusive, endExclusive);
+    return Mono.just(bookingService.getAvailabilities(campsite, startInclusive, endExclusive));
+  }
+
+  @GetMapping(path = {BASE_AVAILABLE_PATH, CAMPSITE_PATH + BASE_AVAILABLE_PATH},
+      produces = AVAILABILITY_RANGES_JSON_VALUE)
+  public Mono<List<AvailabilityRange>> getAvailabilityRangesBetween(@PathVariable(required = false) Long campsiteId,
+                                                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                                    @RequestParam(required = false) LocalDate start,
+                                                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                                    @RequestParam(required = false) LocalDate end,
+                                                                    ServerWebExchange exchange) {
+    final var campsite = campsiteOrDefault(campsiteId);
+    final var startInclusive = startOrDefault(start, clock);
+    final var endExclusive = endOrDefault(startInclusive, end);
+    if (checkNotModified(exchange, availabilitiesVersion(campsite, startInclusive, endExclusive, "ranges"))) {
+      return Mono.empty();
+    }
+    final var availabilityRanges = new ArrayList<AvailabilityRange>();
+    bookingService.forEachAvailabilityRange(campsite, startInclusive, endExclusive,
+        (from, to) -> availabilityRanges.add(AvailabilityRange.builder().from(from).to(to).build()));
+    return Mono.just(availabilityRanges);
+  }
+
+  @GetMapping(path = {BASE_AVAILABLE_PATH, CAMPSITE_PATH + BASE_AVAILABLE_PATH},
+      produces = AVAILABILITY_BITMAP_JSON_VALUE)
+  public Mono<AvailabilityBitmap> getAvailabilityBitmapBetween(@PathVariable(required = false) Long campsiteId,
+                                                               @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                               @RequestParam(required = false) LocalDate start,
+                                                               @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                               @RequestParam(required = false) LocalDate end,
+                                                               ServerWebExchange exchange) {
+    final var campsite = campsiteOrDefault(campsiteId);
+    final var startInclusive = startOrDefault(start, clock);
+    final var endExclusive = endOrDefault(startInclusive, end);
+    if (checkNotModified(exchange, availabilitiesVersion(campsite, startInclusive, endExclusive, "bitmap"))) {
+      return Mono.empty();
+    }
+    return Mono.just(AvailabilityBitmap.builder()
+        .start(startInclusive)
+        .end(endExclusive)
+        .bitmap(Base64.getEncoder().encodeToString(
+            bookingService.getAvailabilityBitmap(campsite, startInclusive, endExclusive)))
+        .build());
+  }
+
+  @GetMapping(path = {WINDOWS_PATH, CAMPSITE_PATH + WINDOWS_PATH})
+  public Mono<List<LocalDate>> getAvailabilityWindows(@PathVariable(required = false) Long campsiteId,
+                                                      @RequestParam int length,
+                                                      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                      @RequestParam(required = false) LocalDate from,
+                                                      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                      @RequestParam(required = false) LocalDate to,
+                                                      @RequestParam(defaultValue = "" + DEFAULT_WINDOW_LIMIT) int limit,
+                                                      ServerWebExchange exchange) {
+    checkWindows(length, limit);
+    final var campsite = campsiteOrDefault(campsiteId);
+    final var startInclusive = startOrDefault(from, clock);
+    final var endExclusive = endOrDefault(startInclusive, to);
+    if (checkNotModified(exchange,
+        availabilitiesVersion(campsite, startInclusive, endExclusive, "windows-" + length + "-" + limit))) {
+      return Mono.empty();
+    }
+    return Mono.just(bookingService.getAvailabilityWindows(campsite, startInclusive, endExclusive, length, limit));
+  }
+
+  /**
+   * Returns the version of the availabilities of a campsite between startInclusive and endExclusive in the given format
+   * (same ETags as the {@link BookingController}).
+   */
+  private String availabilitiesVersion(long campsiteId, LocalDate startInclusive, LocalDate endExclusive,
+                                       String format) {
+    return bookingService.getCalendarVersion() + "-" + campsiteId + "-" + startInclusive + "-" + endExclusive
+        + "-" + format;
+  }
+
+  /**
+   * Sets the strong ETag of the response from the version, and checks the {@code If-None-Match} header of the request.
+   *
+   * @return true if the response has not been modified (the status 304 is set), false otherwise.
+   */
+  private static boolean checkNotModified(ServerWebExchange exchange, String version) {
+    final var headers = exchange.getResponse().getHeaders();
+    headers.setCacheControl(CacheControl.noCache());
+    headers.setVary(List.of(HttpHeaders.ACCEPT));
+    return exchange.checkNotModified(version);
+  }
+
+  private long campsiteOrDefault(Long campsiteId) {
+    return campsiteId == null ? defaultCampsiteId : campsiteId;
+  }
+
+  @PostMapping(path = {BASE_PATH, CAMPSITE_PATH + BASE_PATH})
+  public Mono<Booking> addBooking(@PathVariable(required = false) Long campsiteId,
+                                  @Valid @RequestBody Booking booking) {
+    final var campsite = campsiteOrDefault(campsiteId);
+    log.info("Add booking {} to campsite {}", booking, campsite);
+    return reactiveBookingService.add(BookingEntity.createFrom(booking, campsite))
+        .map(Booking::createFrom)
+        // The dates have been booked concurrently (primary key of the booking dates)
+        .onErrorMap(DataIntegrityViolationException.class,
+            e -> new AlreadyBookedException("Dates are not available"));
+  }
+
+  @PutMapping(path = {BASE_PATH + "/{id}", CAMPSITE_PATH + BASE_PATH + "/{id}"})
+  public Mono<Booking> updateBooking(@PathVariable(required = false) Long campsiteId, @PathVariable long id,
+                                     @Valid @RequestBody Booking booking) {
+    final var campsite = campsiteOrDefault(campsiteId);
+    log.info("Update booking {} of campsite {} with {}", id, campsite, booking);
+    final var newBookingEntity = BookingEntity.createFrom(booking, campsite);
+    return findById(campsite, id)
+        .flatMap(oldBookingEntity -> reactiveBookingService.update(oldBookingEntity, newBookingEntity))
+        .map(Booking::createFrom)
+        // The dates have been booked concurrently (primary key of the booking dates)
+        .onErrorMap(DataIntegrityViolationException.class,
+            e -> new AlreadyBookedException("Dates are not available"));
+  }
+
+  @DeleteMapping(path = {BASE_PATH + "/{id}", CAMPSITE_PATH + BASE_PATH + "/{id}"})
+  public Mono<Void> deleteBooking(@PathVariable(required = false) Long campsiteId, @PathVariable long id) {
+    final var campsite = campsiteOrDefault(campsiteId);
+    log.info("Delete booking {} of campsite {}", id, campsite);
+    return reactiveBookingService.deleteById(campsite, id);
+  }
+}
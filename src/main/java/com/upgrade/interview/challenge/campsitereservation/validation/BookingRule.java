@@ -0,0 +1,31 @@
+package com.upgrade.interview.challenge.campsitereservation.validation;
+
+import lombok.Value;
+
+/**
+ * Rule of the dates of a booking, evaluated by the {@link BookingRules} on epoch days.
+ * <p>The rules of the configuration are created by the {@link BookingRules}. Additional rules (for instance seasonal
+ * rules) can be declared as beans: they are evaluated after the rules of the configuration.</p>
+ */
+@Value
+public class BookingRule {
+
+  /**
+   * Message of a booking which does not respect the rule.
+   */
+  String message;
+
+  DaysPredicate predicate;
+
+  /**
+   * Predicate of the dates of a booking.
+   */
+  @FunctionalInterface
+  public interface DaysPredicate {
+    /**
+     * @return true if a booking from arrivalEpochDay to departureEpochDay, requested on todayEpochDay, respects the
+     *     rule.
+     */
+    boolean test(long arrivalEpochDay, long departureEpochDay, long todayEpochDay);
+  }
+}
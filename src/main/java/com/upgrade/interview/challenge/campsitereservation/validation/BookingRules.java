@@ -0,0 +1,144 @@
+package com.upgrade.interview.challenge.campsitereservation.validation;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+import com.upgrade.interview.challenge.campsitereservation.exception.BadRequestException;
+import lombok.Value;
+
+/**
+ * Rules of the dates of a booking: stay length, minimum and maximum days ahead of arrival, and the additional
+ * {@link BookingRule} beans.
+ * <p>The rules, and their messages, are built once from the {@link CampsiteConfiguration}. They are evaluated on epoch
+ * days, against today in the {@link Clock}: today is computed once per day. The evaluation of valid dates creates no
+ * object, so that the rules can be evaluated for each booking of the batch and streaming paths, as well as by the
+ * {@link BookingValidator} of the controllers.</p>
+ */
+@Component
+public class BookingRules {
+
+  private final Clock clock;
+
+  private final BookingRule[] rules;
+
+  private volatile Today today = new Today(0, 0, 0);
+
+  public BookingRules(CampsiteConfiguration configuration, Clock clock, ObjectProvider<BookingRule> additionalRules) {
+    this.clock = clock;
+    final var maxStayInDays = configuration.getMaxBookingDurationInDays();
+    final var minDaysAheadOfArrival = configuration.getMinDaysAheadOfArrival();
+    final var maxDaysAheadOfArrival = configuration.getMaxDaysAheadOfArrival();
+    final var allRules = new ArrayList<BookingRule>();
+    allRules.add(new BookingRule("Arrival date should be before departure date",
+        (arrival, departure, today) -> departure >= arrival));
+    // The stay of a departure before the arrival is empty
+    allRules.add(new BookingRule("The campsite can be reserved for minimum 1 day",
+        (arrival, departure, today) -> departure - arrival >= 1));
+    allRules.add(new BookingRule("The campsite can be reserved for maximum " + maxStayInDays + " days",
+        (arrival, departure, today) -> departure - arrival <= maxStayInDays));
+    allRules.add(new BookingRule(
+        "The campsite can be reserved minimum " + minDaysAheadOfArrival + " day(s) ahead of arrival",
+        (arrival, departure, today) -> arrival - today >= minDaysAheadOfArrival));
+    allRules.add(new BookingRule(
+        "The campsite can be reserved up to " + maxDaysAheadOfArrival + " day(s) in advance",
+        (arrival, departure, today) -> arrival - today <= maxDaysAheadOfArrival));
+    additionalRules.orderedStream().forEach(allRules::add);
+    this.rules = allRules.toArray(BookingRule[]::new);
+  }
+
+  /**
+   * Returns the messages of the rules which are not respected by a booking from arrivalDate to departureDate, in the
+   * order of the rules.
+   *
+   * @return an empty list if the booking respects all the rules.
+   */
+  public List<String> violations(LocalDate arrivalDate, LocalDate departureDate) {
+    return violations(arrivalDate.toEpochDay(), departureDate.toEpochDay());
+  }
+
+  /**
+   * Returns the messages of the rules which are not respected by a booking from arrivalEpochDay to departureEpochDay,
+   * in the order of the rules.
+   *
+   * @return an empty list (the same instance) if the booking respects all the rules.
+   */
+  public List<String> violations(long arrivalEpochDay, long departureEpochDay) {
+    final var todayEpochDay = todayEpochDay();
+    List<String> violations = List.of();
+    for (var rule : rules) {
+      if (!rule.getPredicate().test(arrivalEpochDay, departureEpochDay, todayEpochDay)) {
+        if (violations.isEmpty()) {
+          violations = new ArrayList<>(rules.length);
+        }
+        violations.add(rule.getMessage());
+      }
+    }
+    return violations;
+  }
+
+  /**
+   * Checks that a booking from arrivalDate to departureDate respects all the rules.
+   *
+   * @throws BadRequestException with the messages of the rules which are not respected (see {@link #format(List)}).
+   */
+  public void check(LocalDate arrivalDate, LocalDate departureDate) {
+    final var violations = violations(arrivalDate, departureDate);
+    if (!violations.isEmpty()) {
+      throw new BadRequestException(format(violations));
+    }
+  }
+
+  /**
+   * Formats violation messages like the constraint violations of a request body (see
+   * {@code BookingControllerAdvice}).
+   */
+  public static String format(List<String> violations) {
+    return String.join(". ", violations) + ".";
+  }
+
+  /**
+   * Returns true if a booking from arrivalEpochDay to departureEpochDay respects all the rules.
+   */
+  public boolean isValid(long arrivalEpochDay, long departureEpochDay) {
+    final var todayEpochDay = todayEpochDay();
+    for (var rule : rules) {
+      if (!rule.getPredicate().test(arrivalEpochDay, departureEpochDay, todayEpochDay)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the epoch day of today in the clock, computed again when the clock leaves the day.
+   */
+  long todayEpochDay() {
+    final var millis = clock.millis();
+    var current = today;
+    if (millis < current.getStartMillis() || millis >= current.getEndMillis()) {
+      final var zone = clock.getZone();
+      final var date = LocalDate.ofInstant(Instant.ofEpochMilli(millis), zone);
+      current = new Today(date.toEpochDay(), date.atStartOfDay(zone).toInstant().toEpochMilli(),
+          date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+      today = current;
+    }
+    return current.getEpochDay();
+  }
+
+  /**
+   * Epoch day of today, and its bounds in the clock (start included, end excluded).
+   */
+  @Value
+  private static class Today {
+    long epochDay;
+    long startMillis;
+    long endMillis;
+  }
+}
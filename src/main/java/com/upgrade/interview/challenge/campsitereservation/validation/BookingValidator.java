@@ -1,23 +1,22 @@
 package com.upgrade.interview.challenge.campsitereservation.validation;
 
-import static java.time.temporal.ChronoUnit.DAYS;
-
-import java.time.LocalDate;
-
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
 
 import org.springframework.stereotype.Component;
 
-import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
 import com.upgrade.interview.challenge.campsitereservation.rest.Booking;
 
+/**
+ * Validates the dates of a {@link Booking} with the {@link BookingRules}: a constraint violation is added for each rule
+ * which is not respected.
+ */
 @Component
 public class BookingValidator implements ConstraintValidator<BookingConstraint, Booking> {
-  private final CampsiteConfiguration configuration;
+  private final BookingRules bookingRules;
 
-  public BookingValidator(CampsiteConfiguration configuration) {
-    this.configuration = configuration;
+  public BookingValidator(BookingRules bookingRules) {
+    this.bookingRules = bookingRules;
   }
 
   @Override
@@ -35,47 +34,19 @@ public class BookingValidator implements ConstraintValidator<BookingConstraint,
       return true;
     }
 
-    final var daysAheadOfArrival = DAYS.between(LocalDate.now(), arrivalDate);
-
-    context.disableDefaultConstraintViolation();
-    var valid = true;
-
-    // Arrival date should be before departure date
-    if (departureDate.isBefore(arrivalDate)) {
-      valid = invalidErrorMessage(context, "Arrival date should be before departure date");
-    }
-
-    // The campsite can be reserved for min 1 days.
-    final var stayInDays = DAYS.between(arrivalDate, departureDate);
-    if (stayInDays < 1) {
-      valid = invalidErrorMessage(context, "The campsite can be reserved for minimum 1 day");
-    }
-
-    // The campsite can be reserved for max 3 days.
-    final var maxStayInDays = configuration.getMaxBookingDurationInDays();
-    if (stayInDays > maxStayInDays) {
-      valid = invalidErrorMessage(context, "The campsite can be reserved for maximum " + maxStayInDays + " days");
-    }
-
-    // The campsite can be reserved minimum 1 day(s) ahead of arrival
-    final var minDaysAheadOfArrival = configuration.getMinDaysAheadOfArrival();
-    if (daysAheadOfArrival < minDaysAheadOfArrival) {
-      valid = invalidErrorMessage(context, "The campsite can be reserved minimum " + minDaysAheadOfArrival + " day(s) ahead of arrival");
-    }
-
-    // The campsite can be reserved up to 1 month in advance.
-    final var maxDaysAheadOfArrival = configuration.getMaxDaysAheadOfArrival();
-    if (daysAheadOfArrival > maxDaysAheadOfArrival) {
-      valid = invalidErrorMessage(context, "The campsite can be reserved up to " + maxDaysAheadOfArrival + " day(s) in advance");
+    final var violations = bookingRules.violations(arrivalDate, departureDate);
+    if (violations.isEmpty()) {
+      return true;
     }
-    return valid;
+    context.disableDefaultConstraintViolation();
+    violations.forEach(message -> invalidErrorMessage(context, message));
+    return false;
   }
 
-  private boolean invalidErrorMessage(ConstraintValidatorContext context, String message) {
+  private void invalidErrorMessage(ConstraintValidatorContext context, String message) {
     context
         .buildConstraintViolationWithTemplate(message)
         .addConstraintViolation();
-    return false;
   }
 
 }
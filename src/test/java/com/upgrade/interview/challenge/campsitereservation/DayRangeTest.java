@@ -0,0 +1,99 @@
+package com.upgrade.interview.challenge.campsitereservation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class DayRangeTest {
+
+  private static DayRange range(String startInclusive, String endExclusive) {
+    return DayRange.of(LocalDate.parse(startInclusive), LocalDate.parse(endExclusive));
+  }
+
+  private static Stream<Arguments> overlapsSource() {
+    return Stream.of(
+        Arguments.of(range("2021-04-22", "2021-04-25"), range("2021-04-24", "2021-04-26"), true),
+        Arguments.of(range("2021-04-22", "2021-04-25"), range("2021-04-25", "2021-04-26"), false),
+        Arguments.of(range("2021-04-22", "2021-04-25"), range("2021-04-20", "2021-04-22"), false),
+        Arguments.of(range("2021-04-22", "2021-04-25"), range("2021-04-23", "2021-04-24"), true),
+        Arguments.of(range("2021-04-22", "2021-04-25"), range("2021-04-23", "2021-04-23"), false));
+  }
+
+  @ParameterizedTest
+  @MethodSource("overlapsSource")
+  void overlaps(DayRange range1, DayRange range2, boolean overlaps) {
+    assertThat(range1.overlaps(range2)).isEqualTo(overlaps);
+    assertThat(range2.overlaps(range1)).isEqualTo(overlaps);
+    assertThat(range1.intersection(range2).isEmpty()).isEqualTo(!overlaps);
+  }
+
+  private static Stream<Arguments> minusSource() {
+    return Stream.of(
+        Arguments.of(range("2021-04-22", "2021-04-25"), range("2021-04-23", "2021-04-24"),
+            List.of(range("2021-04-22", "2021-04-23"), range("2021-04-24", "2021-04-25"))),
+        Arguments.of(range("2021-04-22", "2021-04-25"), range("2021-04-24", "2021-04-28"),
+            List.of(range("2021-04-22", "2021-04-24"))),
+        Arguments.of(range("2021-04-22", "2021-04-25"), range("2021-04-20", "2021-04-23"),
+            List.of(range("2021-04-23", "2021-04-25"))),
+        Arguments.of(range("2021-04-22", "2021-04-25"), range("2021-04-25", "2021-04-28"),
+            List.of(range("2021-04-22", "2021-04-25"))),
+        Arguments.of(range("2021-04-22", "2021-04-25"), range("2021-04-21", "2021-04-28"), List.of()));
+  }
+
+  @ParameterizedTest
+  @MethodSource("minusSource")
+  void minus(DayRange range1, DayRange range2, List<DayRange> difference) {
+    assertThat(range1.minus(range2)).containsExactlyElementsOf(difference);
+  }
+
+  @Test
+  void empty() {
+    final var range = range("2021-04-25", "2021-04-22");
+
+    assertThat(range.isEmpty()).isTrue();
+    assertThat(range.length()).isZero();
+    assertThat(range.toDates()).isEmpty();
+    assertThat(range).isEqualTo(range("2021-04-25", "2021-04-25"));
+    assertThat(range("2021-04-22", "2021-04-25").contains(range)).isTrue();
+  }
+
+  @Test
+  void contains() {
+    final var range = range("2021-04-22", "2021-04-25");
+
+    assertThat(range.length()).isEqualTo(3);
+    assertThat(range.contains(LocalDate.parse("2021-04-22"))).isTrue();
+    assertThat(range.contains(LocalDate.parse("2021-04-24"))).isTrue();
+    assertThat(range.contains(LocalDate.parse("2021-04-25"))).isFalse();
+    assertThat(range.contains(range("2021-04-23", "2021-04-25"))).isTrue();
+    assertThat(range.contains(range("2021-04-23", "2021-04-26"))).isFalse();
+  }
+
+  @Test
+  void forEachDay() {
+    final var range = range("2021-04-29", "2021-05-02");
+    final var days = new ArrayList<Long>();
+
+    range.forEachDay(days::add);
+
+    assertThat(days).containsExactly(range.getStartEpochDay(), range.getStartEpochDay() + 1,
+        range.getStartEpochDay() + 2);
+    assertThat(range.toDates()).containsExactly(LocalDate.parse("2021-04-29"), LocalDate.parse("2021-04-30"),
+        LocalDate.parse("2021-05-01"));
+  }
+
+  @Test
+  void span() {
+    assertThat(range("2021-04-22", "2021-04-23").span(range("2021-04-25", "2021-04-26")))
+        .isEqualTo(range("2021-04-22", "2021-04-26"))
+        .hasToString("[2021-04-22, 2021-04-26)");
+  }
+}
@@ -1,15 +1,17 @@
 package com.upgrade.interview.challenge.campsitereservation;
 
 import java.time.LocalDate;
-import java.util.stream.Stream;
 
-import com.upgrade.interview.challenge.campsitereservation.persistence.BookingDate;
 import com.upgrade.interview.challenge.campsitereservation.persistence.BookingEntity;
 import com.upgrade.interview.challenge.campsitereservation.rest.Booking;
 
 public class Fixtures {
+  // Default campsite (campsite.default-campsite-id)
+  public static final long CAMPSITE_ID = 1;
+
   public static BookingEntity createBookingEntity(LocalDate arrivalDate, int numberOfDays) {
     return BookingEntity.builder()
+        .campsiteId(CAMPSITE_ID)
         .email("name@email.com")
         .fullname("name")
         .arrivalDate(arrivalDate)
@@ -68,11 +70,4 @@ public class Fixtures {
   public static Booking createBookingWithDepartureBeforeArrival() {
     return createBooking(LocalDate.now().plusDays(2), -1);
   }
-
-  public static Stream<BookingDate> bookingDates(String startInclusive, int numberOfDays) {
-    final var start = LocalDate.parse(startInclusive);
-    final var end = start.plusDays(numberOfDays);
-    return start.datesUntil(end)
-        .map(date -> BookingDate.builder().date(date).build());
-  }
 }
@@ -0,0 +1,95 @@
+package com.upgrade.interview.challenge.campsitereservation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+
+import javax.validation.Validator;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Streams;
+import com.upgrade.interview.challenge.campsitereservation.persistence.BookingDateRepository;
+import com.upgrade.interview.challenge.campsitereservation.persistence.BookingRepository;
+import com.upgrade.interview.challenge.campsitereservation.persistence.IndexSynchronizer;
+import com.upgrade.interview.challenge.campsitereservation.persistence.OccupancyIndex;
+
+/**
+ * Test the {@link StartupWarmUp}.
+ * <p>This test class uses the h2 in-memory database.</p>
+ */
+@SpringBootTest
+class StartupWarmUpTest {
+
+  @Autowired
+  private BookingRepository bookingRepository;
+
+  @Autowired
+  private BookingDateRepository bookingDateRepository;
+
+  @Autowired
+  private OccupancyIndex occupancyIndex;
+
+  @Autowired
+  private Validator validator;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private Clock clock;
+
+  @Autowired
+  private CampsiteConfiguration configuration;
+
+  @Autowired
+  private StartupWarmUp startupWarmUp;
+
+  @Autowired
+  private IndexSynchronizer indexSynchronizer;
+
+  @Test
+  void run_recordsSteps() {
+    final var applicationStartup = new BufferingApplicationStartup(100);
+    final var bookingCount = bookingRepository.count();
+    final var bookingDateCount = bookingDateRepository.count();
+
+    new StartupWarmUp(bookingRepository, bookingDateRepository, occupancyIndex, validator, objectMapper,
+        applicationStartup, transactionManager, clock, configuration).run(null);
+
+    assertThat(applicationStartup.getBufferedTimeline().getEvents())
+        .extracting(event -> event.getStartupStep().getName())
+        .containsExactlyInAnyOrder(StartupWarmUp.STEP_PREFIX, StartupWarmUp.STEP_PREFIX + ".jpa",
+            StartupWarmUp.STEP_PREFIX + ".availabilities", StartupWarmUp.STEP_PREFIX + ".validation",
+            StartupWarmUp.STEP_PREFIX + ".jackson");
+    // No failure tag
+    assertThat(applicationStartup.getBufferedTimeline().getEvents().stream()
+        .flatMap(event -> Streams.stream(event.getStartupStep().getTags()))
+        .map(StartupStep.Tag::getKey))
+        .containsExactly("iterations");
+    // The warm-up does not write
+    assertThat(bookingRepository.count()).isEqualTo(bookingCount);
+    assertThat(bookingDateRepository.count()).isEqualTo(bookingDateCount);
+  }
+
+  @Test
+  void run_afterTheIndexLoad() {
+    assertThat(AnnotationAwareOrderComparator.INSTANCE.compare(indexSynchronizer, startupWarmUp)).isNegative();
+  }
+
+  @Test
+  void warmUp_enabledByDefault() {
+    assertThat(startupWarmUp).isNotNull();
+    assertThat(configuration.getWarmUp().isEnabled()).isTrue();
+  }
+}
@@ -0,0 +1,109 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+import com.upgrade.interview.challenge.campsitereservation.Fixtures;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Test the {@link BookingCache}.
+ */
+class BookingCacheTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final BookingCache bookingCache = new BookingCache(new CampsiteConfiguration(), meterRegistry);
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private Optional<BookingEntity> get(BookingEntity bookingEntity) {
+    return bookingCache.get(bookingEntity.getId(), id -> {
+      loads.incrementAndGet();
+      return Optional.of(bookingEntity);
+    });
+  }
+
+  private double gets(String result) {
+    return meterRegistry.get("cache.gets").tag("cache", BookingCache.CACHE_NAME).tag("result", result)
+        .functionCounter().count();
+  }
+
+  @Test
+  void get_cached() {
+    final var bookingEntity = Fixtures.createBookingEntityWithId();
+
+    assertThat(get(bookingEntity)).get().isEqualTo(bookingEntity);
+    assertThat(get(bookingEntity)).get().isEqualTo(bookingEntity);
+
+    assertThat(loads).hasValue(1);
+    assertThat(gets("hit")).isEqualTo(1);
+    assertThat(gets("miss")).isEqualTo(1);
+  }
+
+  @Test
+  void get_absentNotCached() {
+    bookingCache.get(1, id -> {
+      loads.incrementAndGet();
+      return Optional.empty();
+    });
+
+    assertThat(get(Fixtures.createBookingEntityWithId())).isPresent();
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  void get_copy() {
+    final var bookingEntity = Fixtures.createBookingEntityWithId();
+    get(bookingEntity);
+
+    get(bookingEntity).orElseThrow().setFullname("Modified");
+
+    assertThat(get(bookingEntity)).get().isEqualTo(bookingEntity);
+  }
+
+  @Test
+  void invalidate() {
+    final var bookingEntity = Fixtures.createBookingEntityWithId();
+    get(bookingEntity);
+
+    bookingCache.invalidate(bookingEntity.getId());
+
+    get(bookingEntity);
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  void invalidate_duringLoad_notCached() {
+    final var bookingEntity = Fixtures.createBookingEntityWithId();
+
+    bookingCache.get(bookingEntity.getId(), id -> {
+      // The booking is updated after it has been loaded
+      bookingCache.invalidate(id);
+      return Optional.of(bookingEntity);
+    });
+
+    get(bookingEntity);
+    assertThat(loads).hasValue(1);
+  }
+
+  @Test
+  void get_olderVersionNotCached() {
+    final var bookingEntity = Fixtures.createBookingEntityWithId();
+    final var newerBookingEntity = bookingEntity.toBuilder().version(1).build();
+
+    final var staleBookingEntity = bookingCache.get(bookingEntity.getId(), id -> {
+      // The newer version is cached while the older version is loaded (from a read replica)
+      get(newerBookingEntity);
+      return Optional.of(bookingEntity);
+    });
+
+    assertThat(staleBookingEntity).get().isEqualTo(bookingEntity);
+    assertThat(get(bookingEntity)).get().isEqualTo(newerBookingEntity);
+  }
+}
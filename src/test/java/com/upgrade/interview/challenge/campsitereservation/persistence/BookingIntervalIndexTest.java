@@ -0,0 +1,125 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.Test;
+
+import com.upgrade.interview.challenge.campsitereservation.DayRange;
+
+/**
+ * Test the {@link BookingIntervalIndex}.
+ */
+class BookingIntervalIndexTest {
+
+  private static final long CAMPSITE = 1;
+
+  private static final LocalDate START = LocalDate.parse("2021-01-28");
+
+  private final BookingRepository bookingRepository = mock(BookingRepository.class);
+
+  private final BookingIntervalIndex bookingIntervalIndex =
+      new BookingIntervalIndex(bookingRepository, mock(EntityManager.class));
+
+  private static BookingEntity bookingEntity(long id, long campsiteId, int arrivalDay, int numberOfDays) {
+    final var bookingEntity = BookingEntity.builder()
+        .campsiteId(campsiteId)
+        .arrivalDate(START.plusDays(arrivalDay))
+        .departureDate(START.plusDays(arrivalDay + numberOfDays))
+        .build();
+    bookingEntity.setId(id);
+    return bookingEntity;
+  }
+
+  private List<Long> overlapping(int startDay, int endDay) {
+    return bookingIntervalIndex.overlapping(CAMPSITE, START.plusDays(startDay), START.plusDays(endDay));
+  }
+
+  @Test
+  void overlapping() {
+    bookingIntervalIndex.put(bookingEntity(3, CAMPSITE, 0, 3));
+    bookingIntervalIndex.put(bookingEntity(1, CAMPSITE, 3, 1));
+    bookingIntervalIndex.put(bookingEntity(2, CAMPSITE, 3, 2));
+    bookingIntervalIndex.put(bookingEntity(4, CAMPSITE + 1, 0, 10));
+
+    // Sorted by arrival date and id
+    assertThat(overlapping(0, 10)).containsExactly(3L, 1L, 2L);
+    assertThat(overlapping(2, 4)).containsExactly(3L, 1L, 2L);
+    assertThat(overlapping(3, 4)).containsExactly(1L, 2L);
+    assertThat(overlapping(4, 5)).containsExactly(2L);
+    assertThat(overlapping(5, 10)).isEmpty();
+    assertThat(overlapping(-5, 0)).isEmpty();
+    assertThat(overlapping(1, 1)).isEmpty();
+    assertThat(bookingIntervalIndex.overlapping(CAMPSITE + 2, START, START.plusDays(10))).isEmpty();
+  }
+
+  @Test
+  void put_move() {
+    bookingIntervalIndex.put(bookingEntity(1, CAMPSITE, 0, 30));
+    bookingIntervalIndex.put(bookingEntity(1, CAMPSITE, 40, 2));
+
+    assertThat(overlapping(20, 30)).isEmpty();
+    assertThat(overlapping(41, 42)).containsExactly(1L);
+  }
+
+  @Test
+  void remove() {
+    bookingIntervalIndex.put(bookingEntity(1, CAMPSITE, 0, 30));
+    bookingIntervalIndex.put(bookingEntity(2, CAMPSITE, 10, 1));
+
+    bookingIntervalIndex.remove(CAMPSITE, 1);
+    bookingIntervalIndex.remove(CAMPSITE, 3);
+    bookingIntervalIndex.remove(CAMPSITE + 1, 2);
+
+    assertThat(overlapping(0, 30)).containsExactly(2L);
+  }
+
+  @Test
+  void overlapping_sameAsScan() {
+    // Random bookings of 1 to 30 days, overlapping each other
+    final var random = new Random(42);
+    final var bookingEntities = new ArrayList<BookingEntity>();
+    for (var id = 1; id <= 500; id++) {
+      final var bookingEntity = bookingEntity(id, CAMPSITE, random.nextInt(1000), 1 + random.nextInt(30));
+      bookingEntities.add(bookingEntity);
+      bookingIntervalIndex.put(bookingEntity);
+    }
+
+    for (var i = 0; i < 100; i++) {
+      final var startDay = random.nextInt(1000);
+      final var range = DayRange.of(START.plusDays(startDay), START.plusDays(startDay + random.nextInt(20)));
+      final var expectedIds = bookingEntities.stream()
+          .filter(bookingEntity -> bookingEntity.dayRange().overlaps(range))
+          .sorted(Comparator.comparing(BookingEntity::getArrivalDate).thenComparingLong(BookingEntity::getId))
+          .map(BookingEntity::getId)
+          .collect(Collectors.toList());
+      assertThat(bookingIntervalIndex.overlapping(CAMPSITE, range.startInclusive(), range.endExclusive()))
+          .as("Bookings overlapping %s", range)
+          .containsExactlyElementsOf(expectedIds);
+    }
+  }
+
+  @Test
+  void load() {
+    bookingIntervalIndex.put(bookingEntity(1, CAMPSITE, 0, 3));
+    when(bookingRepository.streamAllOrderedById()).thenReturn(Stream.of(
+        bookingEntity(2, CAMPSITE, 1, 2),
+        bookingEntity(3, CAMPSITE + 1, 1, 2)));
+
+    bookingIntervalIndex.load();
+
+    assertThat(overlapping(0, 10)).containsExactly(2L);
+    assertThat(bookingIntervalIndex.overlapping(CAMPSITE + 1, START, START.plusDays(10))).containsExactly(3L);
+  }
+}
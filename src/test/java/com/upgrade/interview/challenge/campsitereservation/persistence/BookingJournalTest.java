@@ -0,0 +1,168 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.upgrade.interview.challenge.campsitereservation.Fixtures;
+
+/**
+ * Test the {@link BookingJournal}, and the restore of the {@link OccupancyIndex} and the {@link BookingIntervalIndex}
+ * from the journal.
+ * <p>This test class uses the h2 in-memory database, and a journal of 4 events per segment in a temporary
+ * directory.</p>
+ */
+@SpringBootTest(properties = {
+    "campsite.journal.enabled=true",
+    "campsite.journal.events-per-segment=4"})
+class BookingJournalTest {
+
+  @Autowired
+  private BookingService bookingService;
+
+  @Autowired
+  private BookingRepository bookingRepository;
+
+  @Autowired
+  private BookingDateRepository bookingDateRepository;
+
+  @Autowired
+  private OccupancyIndex occupancyIndex;
+
+  @Autowired
+  private BookingIntervalIndex bookingIntervalIndex;
+
+  @SpyBean
+  private BookingJournal bookingJournal;
+
+  @Autowired
+  private IndexSynchronizer indexSynchronizer;
+
+  private static Path directory;
+
+  @DynamicPropertySource
+  static void journalDirectory(DynamicPropertyRegistry registry) throws IOException {
+    directory = Files.createTempDirectory("journal");
+    registry.add("campsite.journal.directory", directory::toString);
+  }
+
+  @BeforeEach
+  void setUp() {
+    bookingRepository.deleteAll();
+    bookingDateRepository.deleteAll();
+    // The bookings have been deleted without the journal: the journal is restored from the database
+    indexSynchronizer.restore();
+  }
+
+  private static String reservation(long campsiteId, LocalDate startInclusive, LocalDate endExclusive) {
+    return campsiteId + ":" + startInclusive + ":" + endExclusive;
+  }
+
+  private static String reservation(BookingEntity bookingEntity) {
+    return reservation(bookingEntity.getCampsiteId(), bookingEntity.getArrivalDate(),
+        bookingEntity.getDepartureDate());
+  }
+
+  private List<String> restore(boolean expectedFromJournal) {
+    final var reservations = new ArrayList<String>();
+    final var fromJournal = bookingJournal.restore((id, campsiteId, startInclusive, endExclusive) ->
+        reservations.add(reservation(campsiteId, startInclusive, endExclusive)));
+    assertThat(fromJournal).isEqualTo(expectedFromJournal);
+    return reservations;
+  }
+
+  @Test
+  void restore_fromJournal() {
+    final var bookingEntity = bookingService.add(Fixtures.createBookingEntity());
+    final var deletedBookingEntity = bookingService.add(Fixtures.createBookingEntity(LocalDate.now().plusDays(10), 1));
+    final var updatedBookingEntity = bookingService.update(bookingService.findCurrentById(bookingEntity.getId())
+        .orElseThrow(), Fixtures.createAnotherBookingEntity());
+    bookingService.deleteById(Fixtures.CAMPSITE_ID, deletedBookingEntity.getId());
+
+    assertThat(restore(true)).containsExactly(reservation(updatedBookingEntity));
+  }
+
+  @Test
+  void restore_afterCompaction() {
+    final var bookingEntities = new ArrayList<BookingEntity>();
+    for (var i = 0; i < 10; i++) {
+      bookingEntities.add(bookingService.add(Fixtures.createBookingEntity(LocalDate.now().plusDays(2 + i), 1)));
+    }
+    bookingService.deleteById(Fixtures.CAMPSITE_ID, bookingEntities.remove(0).getId());
+
+    assertThat(restore(true)).containsExactlyElementsOf(
+        bookingEntities.stream().map(BookingJournalTest::reservation)::iterator);
+    // The segments compacted at the first restore are replaced by a snapshot
+    assertThat(restore(true)).hasSize(bookingEntities.size());
+  }
+
+  @Test
+  void restore_inconsistent_fromDatabase() {
+    bookingService.add(Fixtures.createBookingEntity());
+    // Not written through the service: not journaled
+    final var bookingEntity = bookingRepository.save(Fixtures.createAnotherBookingEntity());
+
+    assertThat(restore(false)).contains(reservation(bookingEntity)).hasSize(2);
+    assertThat(restore(true)).hasSize(2);
+  }
+
+  @Test
+  void restore_lostUpdate_fromDatabase() {
+    final var bookingEntity = bookingService.add(Fixtures.createBookingEntity());
+    // Same number of bookings, but updated without the journal
+    final var updatedBookingEntity = bookingRepository.findById(bookingEntity.getId()).orElseThrow();
+    updatedBookingEntity.setDepartureDate(updatedBookingEntity.getDepartureDate().plusDays(1));
+    bookingRepository.save(updatedBookingEntity);
+
+    assertThat(restore(false)).containsExactly(reservation(updatedBookingEntity));
+    assertThat(restore(true)).containsExactly(reservation(updatedBookingEntity));
+  }
+
+  @Test
+  void restoreIndexes_fromJournal() {
+    final var bookingEntity = bookingService.add(Fixtures.createBookingEntity());
+    final var deletedBookingEntity = bookingService.add(Fixtures.createBookingEntity(LocalDate.now().plusDays(10), 1));
+    bookingService.deleteById(Fixtures.CAMPSITE_ID, deletedBookingEntity.getId());
+    clearInvocations(bookingJournal);
+
+    indexSynchronizer.restore();
+
+    // Both indexes are loaded from a single restore of the journal
+    verify(bookingJournal, times(1)).restore(any());
+    assertThat(occupancyIndex.availabilities(Fixtures.CAMPSITE_ID, bookingEntity.getArrivalDate(),
+        bookingEntity.getDepartureDate())).isEmpty();
+    assertThat(bookingIntervalIndex.overlapping(Fixtures.CAMPSITE_ID, LocalDate.now(), LocalDate.now().plusDays(31)))
+        .containsExactly(bookingEntity.getId());
+    assertThat(restore(true)).containsExactly(reservation(bookingEntity));
+  }
+
+  @Test
+  void journalFiles() throws IOException {
+    bookingService.add(Fixtures.createBookingEntity());
+
+    restore(true);
+
+    try (var paths = Files.list(directory)) {
+      assertThat(paths.map(path -> path.getFileName().toString()))
+          .anyMatch(name -> name.startsWith("snapshot-") && name.endsWith(".dat"))
+          .noneMatch(name -> name.endsWith(".tmp"));
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+
+import com.upgrade.interview.challenge.campsitereservation.exception.AlreadyBookedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Test the {@link BookingMetrics}.
+ */
+class BookingMetricsTest {
+
+  private SimpleMeterRegistry meterRegistry;
+
+  private BookingMetrics bookingMetrics;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    bookingMetrics = new BookingMetrics(meterRegistry);
+  }
+
+  @Test
+  void record_success() {
+    assertThat(bookingMetrics.record("add", () -> "result")).isEqualTo("result");
+
+    assertThat(meterRegistry.get(BookingMetrics.OPERATION_TIMER)
+        .tag("operation", "add").tag("outcome", "success").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  void record_runnable() {
+    final var executed = new boolean[1];
+
+    bookingMetrics.record("delete", () -> {
+      executed[0] = true;
+    });
+
+    assertThat(executed[0]).isTrue();
+    assertThat(meterRegistry.get(BookingMetrics.OPERATION_TIMER)
+        .tag("operation", "delete").tag("outcome", "success").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  void record_conflict() {
+    assertThatThrownBy(() -> bookingMetrics.record("add", () -> {
+      throw new AlreadyBookedException("Dates are not available");
+    })).isInstanceOf(AlreadyBookedException.class);
+
+    assertThat(meterRegistry.get(BookingMetrics.CONFLICT_COUNTER).tag("operation", "add").counter().count())
+        .isEqualTo(1);
+    assertThat(meterRegistry.get(BookingMetrics.OPERATION_TIMER)
+        .tag("operation", "add").tag("outcome", "conflict").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  void record_dataAccessError() {
+    assertThatThrownBy(() -> bookingMetrics.record("update", () -> {
+      throw new CannotAcquireLockException("Lock failure");
+    })).isInstanceOf(CannotAcquireLockException.class);
+
+    assertThat(meterRegistry.get(BookingMetrics.DATA_ACCESS_ERROR_COUNTER)
+        .tag("operation", "update").tag("exception", "CannotAcquireLockException").counter().count())
+        .isEqualTo(1);
+    assertThat(meterRegistry.get(BookingMetrics.OPERATION_TIMER)
+        .tag("operation", "update").tag("outcome", "error").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  void record_mono() {
+    final var result = bookingMetrics.record("add", Mono.just("result"));
+
+    assertThat(meterRegistry.find(BookingMetrics.OPERATION_TIMER).timer()).isNull();
+    assertThat(result.block()).isEqualTo("result");
+    assertThat(meterRegistry.get(BookingMetrics.OPERATION_TIMER)
+        .tag("operation", "add").tag("outcome", "success").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  void record_monoConflict() {
+    final var result = bookingMetrics.record("add",
+        Mono.error(new AlreadyBookedException("Dates are not available")));
+
+    assertThatThrownBy(result::block).isInstanceOf(AlreadyBookedException.class);
+    assertThat(meterRegistry.get(BookingMetrics.CONFLICT_COUNTER).tag("operation", "add").counter().count())
+        .isEqualTo(1);
+    assertThat(meterRegistry.get(BookingMetrics.OPERATION_TIMER)
+        .tag("operation", "add").tag("outcome", "conflict").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  void recordLockWait() {
+    assertThat(bookingMetrics.recordLockWait(List::of)).isEmpty();
+
+    assertThat(meterRegistry.get(BookingMetrics.LOCK_WAIT_TIMER).timer().count()).isEqualTo(1);
+  }
+}
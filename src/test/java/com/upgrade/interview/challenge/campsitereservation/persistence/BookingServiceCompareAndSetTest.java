@@ -0,0 +1,162 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doThrow;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import com.upgrade.interview.challenge.campsitereservation.Fixtures;
+import com.upgrade.interview.challenge.campsitereservation.Utils;
+import com.upgrade.interview.challenge.campsitereservation.exception.AlreadyBookedException;
+
+/**
+ * Test the {@link BookingService} with the compare-and-set reservation engine.
+ * <p>This test class uses the h2 in-memory database.</p>
+ */
+@SpringBootTest(properties = "campsite.reservation-engine=compare-and-set")
+class BookingServiceCompareAndSetTest {
+
+  @SpyBean
+  private BookingService bookingService;
+
+  @Autowired
+  private BookingRepository bookingRepository;
+
+  @Autowired
+  private BookingDateRepository bookingDateRepository;
+
+  @Autowired
+  private OccupancyIndex occupancyIndex;
+
+  @BeforeEach
+  void setUp() {
+    bookingRepository.deleteAll();
+    bookingDateRepository.deleteAll();
+    occupancyIndex.load();
+  }
+
+  @Test
+  void add_success() {
+    final var bookingEntity = Fixtures.createBookingEntity();
+
+    final var addedBookingEntity = bookingService.add(bookingEntity);
+
+    assertThat(bookingRepository.findById(addedBookingEntity.getId())).get().isEqualTo(addedBookingEntity);
+    assertThat(bookingDateRepository.findAll()).containsExactlyElementsOf(bookingEntity.bookingDates());
+    assertThat(bookingService.getAvailabilities(Fixtures.CAMPSITE_ID, bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()))
+        .isEmpty();
+  }
+
+  @Test
+  void add_conflict() {
+    final var bookingEntity = bookingService.add(Fixtures.createBookingEntity());
+    final var overlappingBookingEntity = Fixtures.createBookingEntity(bookingEntity.getDepartureDate().minusDays(1), 2);
+
+    assertThatThrownBy(() -> bookingService.add(overlappingBookingEntity))
+        .isInstanceOf(AlreadyBookedException.class);
+    assertThat(bookingRepository.findAll()).containsExactly(bookingEntity);
+    // The day after the first booking has not been claimed
+    assertThat(bookingService.getAvailabilities(Fixtures.CAMPSITE_ID, bookingEntity.getDepartureDate(), overlappingBookingEntity.getDepartureDate()))
+        .containsExactly(bookingEntity.getDepartureDate());
+  }
+
+  @Test
+  void add_persistenceFailure_releasesClaim() {
+    final var bookingEntity = Fixtures.createBookingEntity();
+    doThrow(new DataIntegrityViolationException("Persistence failure"))
+        .when(bookingService).insertArtificialDelayForTestsOnly();
+
+    assertThatThrownBy(() -> bookingService.add(bookingEntity))
+        .isInstanceOf(DataIntegrityViolationException.class);
+    assertThat(bookingRepository.findAll()).isEmpty();
+    assertThat(bookingService.getAvailabilities(Fixtures.CAMPSITE_ID, bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()))
+        .containsExactlyElementsOf(Utils.datesBetween(bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()));
+  }
+
+  @Test
+  void addAll() {
+    final var bookingEntity1 = Fixtures.createBookingEntity();
+    // Conflicts with the first booking of the batch
+    final var bookingEntity2 = Fixtures.createBookingEntity(bookingEntity1.getDepartureDate().minusDays(1), 2);
+    final var bookingEntity3 = Fixtures.createBookingEntity(bookingEntity1.getDepartureDate(), 1);
+
+    final var results = bookingService.addAll(Fixtures.CAMPSITE_ID,
+        List.of(bookingEntity1, bookingEntity2, bookingEntity3));
+
+    assertThat(results).extracting(BatchAddResult::isAdded).containsExactly(true, false, true);
+    assertThat(bookingRepository.findAll()).containsExactlyInAnyOrder(bookingEntity1, bookingEntity3);
+    assertThat(bookingService.getAvailabilities(Fixtures.CAMPSITE_ID,
+        bookingEntity1.getArrivalDate(), bookingEntity2.getDepartureDate().plusDays(1)))
+        .containsExactly(bookingEntity2.getDepartureDate());
+  }
+
+  @Test
+  void addAll_persistenceFailure_releasesClaims() {
+    final var bookingEntities = List.of(Fixtures.createBookingEntity(), Fixtures.createAnotherBookingEntity());
+    doThrow(new DataIntegrityViolationException("Persistence failure"))
+        .when(bookingService).insertArtificialDelayForTestsOnly();
+
+    assertThatThrownBy(() -> bookingService.addAll(Fixtures.CAMPSITE_ID, bookingEntities))
+        .isInstanceOf(DataIntegrityViolationException.class);
+    assertThat(bookingRepository.findAll()).isEmpty();
+    assertThat(bookingService.getAvailabilities(Fixtures.CAMPSITE_ID,
+        bookingEntities.get(0).getArrivalDate(), bookingEntities.get(1).getDepartureDate()))
+        .containsExactlyElementsOf(Utils.datesBetween(
+            bookingEntities.get(0).getArrivalDate(), bookingEntities.get(1).getDepartureDate()));
+  }
+
+  @Test
+  void update() {
+    final var oldBookingEntity = bookingService.add(Fixtures.createBookingEntity());
+    // The new booking overlaps the old booking
+    final var newBookingEntity = Fixtures.createBookingEntity(oldBookingEntity.getArrivalDate().plusDays(1), 2);
+
+    final var updatedBookingEntity = bookingService.update(oldBookingEntity, newBookingEntity);
+
+    assertThat(bookingRepository.findAll()).containsExactly(updatedBookingEntity);
+    assertThat(bookingDateRepository.findAll()).containsExactlyElementsOf(newBookingEntity.bookingDates());
+    assertThat(bookingService.getAvailabilities(Fixtures.CAMPSITE_ID, oldBookingEntity.getArrivalDate(), newBookingEntity.getDepartureDate()))
+        .containsExactly(oldBookingEntity.getArrivalDate());
+  }
+
+  @Test
+  void deleteById() {
+    final var bookingEntity = bookingService.add(Fixtures.createBookingEntity());
+
+    bookingService.deleteById(Fixtures.CAMPSITE_ID, bookingEntity.getId());
+
+    assertThat(bookingService.getAvailabilities(Fixtures.CAMPSITE_ID, bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()))
+        .containsExactlyElementsOf(Utils.datesBetween(bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()));
+  }
+
+  /**
+   * Test the creation of multiple identical entities in parallel. Only 1 should be successful.
+   */
+  @ParameterizedTest
+  @ValueSource(ints = {3, 5, 10, 50})
+  void addWithConcurrency_multiple_conflicts(int num) throws Exception {
+    final var bookingEntity = Fixtures.createBookingEntity();
+    final var executor = Executors.newFixedThreadPool(num);
+
+    for (int i = 0; i < num; i++) {
+      executor.execute(() -> bookingService.add(Fixtures.createBookingEntity()));
+    }
+
+    executor.shutdown();
+    assertThat(executor.awaitTermination(1, TimeUnit.SECONDS)).isTrue();
+    assertThat(bookingRepository.findAll()).hasSize(1);
+    assertThat(bookingDateRepository.findAll()).containsExactlyElementsOf(bookingEntity.bookingDates());
+  }
+}
@@ -14,10 +14,10 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.SpyBean;
-import org.springframework.dao.NonTransientDataAccessException;
 import org.springframework.dao.TransientDataAccessException;
 
 import com.upgrade.interview.challenge.campsitereservation.Fixtures;
+import com.upgrade.interview.challenge.campsitereservation.exception.AlreadyBookedException;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -41,10 +41,14 @@ class BookingServiceConcurrencyTest {
   @Autowired
   private BookingDateRepository bookingDateRepository;
 
+  @Autowired
+  private OccupancyIndex occupancyIndex;
+
   @BeforeEach
   void setUp() {
     bookingRepository.deleteAll();
     bookingDateRepository.deleteAll();
+    occupancyIndex.load();
   }
 
   /**
@@ -95,8 +99,8 @@ class BookingServiceConcurrencyTest {
     executor.shutdown();
     assertThat(executor.awaitTermination(DELAY * 4, TimeUnit.MILLISECONDS)).isTrue();
     assertThat(future1.get()).isEqualTo(bookingEntity1);
-    // NonTransientDataAccessException means a retry of the failed operation would fail.
-    assertThatThrownBy(future2::get).hasCauseInstanceOf(NonTransientDataAccessException.class);
+    // The second addition has waited for the day locks of the first one, and then has seen the booked dates.
+    assertThatThrownBy(future2::get).hasCauseInstanceOf(AlreadyBookedException.class);
     assertThat(bookingRepository.findAll()).containsExactly(bookingEntity1);
     assertThat(bookingDateRepository.findAll()).containsExactlyElementsOf(bookingEntity1.bookingDates());
   }
@@ -168,6 +172,7 @@ class BookingServiceConcurrencyTest {
 
   private BookingEntity createOverlappedBookingEntity(BookingEntity bookingEntity) {
     return BookingEntity.builder()
+        .campsiteId(bookingEntity.getCampsiteId())
         .email("someone@email.com")
         .fullname("Someone")
         .arrivalDate(bookingEntity.getArrivalDate().minusDays(1))
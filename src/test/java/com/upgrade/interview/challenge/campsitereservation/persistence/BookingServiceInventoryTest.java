@@ -0,0 +1,168 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+
+import com.upgrade.interview.challenge.campsitereservation.Fixtures;
+import com.upgrade.interview.challenge.campsitereservation.Utils;
+import com.upgrade.interview.challenge.campsitereservation.exception.AlreadyBookedException;
+
+/**
+ * Test the {@link BookingService} with the inventory reservation engine, and the {@link InventoryManager}.
+ * <p>This test class uses the h2 in-memory database.</p>
+ */
+@SpringBootTest(properties = "campsite.reservation-engine=inventory")
+class BookingServiceInventoryTest {
+
+  @Autowired
+  private BookingService bookingService;
+
+  @Autowired
+  private InventoryManager inventoryManager;
+
+  @Autowired
+  private BookingRepository bookingRepository;
+
+  @Autowired
+  private BookingDateRepository bookingDateRepository;
+
+  @Autowired
+  private InventoryDayRepository inventoryDayRepository;
+
+  @Autowired
+  private OccupancyIndex occupancyIndex;
+
+  @BeforeEach
+  void setUp() {
+    bookingRepository.deleteAll();
+    bookingDateRepository.deleteAll();
+    inventoryDayRepository.deleteAll();
+    occupancyIndex.load();
+  }
+
+  private List<LocalDate> claimedDates(long bookingId) {
+    return inventoryDayRepository.findAll(Sort.by("date")).stream()
+        .filter(inventoryDay -> Objects.equals(inventoryDay.getBookingId(), bookingId))
+        .map(InventoryDay::getDate)
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  void add_success() {
+    final var bookingEntity = Fixtures.createBookingEntity();
+
+    final var addedBookingEntity = bookingService.add(bookingEntity);
+
+    assertThat(bookingRepository.findById(addedBookingEntity.getId())).get().isEqualTo(addedBookingEntity);
+    assertThat(bookingDateRepository.findAll()).containsExactlyElementsOf(bookingEntity.bookingDates());
+    assertThat(claimedDates(addedBookingEntity.getId()))
+        .containsExactlyElementsOf(Utils.datesBetween(bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()));
+    assertThat(bookingService.getAvailabilities(Fixtures.CAMPSITE_ID, bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()))
+        .isEmpty();
+  }
+
+  @Test
+  void add_conflict() {
+    final var bookingEntity = bookingService.add(Fixtures.createBookingEntity());
+    final var overlappingBookingEntity = Fixtures.createBookingEntity(bookingEntity.getDepartureDate().minusDays(1), 2);
+
+    assertThatThrownBy(() -> bookingService.add(overlappingBookingEntity))
+        .isInstanceOf(AlreadyBookedException.class)
+        .hasMessage("Dates [" + bookingEntity.getDepartureDate().minusDays(1) + "] are not available");
+    assertThat(bookingRepository.findAll()).containsExactly(bookingEntity);
+    // The claim of the day after the first booking has been rolled back
+    assertThat(inventoryDayRepository.findById(new BookingDateId(Fixtures.CAMPSITE_ID, bookingEntity.getDepartureDate())))
+        .get().extracting(InventoryDay::getBookingId).isNull();
+  }
+
+  @Test
+  void addAll() {
+    final var bookingEntity1 = Fixtures.createBookingEntity();
+    // Conflicts with the first booking of the batch
+    final var bookingEntity2 = Fixtures.createBookingEntity(bookingEntity1.getDepartureDate().minusDays(1), 2);
+    final var bookingEntity3 = Fixtures.createBookingEntity(bookingEntity1.getDepartureDate(), 1);
+
+    final var results = bookingService.addAll(Fixtures.CAMPSITE_ID,
+        List.of(bookingEntity1, bookingEntity2, bookingEntity3));
+
+    assertThat(results).extracting(BatchAddResult::isAdded).containsExactly(true, false, true);
+    assertThat(bookingRepository.findAll()).containsExactlyInAnyOrder(bookingEntity1, bookingEntity3);
+    assertThat(claimedDates(bookingEntity3.getId())).containsExactly(bookingEntity3.getArrivalDate());
+  }
+
+  @Test
+  void update() {
+    final var oldBookingEntity = bookingService.add(Fixtures.createBookingEntity());
+    // The new booking overlaps the old booking
+    final var newBookingEntity = Fixtures.createBookingEntity(oldBookingEntity.getArrivalDate().plusDays(1), 2);
+
+    final var updatedBookingEntity = bookingService.update(oldBookingEntity, newBookingEntity);
+
+    assertThat(bookingRepository.findAll()).containsExactly(updatedBookingEntity);
+    assertThat(bookingDateRepository.findAll()).containsExactlyElementsOf(newBookingEntity.bookingDates());
+    assertThat(claimedDates(updatedBookingEntity.getId()))
+        .containsExactlyElementsOf(Utils.datesBetween(newBookingEntity.getArrivalDate(), newBookingEntity.getDepartureDate()));
+  }
+
+  @Test
+  void deleteById() {
+    final var bookingEntity = bookingService.add(Fixtures.createBookingEntity());
+
+    bookingService.deleteById(Fixtures.CAMPSITE_ID, bookingEntity.getId());
+
+    assertThat(claimedDates(bookingEntity.getId())).isEmpty();
+    assertThat(bookingService.add(Fixtures.createBookingEntity()).getId()).isPositive();
+  }
+
+  @Test
+  void createDays_claimedByExistingBookings() {
+    // Booking added before the days are created
+    final var bookingEntity = bookingRepository.save(Fixtures.createBookingEntity());
+    bookingDateRepository.saveAll(bookingEntity.bookingDates());
+    final var startInclusive = bookingEntity.getArrivalDate().minusDays(1);
+    final var endExclusive = bookingEntity.getDepartureDate().plusDays(1);
+
+    inventoryManager.createDays(Fixtures.CAMPSITE_ID, startInclusive, endExclusive);
+    // The existing days are not created again
+    inventoryManager.createDays(Fixtures.CAMPSITE_ID, startInclusive, endExclusive);
+
+    assertThat(inventoryDayRepository.findAllDatesBetween(Fixtures.CAMPSITE_ID, startInclusive, endExclusive))
+        .hasSize(Utils.datesBetween(startInclusive, endExclusive).size());
+    assertThat(claimedDates(bookingEntity.getId()))
+        .containsExactlyElementsOf(Utils.datesBetween(bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()));
+  }
+
+  /**
+   * Test the creation of multiple identical entities in parallel. Only 1 should be successful.
+   */
+  @ParameterizedTest
+  @ValueSource(ints = {3, 5, 10, 50})
+  void addWithConcurrency_multiple_conflicts(int num) throws Exception {
+    final var bookingEntity = Fixtures.createBookingEntity();
+    final var executor = Executors.newFixedThreadPool(num);
+
+    for (int i = 0; i < num; i++) {
+      executor.execute(() -> bookingService.add(Fixtures.createBookingEntity()));
+    }
+
+    executor.shutdown();
+    assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(bookingRepository.findAll()).hasSize(1);
+    assertThat(bookingDateRepository.findAll()).containsExactlyElementsOf(bookingEntity.bookingDates());
+  }
+}
@@ -4,7 +4,12 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +18,7 @@ import org.springframework.dao.EmptyResultDataAccessException;
 
 import com.upgrade.interview.challenge.campsitereservation.Fixtures;
 import com.upgrade.interview.challenge.campsitereservation.Utils;
+import com.upgrade.interview.challenge.campsitereservation.exception.AlreadyBookedException;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -32,10 +38,17 @@ class BookingServiceTest {
   @Autowired
   private BookingDateRepository bookingDateRepository;
 
+  @Autowired
+  private OccupancyIndex occupancyIndex;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
   @BeforeEach
   void setUp() {
     bookingRepository.deleteAll();
     bookingDateRepository.deleteAll();
+    occupancyIndex.load();
   }
 
   private BookingEntity createAndAddBookingEntity() {
@@ -60,6 +73,39 @@ class BookingServiceTest {
     assertThat(bookingDateRepository.findAll()).containsExactlyElementsOf(bookingEntity.bookingDates());
   }
 
+  @Test
+  void add_bookingDatesOwnedByBooking() {
+    final var addedBookingEntity = createAndAddBookingEntity();
+
+    assertThat(bookingDateRepository.findAll())
+        .extracting(BookingDate::getBookingId)
+        .containsOnly(addedBookingEntity.getId());
+  }
+
+  /**
+   * The booking dates are inserted in a single JDBC batch, and the booking id does not need a call to the sequence.
+   */
+  @Test
+  void add_batchedStatements() {
+    // Allocate the first block of ids
+    createAndAddAnotherBookingEntity();
+    final var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.setStatisticsEnabled(true);
+    statistics.clear();
+
+    try {
+      bookingService.add(Fixtures.createBookingEntity(LocalDate.now().plusDays(1), 3));
+
+      // 1 booking and 3 booking dates
+      assertThat(statistics.getEntityInsertCount()).isEqualTo(4);
+      // select for update, batch insert of the dates, insert of the booking (and 1 call to the sequence at the end of
+      // a block of ids)
+      assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(4);
+    } finally {
+      statistics.setStatisticsEnabled(false);
+    }
+  }
+
   @Test
   void update() {
     final var oldBookingEntity = Fixtures.createBookingEntity();
@@ -87,22 +133,81 @@ class BookingServiceTest {
     assertThat(optionalBookingEntity).get().isEqualTo(bookingEntity);
   }
 
+  /**
+   * A cached booking is read without opening a session or a connection.
+   */
+  @Test
+  void findById_cached() {
+    final var bookingEntity = createAndAddBookingEntity();
+    bookingService.findById(bookingEntity.getId());
+    final var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.setStatisticsEnabled(true);
+    statistics.clear();
+
+    try {
+      assertThat(bookingService.findById(bookingEntity.getId())).get().isEqualTo(bookingEntity);
+
+      assertThat(statistics.getSessionOpenCount()).isZero();
+      assertThat(statistics.getPrepareStatementCount()).isZero();
+    } finally {
+      statistics.setStatisticsEnabled(false);
+    }
+  }
+
+  @Test
+  void update_invalidatesCache() {
+    final var oldBookingEntity = bookingService.findById(createAndAddBookingEntity().getId()).orElseThrow();
+
+    final var updatedBookingEntity = bookingService.update(oldBookingEntity, Fixtures.createAnotherBookingEntity());
+
+    assertThat(bookingService.findById(oldBookingEntity.getId())).get().isEqualTo(updatedBookingEntity);
+  }
+
+  @Test
+  void deleteById_invalidatesCache() {
+    final var bookingEntity = bookingService.findById(createAndAddBookingEntity().getId()).orElseThrow();
+
+    bookingService.deleteById(Fixtures.CAMPSITE_ID, bookingEntity.getId());
+
+    assertThat(bookingService.findById(bookingEntity.getId())).isNotPresent();
+  }
+
   @Test
   void deleteById_failure() {
-    assertThatThrownBy(() -> bookingService.deleteById(0))
+    assertThatThrownBy(() -> bookingService.deleteById(Fixtures.CAMPSITE_ID, 0))
         .isInstanceOf(EmptyResultDataAccessException.class);
   }
 
+  @Test
+  void deleteById_otherCampsite() {
+    final var bookingEntity = createAndAddBookingEntity();
+
+    assertThatThrownBy(() -> bookingService.deleteById(Fixtures.CAMPSITE_ID + 1, bookingEntity.getId()))
+        .isInstanceOf(EmptyResultDataAccessException.class);
+    assertThat(bookingRepository.findAll()).containsExactly(bookingEntity);
+  }
+
   @Test
   void deleteById_success() {
     final var bookingEntity = createAndAddBookingEntity();
 
-    bookingService.deleteById(bookingEntity.getId());
+    bookingService.deleteById(Fixtures.CAMPSITE_ID, bookingEntity.getId());
 
     assertThat(bookingRepository.findAll()).isEmpty();
     assertThat(bookingDateRepository.findAll()).isEmpty();
   }
 
+  @Test
+  void deleteById_keepsOtherBookingDates() {
+    final var bookingEntity1 = createAndAddBookingEntity();
+    final var bookingEntity2 = createAndAddAnotherBookingEntity();
+
+    bookingService.deleteById(Fixtures.CAMPSITE_ID, bookingEntity1.getId());
+
+    assertThat(bookingRepository.findAll()).containsExactly(bookingEntity2);
+    assertThat(bookingDateRepository.findAll()).containsExactlyElementsOf(bookingEntity2.bookingDates());
+  }
+
   @Test
   void findAll_empty() {
     assertThat(bookingService.findAll()).isEmpty();
@@ -126,12 +231,152 @@ class BookingServiceTest {
     assertThat(bookingEntities).containsExactly(bookingEntity1, bookingEntity2);
   }
 
+  @Test
+  void add_sameDatesOnOtherCampsite() {
+    final var bookingEntity = createAndAddBookingEntity();
+    final var otherBookingEntity = Fixtures.createBookingEntity();
+    otherBookingEntity.setCampsiteId(Fixtures.CAMPSITE_ID + 1);
+
+    bookingService.add(otherBookingEntity);
+
+    assertThat(bookingRepository.findAll()).containsExactlyInAnyOrder(bookingEntity, otherBookingEntity);
+    assertThat(bookingDateRepository.findAll()).hasSize(2 * bookingEntity.bookingDates().size());
+    assertThat(bookingService.getAvailabilities(Fixtures.CAMPSITE_ID + 1,
+        bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()))
+        .isEmpty();
+  }
+
+  @Test
+  void addAll() {
+    final var existingBookingEntity = createAndAddBookingEntity();
+    final var bookingEntity1 = Fixtures.createAnotherBookingEntity();
+    // Conflicts with the existing booking
+    final var bookingEntity2 = Fixtures.createBookingEntity(existingBookingEntity.getArrivalDate(), 1);
+    // Conflicts with the first booking of the batch
+    final var bookingEntity3 = Fixtures.createBookingEntity(bookingEntity1.getDepartureDate().minusDays(1), 2);
+    final var bookingEntity4 = Fixtures.createBookingEntity(existingBookingEntity.getDepartureDate(), 1);
+
+    final var results = bookingService.addAll(Fixtures.CAMPSITE_ID,
+        List.of(bookingEntity1, bookingEntity2, bookingEntity3, bookingEntity4));
+
+    assertThat(results).extracting(BatchAddResult::isAdded).containsExactly(true, false, false, true);
+    assertThat(results.get(1).getConflict())
+        .isEqualTo("Dates [" + existingBookingEntity.getArrivalDate() + "] are not available");
+    assertThat(results.get(2).getConflict())
+        .isEqualTo("Dates [" + bookingEntity3.getArrivalDate() + "] are not available");
+    assertThat(bookingRepository.findAll())
+        .containsExactlyInAnyOrder(existingBookingEntity, bookingEntity1, bookingEntity4);
+    assertThat(bookingRepository.findById(results.get(3).getBookingEntity().getId())).get().isEqualTo(bookingEntity4);
+    assertThat(bookingService.getAvailabilities(Fixtures.CAMPSITE_ID,
+        existingBookingEntity.getArrivalDate(), bookingEntity3.getDepartureDate()))
+        .containsExactly(bookingEntity1.getDepartureDate());
+  }
+
+  @Test
+  void addAll_empty() {
+    final var version = bookingService.getCalendarVersion();
+
+    assertThat(bookingService.addAll(Fixtures.CAMPSITE_ID, List.of())).isEmpty();
+    assertThat(bookingService.getCalendarVersion()).isEqualTo(version);
+  }
+
+  /**
+   * The bookings of a batch share 1 select for update, and are inserted in JDBC batches.
+   */
+  @Test
+  void addAll_batchedStatements() {
+    // Allocate the first block of ids
+    createAndAddAnotherBookingEntity();
+    final var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.setStatisticsEnabled(true);
+    statistics.clear();
+
+    try {
+      bookingService.addAll(Fixtures.CAMPSITE_ID, List.of(
+          Fixtures.createBookingEntity(LocalDate.now().plusDays(1), 2),
+          Fixtures.createBookingEntity(LocalDate.now().plusDays(3), 1)));
+
+      // 2 bookings and 3 booking dates
+      assertThat(statistics.getEntityInsertCount()).isEqualTo(5);
+      // select for update, batch insert of the bookings, batch insert of the dates (and 1 call to the sequence at the
+      // end of a block of ids)
+      assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(4);
+    } finally {
+      statistics.setStatisticsEnabled(false);
+    }
+  }
+
+  @Test
+  void forEach() {
+    final var bookingEntity1 = createAndAddBookingEntity();
+    final var bookingEntity2 = createAndAddAnotherBookingEntity();
+    final var bookingEntities = new ArrayList<BookingEntity>();
+
+    bookingService.forEach(Fixtures.CAMPSITE_ID, LocalDate.now(), LocalDate.now().plusYears(1), bookingEntities::add);
+
+    assertThat(bookingEntities).containsExactly(bookingEntity1, bookingEntity2);
+  }
+
+  @Test
+  void forEach_filter() {
+    createAndAddBookingEntity();
+    final var bookingEntity2 = createAndAddAnotherBookingEntity();
+    final var bookingEntities = new ArrayList<BookingEntity>();
+
+    bookingService.forEach(Fixtures.CAMPSITE_ID, bookingEntity2.getArrivalDate(), bookingEntity2.getDepartureDate(),
+        bookingEntities::add);
+
+    assertThat(bookingEntities).containsExactly(bookingEntity2);
+  }
+
+  @Test
+  void findPage() {
+    final var bookingEntity1 = createAndAddBookingEntity();
+    final var bookingEntity2 = createAndAddAnotherBookingEntity();
+    final var startInclusive = LocalDate.now();
+    final var endExclusive = LocalDate.now().plusYears(1);
+
+    final var page1 = bookingService.findPage(Fixtures.CAMPSITE_ID, startInclusive, endExclusive, startInclusive, 0, 1);
+    final var page2 = bookingService.findPage(Fixtures.CAMPSITE_ID, startInclusive, endExclusive,
+        bookingEntity1.getArrivalDate(), bookingEntity1.getId(), 1);
+    final var page3 = bookingService.findPage(Fixtures.CAMPSITE_ID, startInclusive, endExclusive,
+        bookingEntity2.getArrivalDate(), bookingEntity2.getId(), 1);
+
+    assertThat(page1).containsExactly(bookingEntity1);
+    assertThat(page2).containsExactly(bookingEntity2);
+    assertThat(page3).isEmpty();
+  }
+
+  @Test
+  void getCalendarVersion_changedByAddUpdateDelete() {
+    final var version0 = bookingService.getCalendarVersion();
+    final var bookingEntity = createAndAddBookingEntity();
+    final var version1 = bookingService.getCalendarVersion();
+    bookingService.update(bookingEntity, Fixtures.createAnotherBookingEntity());
+    final var version2 = bookingService.getCalendarVersion();
+    bookingService.deleteById(Fixtures.CAMPSITE_ID, bookingEntity.getId());
+    final var version3 = bookingService.getCalendarVersion();
+
+    assertThat(List.of(version0, version1, version2, version3)).doesNotHaveDuplicates();
+  }
+
+  @Test
+  void getCalendarVersion_notChangedByConflict() {
+    final var bookingEntity = createAndAddBookingEntity();
+    final var version = bookingService.getCalendarVersion();
+
+    assertThatThrownBy(() -> bookingService.add(Fixtures.createBookingEntity(bookingEntity.getArrivalDate(), 1)))
+        .isInstanceOf(AlreadyBookedException.class);
+
+    assertThat(bookingService.getCalendarVersion()).isEqualTo(version);
+  }
+
   @Test
   void getAvailabilities_0booking() {
     final var startInclusive = LocalDate.now();
     final var endExclusive = startInclusive.plusDays(10);
 
-    final var availabilities = bookingService.getAvailabilities(startInclusive, endExclusive);
+    final var availabilities = bookingService.getAvailabilities(Fixtures.CAMPSITE_ID, startInclusive, endExclusive);
 
     final var expectedAvailabilities = Utils.datesBetween(startInclusive, endExclusive);
     assertThat(availabilities).containsExactlyElementsOf(expectedAvailabilities);
@@ -144,7 +389,7 @@ class BookingServiceTest {
     final var startInclusive = bookingEntity.getArrivalDate().minusDays(5);
     final var endExclusive = bookingEntity.getDepartureDate().plusDays(5);
 
-    final var availabilities = bookingService.getAvailabilities(startInclusive, endExclusive);
+    final var availabilities = bookingService.getAvailabilities(Fixtures.CAMPSITE_ID, startInclusive, endExclusive);
 
     final var expectedAvailabilities = Utils.datesBetween(startInclusive, bookingEntity.getArrivalDate());
     expectedAvailabilities.addAll(Utils.datesBetween(bookingEntity.getDepartureDate(), endExclusive));
@@ -159,7 +404,7 @@ class BookingServiceTest {
     final var startInclusive = bookingEntity1.getArrivalDate();
     final var endExclusive = bookingEntity2.getDepartureDate();
 
-    final var availabilities = bookingService.getAvailabilities(startInclusive, endExclusive);
+    final var availabilities = bookingService.getAvailabilities(Fixtures.CAMPSITE_ID, startInclusive, endExclusive);
 
     final var expectedAvailabilities = Utils.datesBetween(
         bookingEntity1.getDepartureDate(),
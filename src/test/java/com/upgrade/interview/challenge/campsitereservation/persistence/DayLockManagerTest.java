@@ -0,0 +1,82 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+
+/**
+ * Test the {@link DayLockManager}.
+ */
+class DayLockManagerTest {
+
+  private static final long CAMPSITE = 1;
+
+  private static final LocalDate START = LocalDate.parse("2021-01-28");
+
+  private final CampsiteConfiguration configuration = new CampsiteConfiguration();
+
+  private DayLockManager dayLockManager;
+
+  @BeforeEach
+  void setUp() {
+    configuration.getDayLock().setTimeout(Duration.ofMillis(50));
+    dayLockManager = new DayLockManager(configuration);
+  }
+
+  /**
+   * Locks the days in another thread, and releases the locks immediately.
+   */
+  private CompletableFuture<Void> lockInAnotherThread(LocalDate startInclusive, LocalDate endExclusive) {
+    return CompletableFuture.runAsync(() -> dayLockManager.lock(CAMPSITE, startInclusive, endExclusive).close());
+  }
+
+  @Test
+  void lock_overlappingDays_timeout() {
+    try (var ignored = dayLockManager.lock(CAMPSITE, START, START.plusDays(3))) {
+      assertThatThrownBy(() -> lockInAnotherThread(START.plusDays(2), START.plusDays(4)).join())
+          .isInstanceOf(CompletionException.class)
+          .hasCauseInstanceOf(CannotAcquireLockException.class);
+    }
+  }
+
+  @Test
+  void lock_released() {
+    dayLockManager.lock(CAMPSITE, START, START.plusDays(3)).close();
+
+    assertThat(lockInAnotherThread(START, START.plusDays(3))).succeedsWithin(Duration.ofSeconds(1));
+  }
+
+  @Test
+  void lock_reentrant() {
+    // The days of both ranges overlap, and are locked once
+    try (var ignored = dayLockManager.lock(CAMPSITE, START, START.plusDays(3), START.plusDays(1), START.plusDays(4))) {
+      dayLockManager.lock(CAMPSITE, START, START.plusDays(4)).close();
+    }
+
+    assertThat(lockInAnotherThread(START, START.plusDays(4))).succeedsWithin(Duration.ofSeconds(1));
+  }
+
+  @Test
+  void lock_singleStripe() {
+    // All the days share the same lock
+    configuration.getDayLock().setStripes(1);
+    dayLockManager = new DayLockManager(configuration);
+
+    try (var ignored = dayLockManager.lock(CAMPSITE, START, START.plusDays(3))) {
+      assertThatThrownBy(() -> lockInAnotherThread(START.plusDays(10), START.plusDays(11)).join())
+          .hasCauseInstanceOf(CannotAcquireLockException.class);
+    }
+
+    assertThat(lockInAnotherThread(START.plusDays(10), START.plusDays(11))).succeedsWithin(Duration.ofSeconds(1));
+  }
+}
@@ -0,0 +1,184 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+import com.upgrade.interview.challenge.campsitereservation.Fixtures;
+import com.upgrade.interview.challenge.campsitereservation.exception.AlreadyBookedException;
+import com.upgrade.interview.challenge.campsitereservation.exception.BadRequestException;
+import com.upgrade.interview.challenge.campsitereservation.validation.BookingRules;
+
+/**
+ * Test the {@link GroupCommitPipeline}.
+ * <p>This test class uses the h2 in-memory database. The maximum wait is long enough for the bookings submitted by the
+ * test to be committed in 1 batch.</p>
+ */
+@SpringBootTest(properties = {"campsite.group-commit.enabled=true", "campsite.group-commit.max-wait=200ms"})
+class GroupCommitPipelineTest {
+
+  @Autowired
+  private GroupCommitPipeline groupCommitPipeline;
+
+  @SpyBean
+  private BookingService bookingService;
+
+  @Autowired
+  private BookingRepository bookingRepository;
+
+  @Autowired
+  private BookingDateRepository bookingDateRepository;
+
+  @Autowired
+  private OccupancyIndex occupancyIndex;
+
+  @Autowired
+  private BookingRules bookingRules;
+
+  @Autowired
+  private CampsiteConfiguration configuration;
+
+  @BeforeEach
+  void setUp() {
+    bookingRepository.deleteAll();
+    bookingDateRepository.deleteAll();
+    occupancyIndex.load();
+  }
+
+  private List<CompletableFuture<BookingEntity>> submitAll(List<BookingEntity> bookingEntities) {
+    return bookingEntities.stream().map(groupCommitPipeline::submit).collect(Collectors.toList());
+  }
+
+  @Test
+  void add_success() {
+    final var bookingEntity = groupCommitPipeline.add(Fixtures.createBookingEntity());
+
+    assertThat(bookingRepository.findById(bookingEntity.getId())).get().isEqualTo(bookingEntity);
+    assertThat(bookingDateRepository.findAll()).containsExactlyElementsOf(bookingEntity.bookingDates());
+  }
+
+  @Test
+  void add_conflict() {
+    final var bookingEntity = groupCommitPipeline.add(Fixtures.createBookingEntity());
+
+    assertThatThrownBy(() -> groupCommitPipeline.add(Fixtures.createBookingEntity(bookingEntity.getArrivalDate(), 1)))
+        .isInstanceOf(AlreadyBookedException.class);
+    assertThat(bookingRepository.findAll()).containsExactly(bookingEntity);
+  }
+
+  @Test
+  void submit_invalidDates() {
+    final var tooLongBookingEntity = Fixtures.createBookingEntity(LocalDate.now().plusDays(2), 10);
+
+    assertThatThrownBy(() -> groupCommitPipeline.submit(tooLongBookingEntity))
+        .isInstanceOf(BadRequestException.class)
+        .hasMessage("The campsite can be reserved for maximum 3 days.");
+    verify(bookingService, never()).addAll(anyLong(), anyList());
+  }
+
+  @Test
+  void submit_stopped() throws InterruptedException {
+    final var stoppedPipeline = new GroupCommitPipeline(bookingService, bookingRules, configuration);
+    stoppedPipeline.stop();
+
+    assertThatThrownBy(() -> stoppedPipeline.submit(Fixtures.createBookingEntity()))
+        .isInstanceOf(TransientDataAccessResourceException.class);
+    // Fails fast instead of waiting for a drainer which has exited
+    assertThatThrownBy(() -> stoppedPipeline.add(Fixtures.createBookingEntity()))
+        .isInstanceOf(TransientDataAccessResourceException.class);
+    assertThat(bookingRepository.findAll()).isEmpty();
+  }
+
+  @Test
+  void add_timeout() throws InterruptedException {
+    // The booking waits for the other bookings of its batch longer than the timeout
+    final var slowConfiguration = new CampsiteConfiguration();
+    slowConfiguration.getGroupCommit().setMaxWait(Duration.ofSeconds(5));
+    slowConfiguration.getGroupCommit().setTimeout(Duration.ofMillis(100));
+    final var slowPipeline = new GroupCommitPipeline(bookingService, bookingRules, slowConfiguration);
+
+    try {
+      assertThatThrownBy(() -> slowPipeline.add(Fixtures.createBookingEntity()))
+          .isInstanceOf(TransientDataAccessResourceException.class);
+    } finally {
+      slowPipeline.stop();
+    }
+    assertThat(bookingRepository.findAll()).isEmpty();
+  }
+
+  @Test
+  void submit_drainerFailure() {
+    doThrow(new AssertionError("Drainer failure")).when(bookingService).addAll(anyLong(), anyList());
+    final var failingPipeline = new GroupCommitPipeline(bookingService, bookingRules, configuration);
+
+    final var future = failingPipeline.submit(Fixtures.createBookingEntity());
+
+    // The booking is completed instead of waiting forever, and the pipeline is stopped
+    assertThatThrownBy(() -> future.get(10, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(TransientDataAccessResourceException.class);
+    assertThatThrownBy(() -> failingPipeline.submit(Fixtures.createAnotherBookingEntity()))
+        .isInstanceOf(TransientDataAccessResourceException.class);
+  }
+
+  @Test
+  void submit_oneTransactionPerBatch() {
+    final var futures = submitAll(IntStream.range(1, 11)
+        .mapToObj(i -> Fixtures.createBookingEntity(LocalDate.now().plusDays(i), 1))
+        .collect(Collectors.toList()));
+
+    futures.forEach(CompletableFuture::join);
+    assertThat(bookingRepository.findAll()).hasSize(10);
+    verify(bookingService, times(1)).addAll(anyLong(), anyList());
+  }
+
+  @Test
+  void submit_conflictsWithinBatch() {
+    final var futures = submitAll(List.of(
+        Fixtures.createBookingEntity(),
+        Fixtures.createBookingEntity(),
+        Fixtures.createAnotherBookingEntity()));
+
+    assertThat(futures.get(0).join().getId()).isPositive();
+    assertThatThrownBy(futures.get(1)::join)
+        .isInstanceOf(CompletionException.class)
+        .hasCauseInstanceOf(AlreadyBookedException.class);
+    assertThat(futures.get(2).join().getId()).isPositive();
+    assertThat(bookingRepository.findAll()).hasSize(2);
+  }
+
+  @Test
+  void submit_failedBatch_addedOneByOne() {
+    doThrow(new DataIntegrityViolationException("Persistence failure"))
+        .when(bookingService).addAll(anyLong(), anyList());
+
+    final var futures = submitAll(List.of(Fixtures.createBookingEntity(), Fixtures.createAnotherBookingEntity()));
+
+    futures.forEach(CompletableFuture::join);
+    assertThat(bookingRepository.findAll()).hasSize(2);
+  }
+}
@@ -0,0 +1,110 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import com.upgrade.interview.challenge.campsitereservation.Fixtures;
+
+/**
+ * Test the {@link IndexSynchronizer}.
+ * <p>The bookings written with the repositories simulate the bookings written by another instance.</p>
+ */
+@SpringBootTest
+class IndexSynchronizerTest {
+
+  @Autowired
+  private IndexSynchronizer indexSynchronizer;
+
+  @Autowired
+  private BookingService bookingService;
+
+  @Autowired
+  private BookingRepository bookingRepository;
+
+  @Autowired
+  private BookingDateRepository bookingDateRepository;
+
+  @Autowired
+  private BookingIntervalIndex bookingIntervalIndex;
+
+  @SpyBean
+  private OccupancyIndex occupancyIndex;
+
+  @BeforeEach
+  void setUp() {
+    bookingRepository.deleteAll();
+    bookingDateRepository.deleteAll();
+    indexSynchronizer.reload();
+  }
+
+  private boolean isAvailable(BookingEntity bookingEntity) {
+    return occupancyIndex.availabilities(bookingEntity.getCampsiteId(), bookingEntity.getArrivalDate(),
+        bookingEntity.getDepartureDate()).size() == bookingEntity.dayRange().length();
+  }
+
+  @Test
+  void sync_changesOfAnotherInstance() {
+    final var bookingEntity = bookingRepository.save(Fixtures.createBookingEntity());
+    bookingDateRepository.saveAll(bookingEntity.bookingDates());
+    final var version = indexSynchronizer.getCalendarVersion();
+    assertThat(isAvailable(bookingEntity)).isTrue();
+
+    assertThat(indexSynchronizer.sync()).isTrue();
+
+    assertThat(isAvailable(bookingEntity)).isFalse();
+    assertThat(bookingIntervalIndex.overlapping(bookingEntity.getCampsiteId(), bookingEntity.getArrivalDate(),
+        bookingEntity.getDepartureDate())).containsExactly(bookingEntity.getId());
+    assertThat(indexSynchronizer.getCalendarVersion()).isNotEqualTo(version);
+    assertThat(indexSynchronizer.sync()).isFalse();
+  }
+
+  @Test
+  void sync_deletionOfAnotherInstance() {
+    final var bookingEntity = bookingService.add(Fixtures.createBookingEntity());
+    bookingDateRepository.deleteAll();
+    bookingRepository.deleteAll();
+
+    assertThat(indexSynchronizer.sync()).isTrue();
+
+    assertThat(isAvailable(bookingEntity)).isTrue();
+    assertThat(bookingIntervalIndex.overlapping(bookingEntity.getCampsiteId(), bookingEntity.getArrivalDate(),
+        bookingEntity.getDepartureDate())).isEmpty();
+  }
+
+  @Test
+  void sync_changesOfThisInstance() {
+    final var bookingEntity = bookingService.add(Fixtures.createBookingEntity());
+    bookingService.addAll(Fixtures.CAMPSITE_ID, List.of(Fixtures.createAnotherBookingEntity()));
+    assertThat(indexSynchronizer.sync()).isFalse();
+
+    final var updatedBookingEntity = bookingService.update(bookingEntity,
+        Fixtures.createBookingEntity(bookingEntity.getDepartureDate().plusDays(5), 1));
+    assertThat(indexSynchronizer.sync()).isFalse();
+
+    bookingService.deleteById(Fixtures.CAMPSITE_ID, updatedBookingEntity.getId());
+    assertThat(indexSynchronizer.sync()).isFalse();
+  }
+
+  @Test
+  void reload_changeCommittedDuringTheLoad() {
+    final var bookingEntity = Fixtures.createBookingEntity();
+    // The change is applied to the index which is being replaced
+    doAnswer(invocation -> {
+      indexSynchronizer.committed(BookingChecksum.EMPTY, () -> occupancyIndex.reserve(bookingEntity.getCampsiteId(),
+          bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()));
+      return invocation.callRealMethod();
+    }).when(occupancyIndex).load();
+
+    indexSynchronizer.reload();
+
+    assertThat(isAvailable(bookingEntity)).isFalse();
+  }
+}
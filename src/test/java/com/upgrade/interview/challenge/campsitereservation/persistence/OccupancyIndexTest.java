@@ -0,0 +1,205 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.upgrade.interview.challenge.campsitereservation.Utils;
+
+/**
+ * Test the {@link OccupancyIndex}.
+ */
+class OccupancyIndexTest {
+
+  private static final long CAMPSITE = 1;
+
+  private static final LocalDate START = LocalDate.parse("2021-01-28");
+
+  private final BookingDateRepository bookingDateRepository = mock(BookingDateRepository.class);
+
+  private OccupancyIndex occupancyIndex;
+
+  @BeforeEach
+  void setUp() {
+    occupancyIndex = new OccupancyIndex(bookingDateRepository);
+  }
+
+  @Test
+  void availabilities_empty() {
+    assertThat(occupancyIndex.availabilities(CAMPSITE, START, START.plusDays(200)))
+        .containsExactlyElementsOf(Utils.datesBetween(START, START.plusDays(200)));
+  }
+
+  @Test
+  void availabilities_startAfterEnd() {
+    assertThat(occupancyIndex.availabilities(CAMPSITE, START, START.minusDays(1))).isEmpty();
+  }
+
+  @Test
+  void reserve() {
+    occupancyIndex.reserve(CAMPSITE, START.plusDays(1), START.plusDays(3));
+
+    assertThat(occupancyIndex.availabilities(CAMPSITE, START, START.plusDays(5)))
+        .containsExactly(START, START.plusDays(3), START.plusDays(4));
+  }
+
+  @Test
+  void reserve_acrossWords() {
+    // 2 reservations far apart, and 1 reservation spanning several words
+    occupancyIndex.reserve(CAMPSITE, START, START.plusDays(1));
+    occupancyIndex.reserve(CAMPSITE, START.plusDays(1000), START.plusDays(1001));
+    occupancyIndex.reserve(CAMPSITE, START.minusDays(100), START.minusDays(1));
+
+    final var expectedAvailabilities = Utils.datesBetween(START.minusDays(200), START.minusDays(100));
+    expectedAvailabilities.add(START.minusDays(1));
+    expectedAvailabilities.addAll(Utils.datesBetween(START.plusDays(1), START.plusDays(1000)));
+    expectedAvailabilities.addAll(Utils.datesBetween(START.plusDays(1001), START.plusDays(1100)));
+    assertThat(occupancyIndex.availabilities(CAMPSITE, START.minusDays(200), START.plusDays(1100)))
+        .containsExactlyElementsOf(expectedAvailabilities);
+  }
+
+  @Test
+  void reserve_otherCampsite() {
+    occupancyIndex.reserve(CAMPSITE, START, START.plusDays(3));
+
+    assertThat(occupancyIndex.tryClaim(CAMPSITE + 1, START, START.plusDays(3))).isTrue();
+    assertThat(occupancyIndex.tryClaim(CAMPSITE, START, START.plusDays(3))).isFalse();
+    assertThat(occupancyIndex.availabilities(CAMPSITE + 2, START, START.plusDays(3)))
+        .containsExactlyElementsOf(Utils.datesBetween(START, START.plusDays(3)));
+  }
+
+  @Test
+  void release() {
+    occupancyIndex.reserve(CAMPSITE, START, START.plusDays(3));
+
+    occupancyIndex.release(CAMPSITE, START.plusDays(1), START.plusDays(2));
+    // Releasing dates outside the index has no effect
+    occupancyIndex.release(CAMPSITE, START.plusDays(500), START.plusDays(600));
+
+    assertThat(occupancyIndex.availabilities(CAMPSITE, START, START.plusDays(4)))
+        .containsExactly(START.plusDays(1), START.plusDays(3));
+  }
+
+  @Test
+  void move() {
+    occupancyIndex.reserve(CAMPSITE, START, START.plusDays(3));
+
+    occupancyIndex.move(CAMPSITE, START, START.plusDays(3), START.plusDays(2), START.plusDays(4));
+
+    assertThat(occupancyIndex.availabilities(CAMPSITE, START, START.plusDays(5)))
+        .containsExactly(START, START.plusDays(1), START.plusDays(4));
+  }
+
+  @Test
+  void forEachFreeRun() {
+    occupancyIndex.reserve(CAMPSITE, START.plusDays(1), START.plusDays(3));
+    occupancyIndex.reserve(CAMPSITE, START.plusDays(100), START.plusDays(101));
+    final var runs = new ArrayList<List<LocalDate>>();
+
+    occupancyIndex.forEachFreeRun(CAMPSITE, START, START.plusDays(200),
+        (start, end) -> runs.add(List.of(LocalDate.ofEpochDay(start), LocalDate.ofEpochDay(end))));
+
+    assertThat(runs).containsExactly(
+        List.of(START, START.plusDays(1)),
+        List.of(START.plusDays(3), START.plusDays(100)),
+        List.of(START.plusDays(101), START.plusDays(200)));
+  }
+
+  @Test
+  void forEachFreeRun_allReserved() {
+    occupancyIndex.reserve(CAMPSITE, START, START.plusDays(10));
+    final var runs = new ArrayList<List<LocalDate>>();
+
+    occupancyIndex.forEachFreeRun(CAMPSITE, START, START.plusDays(10),
+        (start, end) -> runs.add(List.of(LocalDate.ofEpochDay(start), LocalDate.ofEpochDay(end))));
+
+    assertThat(runs).isEmpty();
+  }
+
+  @Test
+  void freeBitmap() {
+    occupancyIndex.reserve(CAMPSITE, START.plusDays(1), START.plusDays(3));
+    occupancyIndex.reserve(CAMPSITE, START.plusDays(70), START.plusDays(80));
+
+    final var bitmap = occupancyIndex.freeBitmap(CAMPSITE, START, START.plusDays(81));
+
+    // 81 dates => 11 bytes, the unused bits of the last byte are cleared
+    assertThat(bitmap).hasSize(11);
+    assertThat(bitmap[0]).isEqualTo((byte) 0b11111001);
+    assertThat(bitmap[8]).isEqualTo((byte) 0b00111111);
+    assertThat(bitmap[9]).isEqualTo((byte) 0b00000000);
+    assertThat(bitmap[10]).isEqualTo((byte) 0b00000001);
+  }
+
+  @Test
+  void windowStarts() {
+    occupancyIndex.reserve(CAMPSITE, START.plusDays(1), START.plusDays(3));
+    occupancyIndex.reserve(CAMPSITE, START.plusDays(5), START.plusDays(6));
+
+    assertThat(occupancyIndex.windowStarts(CAMPSITE, START, START.plusDays(10), 2, 10))
+        .containsExactly(START.plusDays(3), START.plusDays(6), START.plusDays(7), START.plusDays(8));
+    assertThat(occupancyIndex.windowStarts(CAMPSITE, START, START.plusDays(10), 2, 2))
+        .containsExactly(START.plusDays(3), START.plusDays(6));
+    // The windows end before the end date
+    assertThat(occupancyIndex.windowStarts(CAMPSITE, START, START.plusDays(10), 4, 10))
+        .containsExactly(START.plusDays(6));
+    assertThat(occupancyIndex.windowStarts(CAMPSITE, START, START.plusDays(9), 4, 10)).isEmpty();
+  }
+
+  @Test
+  void windowStarts_sameAsAvailabilities() {
+    // Random reservations over 3 years, windows across the words
+    final var random = new Random(42);
+    for (var day = 0; day < 3 * 365; day += 1 + random.nextInt(40)) {
+      final var length = 1 + random.nextInt(5);
+      occupancyIndex.reserve(CAMPSITE, START.plusDays(day), START.plusDays(day + length));
+      day += length;
+    }
+    final var end = START.plusDays(3 * 365);
+    final var availabilities = new HashSet<>(occupancyIndex.availabilities(CAMPSITE, START, end));
+
+    for (var length = 1; length <= OccupancyIndex.MAX_WINDOW_LENGTH; length++) {
+      final var expectedStarts = new ArrayList<LocalDate>();
+      for (var date = START; !date.plusDays(length).isAfter(end); date = date.plusDays(1)) {
+        if (availabilities.containsAll(Utils.datesBetween(date, date.plusDays(length)))) {
+          expectedStarts.add(date);
+        }
+      }
+      assertThat(occupancyIndex.windowStarts(CAMPSITE, START, end, length, Integer.MAX_VALUE))
+          .as("Windows of %d days", length)
+          .containsExactlyElementsOf(expectedStarts);
+    }
+  }
+
+  @Test
+  void windowStarts_invalidLength() {
+    assertThatThrownBy(() -> occupancyIndex.windowStarts(CAMPSITE, START, START.plusDays(10), 0, 10))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> occupancyIndex.windowStarts(CAMPSITE, START, START.plusDays(100),
+        OccupancyIndex.MAX_WINDOW_LENGTH + 1, 10))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void load() {
+    occupancyIndex.reserve(CAMPSITE, START, START.plusDays(3));
+    when(bookingDateRepository.findAll()).thenReturn(List.of(
+        BookingDate.builder().campsiteId(CAMPSITE).date(START.plusDays(1)).build(),
+        BookingDate.builder().campsiteId(CAMPSITE).date(START.plusDays(4)).build()));
+
+    occupancyIndex.load();
+
+    assertThat(occupancyIndex.availabilities(CAMPSITE, START, START.plusDays(5)))
+        .containsExactly(START, START.plusDays(2), START.plusDays(3));
+  }
+}
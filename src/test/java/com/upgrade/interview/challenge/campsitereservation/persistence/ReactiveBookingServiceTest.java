@@ -0,0 +1,151 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+
+import com.upgrade.interview.challenge.campsitereservation.Fixtures;
+import com.upgrade.interview.challenge.campsitereservation.Utils;
+import com.upgrade.interview.challenge.campsitereservation.exception.AlreadyBookedException;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Test the {@link ReactiveBookingService} with the inventory reservation engine, mixed with the blocking
+ * {@link BookingService}.
+ * <p>This test class uses the h2 in-memory database, shared by JPA and R2DBC.</p>
+ */
+@SpringBootTest(properties = {
+    "spring.main.web-application-type=reactive",
+    "spring.datasource.url=jdbc:h2:mem:reactive-inventory;DB_CLOSE_DELAY=-1",
+    "spring.r2dbc.url=r2dbc:h2:mem:///reactive-inventory?options=DB_CLOSE_DELAY=-1",
+    "campsite.reservation-engine=inventory"})
+class ReactiveBookingServiceTest {
+
+  @Autowired
+  private ReactiveBookingService reactiveBookingService;
+
+  @Autowired
+  private BookingService bookingService;
+
+  @Autowired
+  private BookingRepository bookingRepository;
+
+  @Autowired
+  private BookingDateRepository bookingDateRepository;
+
+  @Autowired
+  private InventoryDayRepository inventoryDayRepository;
+
+  @Autowired
+  private OccupancyIndex occupancyIndex;
+
+  @Autowired
+  private BookingIntervalIndex bookingIntervalIndex;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() {
+    bookingRepository.deleteAll();
+    bookingDateRepository.deleteAll();
+    inventoryDayRepository.deleteAll();
+    occupancyIndex.load();
+    bookingIntervalIndex.load();
+  }
+
+  private List<LocalDate> claimedDates(long bookingId) {
+    return inventoryDayRepository.findAll(Sort.by("date")).stream()
+        .filter(inventoryDay -> Objects.equals(inventoryDay.getBookingId(), bookingId))
+        .map(InventoryDay::getDate)
+        .collect(Collectors.toList());
+  }
+
+  private long operationCount(String operation, String outcome) {
+    final var timer = meterRegistry.find(BookingMetrics.OPERATION_TIMER)
+        .tag("operation", operation).tag("outcome", outcome).timer();
+    return timer == null ? 0 : timer.count();
+  }
+
+  @Test
+  void add_claimsInventoryDays() {
+    final var bookingEntity = Fixtures.createBookingEntity();
+    final var addCount = operationCount("add", "success");
+
+    final var addedBookingEntity = reactiveBookingService.add(bookingEntity).block();
+
+    assertThat(claimedDates(addedBookingEntity.getId()))
+        .containsExactlyElementsOf(
+            Utils.datesBetween(bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()));
+    assertThat(bookingDateRepository.findAll()).containsExactlyElementsOf(addedBookingEntity.bookingDates());
+    assertThat(operationCount("add", "success")).isEqualTo(addCount + 1);
+  }
+
+  @Test
+  void add_reactiveThenBlocking_conflict() {
+    final var bookingEntity = reactiveBookingService.add(Fixtures.createBookingEntity()).block();
+    final var overlappingBookingEntity = Fixtures.createBookingEntity(bookingEntity.getDepartureDate().minusDays(1), 2);
+
+    assertThatThrownBy(() -> bookingService.add(overlappingBookingEntity))
+        .isInstanceOf(AlreadyBookedException.class)
+        .hasMessage("Dates [" + bookingEntity.getDepartureDate().minusDays(1) + "] are not available");
+    assertThat(bookingRepository.findAll()).containsExactly(bookingEntity);
+  }
+
+  @Test
+  void add_blockingThenReactive_conflict() {
+    final var bookingEntity = bookingService.add(Fixtures.createBookingEntity());
+    final var overlappingBookingEntity = Fixtures.createBookingEntity(bookingEntity.getDepartureDate().minusDays(1), 2);
+    final var conflictCount = operationCount("add", "conflict");
+
+    assertThatThrownBy(() -> reactiveBookingService.add(overlappingBookingEntity).block())
+        .isInstanceOf(AlreadyBookedException.class)
+        .hasMessage("Dates [" + bookingEntity.getDepartureDate().minusDays(1) + "] are not available");
+    assertThat(bookingRepository.findAll()).containsExactly(bookingEntity);
+    // The claim of the day after the first booking has been rolled back
+    final var dayAfter = new BookingDateId(Fixtures.CAMPSITE_ID, bookingEntity.getDepartureDate());
+    assertThat(inventoryDayRepository.findById(dayAfter))
+        .get().extracting(InventoryDay::getBookingId).isNull();
+    assertThat(operationCount("add", "conflict")).isEqualTo(conflictCount + 1);
+  }
+
+  @Test
+  void update_releasesInventoryDays() {
+    final var bookingEntity = reactiveBookingService.add(Fixtures.createBookingEntity()).block();
+
+    final var updatedBookingEntity = reactiveBookingService.update(bookingEntity,
+        Fixtures.createBookingEntity(bookingEntity.getDepartureDate(), 2)).block();
+
+    assertThat(claimedDates(bookingEntity.getId())).containsExactlyElementsOf(
+        Utils.datesBetween(updatedBookingEntity.getArrivalDate(), updatedBookingEntity.getDepartureDate()));
+    // The days of the old booking can be booked by the blocking stack
+    final var addedBookingEntity = bookingService.add(Fixtures.createBookingEntity(bookingEntity.getArrivalDate(),
+        (int) bookingEntity.dayRange().length()));
+    assertThat(claimedDates(addedBookingEntity.getId()))
+        .containsExactlyElementsOf(
+            Utils.datesBetween(bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()));
+  }
+
+  @Test
+  void deleteById_releasesInventoryDays() {
+    final var bookingEntity = reactiveBookingService.add(Fixtures.createBookingEntity()).block();
+
+    reactiveBookingService.deleteById(Fixtures.CAMPSITE_ID, bookingEntity.getId()).block();
+
+    assertThat(claimedDates(bookingEntity.getId())).isEmpty();
+    final var addedBookingEntity = bookingService.add(Fixtures.createBookingEntity());
+    assertThat(claimedDates(addedBookingEntity.getId()))
+        .containsExactlyElementsOf(
+            Utils.datesBetween(bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate()));
+  }
+}
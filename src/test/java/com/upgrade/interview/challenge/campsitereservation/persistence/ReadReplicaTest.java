@@ -0,0 +1,126 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.upgrade.interview.challenge.campsitereservation.Fixtures;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Test the routing of the transactions to the primary database and to the read replica.
+ * <p>This test class uses 2 h2 in-memory databases. The replication is simulated: the primary database is copied to
+ * the replica by {@link #replicate()}.</p>
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:primary",
+    "campsite.read-replica.url=" + ReadReplicaTest.REPLICA_URL,
+    "campsite.read-replica.username=sa",
+    "campsite.read-replica.password=sa",
+    "campsite.read-replica.max-lag=1h"})
+class ReadReplicaTest {
+
+  static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+  private static Path script;
+
+  @Autowired
+  private BookingService bookingService;
+
+  @Autowired
+  private BookingRepository bookingRepository;
+
+  @Autowired
+  private BookingDateRepository bookingDateRepository;
+
+  @Autowired
+  private OccupancyIndex occupancyIndex;
+
+  @Autowired
+  @Qualifier("primaryDataSource")
+  private HikariDataSource primaryDataSource;
+
+  @BeforeAll
+  static void createScript() throws IOException {
+    script = Files.createTempFile("replication", ".sql");
+  }
+
+  @AfterAll
+  static void deleteScript() throws IOException {
+    Files.deleteIfExists(script);
+  }
+
+  @BeforeEach
+  void setUp() {
+    bookingDateRepository.deleteAllInBatch();
+    bookingRepository.deleteAllInBatch();
+    occupancyIndex.load();
+    replicate();
+  }
+
+  /**
+   * Copies the primary database to the replica.
+   */
+  private void replicate() {
+    new JdbcTemplate(primaryDataSource).execute("SCRIPT TO '" + script + "'");
+    final var replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", "sa"));
+    replica.execute("DROP ALL OBJECTS");
+    replica.execute("RUNSCRIPT FROM '" + script + "'");
+  }
+
+  private static long countBookings(JdbcTemplate jdbcTemplate) {
+    return jdbcTemplate.queryForObject("select count(*) from booking", Long.class);
+  }
+
+  @Test
+  void readOnlyTransaction_routedToReplica() {
+    // Not written through the service: not guarded
+    final var bookingEntity = bookingRepository.saveAndFlush(Fixtures.createBookingEntity());
+    assertThat(countBookings(new JdbcTemplate(primaryDataSource))).isEqualTo(1);
+
+    assertThat(bookingService.findById(bookingEntity.getId())).isEmpty();
+    replicate();
+    assertThat(bookingService.findById(bookingEntity.getId())).get().isEqualTo(bookingEntity);
+  }
+
+  @Test
+  void readWriteTransaction_routedToPrimary() {
+    final var bookingEntity = bookingRepository.saveAndFlush(Fixtures.createBookingEntity());
+
+    assertThat(bookingService.findCurrentById(bookingEntity.getId())).get().isEqualTo(bookingEntity);
+  }
+
+  @Test
+  void add_routedToPrimary() {
+    bookingService.add(Fixtures.createBookingEntity());
+
+    assertThat(countBookings(new JdbcTemplate(primaryDataSource))).isEqualTo(1);
+    assertThat(countBookings(new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", "sa")))).isZero();
+  }
+
+  @Test
+  void add_readYourWrites() {
+    final var bookingEntity = bookingService.add(Fixtures.createBookingEntity());
+
+    // The booking and its campsite have been written recently: they are read from the primary database
+    assertThat(bookingService.findById(bookingEntity.getId())).get().isEqualTo(bookingEntity);
+    assertThat(bookingService.findAll()).containsExactly(bookingEntity);
+    final var bookingEntities = new ArrayList<BookingEntity>();
+    bookingService.forEach(Fixtures.CAMPSITE_ID, bookingEntity.getArrivalDate(), bookingEntity.getDepartureDate(),
+        bookingEntities::add);
+    assertThat(bookingEntities).containsExactly(bookingEntity);
+  }
+}
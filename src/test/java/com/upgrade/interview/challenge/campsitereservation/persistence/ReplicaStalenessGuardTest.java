@@ -0,0 +1,62 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.base.Ticker;
+
+/**
+ * Test the {@link ReplicaStalenessGuard}.
+ */
+class ReplicaStalenessGuardTest {
+
+  private final AtomicLong nanos = new AtomicLong();
+
+  private final Ticker ticker = new Ticker() {
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+  };
+
+  @Test
+  void recentWrites() {
+    final var guard = new ReplicaStalenessGuard(Duration.ofSeconds(1), ticker);
+    assertThat(guard.isAnyRecent()).isFalse();
+
+    guard.recordWrite(1, 10);
+
+    assertThat(guard.isRecentBooking(10)).isTrue();
+    assertThat(guard.isRecentBooking(11)).isFalse();
+    assertThat(guard.isRecentCampsite(1)).isTrue();
+    assertThat(guard.isRecentCampsite(2)).isFalse();
+    assertThat(guard.isAnyRecent()).isTrue();
+  }
+
+  @Test
+  void expiredWrites() {
+    final var guard = new ReplicaStalenessGuard(Duration.ofSeconds(1), ticker);
+    guard.recordWrite(1, 10);
+
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+    assertThat(guard.isRecentBooking(10)).isFalse();
+    assertThat(guard.isRecentCampsite(1)).isFalse();
+    assertThat(guard.isAnyRecent()).isFalse();
+  }
+
+  @Test
+  void disabled() {
+    final var guard = new ReplicaStalenessGuard(Duration.ZERO, ticker);
+
+    guard.recordWrite(1, 10);
+
+    assertThat(guard.isRecentBooking(10)).isFalse();
+    assertThat(guard.isAnyRecent()).isFalse();
+  }
+}
@@ -0,0 +1,120 @@
+package com.upgrade.interview.challenge.campsitereservation.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Test the {@link TransientFailureRetry}.
+ */
+class TransientFailureRetryTest {
+
+  private final CampsiteConfiguration configuration = new CampsiteConfiguration();
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final AtomicInteger attempts = new AtomicInteger();
+
+  private final AtomicInteger resets = new AtomicInteger();
+
+  @BeforeEach
+  void setUp() {
+    configuration.getRetry().setMaxAttempts(3);
+    configuration.getRetry().setInitialBackoff(Duration.ofMillis(1));
+    configuration.getRetry().setMaxBackoff(Duration.ofMillis(2));
+    configuration.getRetry().setDeadline(Duration.ofSeconds(10));
+  }
+
+  private TransientFailureRetry transientFailureRetry() {
+    return new TransientFailureRetry(configuration, new BookingMetrics(meterRegistry));
+  }
+
+  /**
+   * Returns an action which fails with the exception for the first numberOfFailures attempts.
+   */
+  private Supplier<String> failing(int numberOfFailures, RuntimeException exception) {
+    return () -> {
+      if (attempts.incrementAndGet() <= numberOfFailures) {
+        throw exception;
+      }
+      return "result";
+    };
+  }
+
+  @Test
+  void execute_success() {
+    assertThat(transientFailureRetry().execute("add", failing(0, null), resets::incrementAndGet))
+        .isEqualTo("result");
+    assertThat(attempts).hasValue(1);
+    assertThat(resets).hasValue(0);
+  }
+
+  @Test
+  void execute_retriesLockFailure() {
+    final var result = transientFailureRetry().execute("add",
+        failing(2, new CannotAcquireLockException("Lock timeout")), resets::incrementAndGet);
+
+    assertThat(result).isEqualTo("result");
+    assertThat(attempts).hasValue(3);
+    assertThat(resets).hasValue(2);
+    assertThat(meterRegistry.get(BookingMetrics.RETRY_COUNTER)
+        .tag("operation", "add").tag("exception", "CannotAcquireLockException").counter().count()).isEqualTo(2);
+  }
+
+  @Test
+  void execute_retriesQueryTimeout() {
+    assertThat(transientFailureRetry().execute("update", failing(1, new QueryTimeoutException("Timeout"))))
+        .isEqualTo("result");
+    assertThat(attempts).hasValue(2);
+  }
+
+  @Test
+  void execute_maxAttempts() {
+    final var retry = transientFailureRetry();
+    final var action = failing(3, new CannotAcquireLockException("Lock timeout"));
+
+    assertThatThrownBy(() -> retry.execute("add", action)).isInstanceOf(CannotAcquireLockException.class);
+    assertThat(attempts).hasValue(3);
+  }
+
+  @Test
+  void execute_deadline() {
+    configuration.getRetry().setDeadline(Duration.ZERO);
+    final var retry = transientFailureRetry();
+    final var action = failing(1, new CannotAcquireLockException("Lock timeout"));
+
+    assertThatThrownBy(() -> retry.execute("add", action)).isInstanceOf(CannotAcquireLockException.class);
+    assertThat(attempts).hasValue(1);
+  }
+
+  @Test
+  void execute_noRetryOfOptimisticLockingFailure() {
+    final var retry = transientFailureRetry();
+    final var action = failing(1, new OptimisticLockingFailureException("Stale version"));
+
+    assertThatThrownBy(() -> retry.execute("update", action)).isInstanceOf(OptimisticLockingFailureException.class);
+    assertThat(attempts).hasValue(1);
+  }
+
+  @Test
+  void execute_noRetryOfNonTransientFailure() {
+    final var retry = transientFailureRetry();
+    final var action = failing(1, new DataIntegrityViolationException("Duplicate key"));
+
+    assertThatThrownBy(() -> retry.execute("add", action)).isInstanceOf(DataIntegrityViolationException.class);
+    assertThat(attempts).hasValue(1);
+  }
+}
@@ -1,24 +1,38 @@
 package com.upgrade.interview.challenge.campsitereservation.rest;
 
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.AVAILABILITY_BITMAP_JSON_VALUE;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.AVAILABILITY_RANGES_JSON_VALUE;
 import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.BASE_AVAILABLE_PATH;
 import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.BASE_PATH;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.CAMPSITE_PATH;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.WINDOWS_PATH;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.text.MessageFormat;
 import java.time.LocalDate;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -36,26 +50,35 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.web.servlet.MockMvc;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.upgrade.interview.challenge.campsitereservation.Fixtures;
+import com.upgrade.interview.challenge.campsitereservation.persistence.BookingCache;
+import com.upgrade.interview.challenge.campsitereservation.persistence.BookingChecksum;
 import com.upgrade.interview.challenge.campsitereservation.persistence.BookingDate;
 import com.upgrade.interview.challenge.campsitereservation.persistence.BookingDateRepository;
 import com.upgrade.interview.challenge.campsitereservation.persistence.BookingEntity;
+import com.upgrade.interview.challenge.campsitereservation.persistence.BookingIntervalIndex;
 import com.upgrade.interview.challenge.campsitereservation.persistence.BookingRepository;
 import com.upgrade.interview.challenge.campsitereservation.persistence.BookingService;
+import com.upgrade.interview.challenge.campsitereservation.persistence.IndexSynchronizer;
+import com.upgrade.interview.challenge.campsitereservation.persistence.OccupancyIndex;
 
 /**
  * Test the {@link BookingController}.
- * <p>Mock the Repository classes.</p>
+ * <p>Mock the Repository classes. The warm-up is disabled: its queries would be recorded by the mocks.</p>
  */
-@SpringBootTest
+@SpringBootTest(properties = "campsite.warm-up.enabled=false")
 @AutoConfigureMockMvc
 class BookingControllerTest {
   private final ObjectMapper objectMapper = new ObjectMapper();
@@ -72,6 +95,18 @@ class BookingControllerTest {
   @SpyBean
   private BookingService bookingService;
 
+  @Autowired
+  private OccupancyIndex occupancyIndex;
+
+  @Autowired
+  private IndexSynchronizer indexSynchronizer;
+
+  @Autowired
+  private BookingCache bookingCache;
+
+  @Autowired
+  private BookingIntervalIndex bookingIntervalIndex;
+
   private static Stream<Arguments> addBooking_invalid_source() {
     return Stream.of(
         Arguments.of(Fixtures.createTooEarlyBooking(), "The campsite can be reserved minimum 1 day(s) ahead of arrival."),
@@ -94,6 +129,11 @@ class BookingControllerTest {
   void setUp() {
     objectMapper.registerModule(new JavaTimeModule());
     objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+    // The repositories are mocked: reloading the index empties it
+    when(bookingRepository.checksum()).thenReturn(BookingChecksum.EMPTY);
+    indexSynchronizer.reload();
+    // The same booking ids are mocked by several tests
+    bookingCache.invalidateAll();
   }
 
   @Test
@@ -101,8 +141,11 @@ class BookingControllerTest {
     final var bookingEntityList = List.of(Fixtures.createBookingEntityWithId());
     final var bookingList = bookingEntityList.stream().map(Booking::createFrom).collect(Collectors.toList());
     final var bookingListJson = objectMapper.writeValueAsString(bookingList);
-    when(bookingRepository.findAll(any(Sort.class))).thenReturn(bookingEntityList);
-    mockMvc.perform(get(BASE_PATH))
+    when(bookingRepository.streamAllArrivingBetween(anyLong(), any(), any())).thenReturn(bookingEntityList.stream());
+    final var mvcResult = mockMvc.perform(get(BASE_PATH))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc.perform(asyncDispatch(mvcResult))
         .andDo(print())
         .andExpect(status().isOk())
         .andExpect(content().contentType(MediaType.APPLICATION_JSON))
@@ -113,18 +156,155 @@ class BookingControllerTest {
   void getBookingList_empty() throws Exception {
     final List<BookingEntity> bookingEntityList = List.of();
     final var bookingListJson = objectMapper.writeValueAsString(bookingEntityList);
-    when(bookingRepository.findAll(any(Sort.class))).thenReturn(bookingEntityList);
-    mockMvc.perform(get(BASE_PATH))
+    when(bookingRepository.streamAllArrivingBetween(anyLong(), any(), any())).thenReturn(bookingEntityList.stream());
+    final var mvcResult = mockMvc.perform(get(BASE_PATH))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc.perform(asyncDispatch(mvcResult))
         .andDo(print())
         .andExpect(status().isOk())
         .andExpect(content().contentType(MediaType.APPLICATION_JSON))
         .andExpect(content().json(bookingListJson));
   }
 
+  @Test
+  void getBookingList_filters() throws Exception {
+    when(bookingRepository.streamAllArrivingBetween(anyLong(), any(), any())).thenReturn(Stream.empty());
+    final var mvcResult = mockMvc.perform(get(BASE_PATH)
+        .queryParam("from", "2021-01-28")
+        .queryParam("to", "2021-02-03"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc.perform(asyncDispatch(mvcResult))
+        .andExpect(status().isOk());
+
+    verify(bookingRepository).streamAllArrivingBetween(Fixtures.CAMPSITE_ID, LocalDate.parse("2021-01-28"), LocalDate.parse("2021-02-03"));
+  }
+
+  @Test
+  void getBookingPage_firstPage() throws Exception {
+    final var bookingEntity = Fixtures.createBookingEntityWithId();
+    final var bookingJson = objectMapper.writeValueAsString(Booking.createFrom(bookingEntity));
+    when(bookingRepository.findAllArrivingBetweenAfter(anyLong(), any(), any(), any(), anyLong(), any()))
+        .thenReturn(List.of(bookingEntity));
+    mockMvc.perform(get(BASE_PATH)
+        .queryParam("from", "2021-01-28")
+        .queryParam("limit", "1"))
+        .andDo(print())
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+        .andExpect(content().json("{\"bookings\":[" + bookingJson + "]}"))
+        .andExpect(jsonPath("$.nextCursor").value(bookingEntity.getArrivalDate() + ":" + bookingEntity.getId()));
+
+    verify(bookingRepository).findAllArrivingBetweenAfter(eq(Fixtures.CAMPSITE_ID), eq(LocalDate.parse("2021-01-28")), any(),
+        eq(LocalDate.parse("2021-01-28")), eq(0L), eq(PageRequest.of(0, 1)));
+  }
+
+  @Test
+  void getBookingPage_lastPage() throws Exception {
+    when(bookingRepository.findAllArrivingBetweenAfter(anyLong(), any(), any(), any(), anyLong(), any()))
+        .thenReturn(List.of(Fixtures.createBookingEntityWithId()));
+    mockMvc.perform(get(BASE_PATH)
+        .queryParam("limit", "10")
+        .queryParam("cursor", "2021-01-28:42"))
+        .andDo(print())
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.bookings.length()").value(1))
+        .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+    verify(bookingRepository).findAllArrivingBetweenAfter(anyLong(), any(), any(),
+        eq(LocalDate.parse("2021-01-28")), eq(42L), eq(PageRequest.of(0, 10)));
+  }
+
+  @Test
+  void getOverlappingBookings() throws Exception {
+    final var bookingEntity = Fixtures.createBookingEntityWithId(LocalDate.parse("2021-01-28"), 3);
+    final var bookingJson = objectMapper.writeValueAsString(Booking.createFrom(bookingEntity));
+    bookingIntervalIndex.put(bookingEntity);
+    when(bookingRepository.findAllOverlapping(any(), any(), any())).thenReturn(List.of(bookingEntity));
+    mockMvc.perform(get(BASE_PATH)
+        .queryParam("overlapping", "2021-01-30,2021-02-02"))
+        .andDo(print())
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+        .andExpect(content().json("[" + bookingJson + "]"));
+
+    verify(bookingRepository).findAllOverlapping(List.of(bookingEntity.getId()),
+        LocalDate.parse("2021-01-30"), LocalDate.parse("2021-02-02"));
+  }
+
+  @Test
+  void getOverlappingBookings_noOverlap() throws Exception {
+    bookingIntervalIndex.put(Fixtures.createBookingEntityWithId(LocalDate.parse("2021-01-28"), 3));
+    mockMvc.perform(get(BASE_PATH)
+        .queryParam("overlapping", "2021-01-31,2021-02-02"))
+        .andDo(print())
+        .andExpect(status().isOk())
+        .andExpect(content().json("[]", true));
+
+    // The bookings are not read
+    verify(bookingRepository, never()).findAllOverlapping(any(), any(), any());
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"2021-01-28", "2021-01-28,2021-02-31", "2021-01-28,2021-02-01,2021-02-02"})
+  void getOverlappingBookings_invalidRange(String overlapping) throws Exception {
+    mockMvc.perform(get(BASE_PATH)
+        .queryParam("overlapping", overlapping))
+        .andDo(print())
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string(containsString("Invalid date range " + overlapping)));
+  }
+
+  @Test
+  void getOverlappingBookings_rangeTooLong() throws Exception {
+    mockMvc.perform(get(BASE_PATH)
+        .queryParam("overlapping", "2021-01-28,2023-01-28"))
+        .andDo(print())
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string(containsString("Date range 2021-01-28,2023-01-28 should span at most 1000 days")));
+    verify(bookingRepository, never()).findAllOverlapping(any(), any(), any());
+  }
+
+  @Test
+  void getOverlappingBookings_withLimit() throws Exception {
+    mockMvc.perform(get(BASE_PATH)
+        .queryParam("overlapping", "2021-01-30,2021-02-02")
+        .queryParam("limit", "10"))
+        .andDo(print())
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string(containsString("The overlapping bookings are not paged, limit 10 is not supported")));
+    verify(bookingRepository, never()).findAllOverlapping(any(), any(), any());
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"invalid", "2021-01-28", "2021-01-28:invalid", "2021-02-31:1"})
+  void getBookingPage_invalidCursor(String cursor) throws Exception {
+    mockMvc.perform(get(BASE_PATH)
+        .queryParam("limit", "10")
+        .queryParam("cursor", cursor))
+        .andDo(print())
+        .andExpect(status().isBadRequest())
+        .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+        .andExpect(content().string(containsString("Invalid cursor " + cursor)));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {0, 1001})
+  void getBookingPage_invalidLimit(int limit) throws Exception {
+    mockMvc.perform(get(BASE_PATH)
+        .queryParam("limit", String.valueOf(limit)))
+        .andDo(print())
+        .andExpect(status().isBadRequest())
+        .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+        .andExpect(content().string(containsString("should be between 1 and 1000")));
+  }
+
   @Test
   void getBooking_success() throws Exception {
     final var bookingEntity = Fixtures.createBookingEntityWithId();
     final var bookingJson = objectMapper.writeValueAsString(Booking.createFrom(bookingEntity));
+    when(bookingRepository.findVersion(bookingEntity.getId(), Fixtures.CAMPSITE_ID)).thenReturn(Optional.of(0L));
     when(bookingRepository.findById(bookingEntity.getId())).thenReturn(Optional.of(bookingEntity));
     mockMvc.perform(get(BASE_PATH + "/" + bookingEntity.getId()))
         .andDo(print())
@@ -133,6 +313,57 @@ class BookingControllerTest {
         .andExpect(content().json(bookingJson));
   }
 
+  @Test
+  void getBooking_notModified() throws Exception {
+    final var bookingEntity = Fixtures.createBookingEntityWithId();
+    when(bookingRepository.findVersion(bookingEntity.getId(), Fixtures.CAMPSITE_ID)).thenReturn(Optional.of(0L));
+    when(bookingRepository.findById(bookingEntity.getId())).thenReturn(Optional.of(bookingEntity));
+    final var etag = mockMvc.perform(get(BASE_PATH + "/" + bookingEntity.getId()))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+    mockMvc.perform(get(BASE_PATH + "/" + bookingEntity.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andDo(print())
+        .andExpect(status().isNotModified())
+        .andExpect(header().string(HttpHeaders.ETAG, etag))
+        .andExpect(content().string(""));
+
+    // The second request has only read the version of the booking
+    verify(bookingRepository, times(1)).findById(bookingEntity.getId());
+    verify(bookingRepository, times(2)).findVersion(bookingEntity.getId(), Fixtures.CAMPSITE_ID);
+  }
+
+  @Test
+  void getBooking_updatedByAnotherInstance() throws Exception {
+    final var bookingEntity = Fixtures.createBookingEntityWithId();
+    when(bookingRepository.findVersion(bookingEntity.getId(), Fixtures.CAMPSITE_ID)).thenReturn(Optional.of(0L));
+    when(bookingRepository.findById(bookingEntity.getId())).thenReturn(Optional.of(bookingEntity));
+    final var etag = mockMvc.perform(get(BASE_PATH + "/" + bookingEntity.getId()))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    // The cached booking is older than the booking of the database
+    final var updatedBookingEntity = bookingEntity.toBuilder().version(1).fullname("Updated").build();
+    when(bookingRepository.findVersion(bookingEntity.getId(), Fixtures.CAMPSITE_ID)).thenReturn(Optional.of(1L));
+    when(bookingRepository.findById(bookingEntity.getId())).thenReturn(Optional.of(updatedBookingEntity));
+
+    mockMvc.perform(get(BASE_PATH + "/" + bookingEntity.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andDo(print())
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, not(etag)))
+        .andExpect(jsonPath("$.fullname").value("Updated"));
+  }
+
+  @Test
+  void getBooking_otherCampsite() throws Exception {
+    final var bookingEntity = Fixtures.createBookingEntityWithId();
+    when(bookingRepository.findById(bookingEntity.getId())).thenReturn(Optional.of(bookingEntity));
+    mockMvc.perform(get(CAMPSITE_PATH + BASE_PATH + "/" + bookingEntity.getId(), Fixtures.CAMPSITE_ID + 1))
+        .andDo(print())
+        .andExpect(status().isNotFound())
+        .andExpect(content().string(containsString("Could not find booking with id " + bookingEntity.getId())));
+  }
+
   @Test
   void getBooking_unknown() throws Exception {
     final var bookingEntity = Fixtures.createBookingEntityWithId();
@@ -148,7 +379,7 @@ class BookingControllerTest {
   void addBooking_success() throws Exception {
     final var booking = Fixtures.createValidBooking();
     final var bookingJson = objectMapper.writeValueAsString(booking);
-    final var expectedBookingEntity = BookingEntity.createFrom(booking);
+    final var expectedBookingEntity = BookingEntity.createFrom(booking, Fixtures.CAMPSITE_ID);
     final var expectedBookingJson = objectMapper.writeValueAsString(booking);
     when(bookingRepository.save(expectedBookingEntity)).then(returnsFirstArg());
     mockMvc.perform(post(BASE_PATH).contentType(MediaType.APPLICATION_JSON).content(bookingJson))
@@ -191,13 +422,105 @@ class BookingControllerTest {
         .andExpect(content().string(containsString("java.lang.RuntimeException: exception message")));
   }
 
+  @Test
+  void addBooking_concurrentBooking() throws Exception {
+    final var bookingJson = objectMapper.writeValueAsString(Fixtures.createValidBooking());
+    when(bookingRepository.save(any())).thenThrow(new DataIntegrityViolationException("Duplicate key"));
+    mockMvc.perform(post(BASE_PATH).contentType(MediaType.APPLICATION_JSON).content(bookingJson))
+        .andDo(print())
+        .andExpect(status().isConflict())
+        .andExpect(content().string(containsString("Dates are not available")));
+  }
+
+  @Test
+  void addBooking_lockFailure() throws Exception {
+    final var bookingJson = objectMapper.writeValueAsString(Fixtures.createValidBooking());
+    when(bookingDateRepository.findAllDatesBetween(anyLong(), any(), any()))
+        .thenThrow(new CannotAcquireLockException("Lock timeout"));
+    mockMvc.perform(post(BASE_PATH).contentType(MediaType.APPLICATION_JSON).content(bookingJson))
+        .andDo(print())
+        .andExpect(status().isServiceUnavailable())
+        .andExpect(content().string(containsString("Lock timeout")));
+
+    // The lock failure has been retried
+    verify(bookingDateRepository, times(3)).findAllDatesBetween(anyLong(), any(), any());
+  }
+
+  @Test
+  void addBookings() throws Exception {
+    final var booking = Fixtures.createValidBooking();
+    // The second booking is invalid, the third booking conflicts with the first booking
+    final var bookingsJson = objectMapper.writeValueAsString(List.of(booking, Fixtures.createTooLongBooking(),
+        Fixtures.createBooking(booking.getDepartureDate().minusDays(1), 1)));
+    when(bookingRepository.saveAll(any())).then(returnsFirstArg());
+    mockMvc.perform(post(BASE_PATH + "/batch").contentType(MediaType.APPLICATION_JSON).content(bookingsJson))
+        .andDo(print())
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()").value(3))
+        .andExpect(jsonPath("$[0].status").value("OK"))
+        .andExpect(jsonPath("$[1].status").value("BAD_REQUEST"))
+        .andExpect(jsonPath("$[1].message").value("The campsite can be reserved for maximum 3 days."))
+        .andExpect(jsonPath("$[2].status").value("CONFLICT"))
+        .andExpect(jsonPath("$[2].message").value(
+            MessageFormat.format("Dates [{0}] are not available", booking.getDepartureDate().minusDays(1))));
+
+    // The dates of the whole batch have been read once
+    verify(bookingDateRepository, times(1)).findAllDatesBetween(anyLong(), any(), any());
+  }
+
+  @Test
+  void addBookings_invalidFields() throws Exception {
+    final var bookingsJson = objectMapper.writeValueAsString(List.of(
+        Booking.builder()
+            .email("invalid")
+            .fullname(" ")
+            .arrivalDate(LocalDate.now())
+            .departureDate(LocalDate.now().plusDays(4))
+            .build(),
+        Booking.builder().email("name@email.com").fullname("name").build()));
+    mockMvc.perform(post(BASE_PATH + "/batch").contentType(MediaType.APPLICATION_JSON).content(bookingsJson))
+        .andDo(print())
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].status").value("BAD_REQUEST"))
+        // In the order of the fields, then of the booking rules
+        .andExpect(jsonPath("$[0].message").value("Email should be valid. Fullname cannot be blank."
+            + " ArrivalDate should be in the future. The campsite can be reserved for maximum 3 days."
+            + " The campsite can be reserved minimum 1 day(s) ahead of arrival."))
+        .andExpect(jsonPath("$[1].status").value("BAD_REQUEST"))
+        .andExpect(jsonPath("$[1].message").value("ArrivalDate is mandatory. DepartureDate is mandatory."));
+    verify(bookingRepository, never()).saveAll(any());
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {0, BookingController.MAX_BATCH_SIZE + 1})
+  void addBookings_invalidSize(int size) throws Exception {
+    final var bookingsJson = objectMapper.writeValueAsString(
+        Stream.generate(Fixtures::createValidBooking).limit(size).collect(Collectors.toList()));
+    mockMvc.perform(post(BASE_PATH + "/batch").contentType(MediaType.APPLICATION_JSON).content(bookingsJson))
+        .andDo(print())
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string(containsString(
+            "The number of bookings " + size + " should be between 1 and " + BookingController.MAX_BATCH_SIZE)));
+  }
+
+  @Test
+  void updateBooking_concurrentModification() throws Exception {
+    final var bookingJson = objectMapper.writeValueAsString(Fixtures.createValidBooking());
+    when(bookingRepository.findById(any())).thenReturn(Optional.of(Fixtures.createBookingEntityWithId()));
+    when(bookingRepository.save(any())).thenThrow(new ObjectOptimisticLockingFailureException(BookingEntity.class, 1));
+    mockMvc.perform(put(BASE_PATH + "/1").contentType(MediaType.APPLICATION_JSON).content(bookingJson))
+        .andDo(print())
+        .andExpect(status().isConflict())
+        .andExpect(content().string(containsString("The booking has been modified concurrently")));
+  }
+
   @Test
   void addBooking_notAvailable() throws Exception {
     final var booking = Fixtures.createValidBooking();
     final var bookingJson = objectMapper.writeValueAsString(booking);
     // A date within the booking dates is already booked
     final var alreadyBookedDate = booking.getArrivalDate();
-    when(bookingDateRepository.findAllDatesBetween(any(), any()))
+    when(bookingDateRepository.findAllDatesBetween(anyLong(), any(), any()))
         .thenReturn(Stream.of(BookingDate.builder().date(alreadyBookedDate).build()));
     mockMvc.perform(post(BASE_PATH).contentType(MediaType.APPLICATION_JSON).content(bookingJson))
         .andDo(print())
@@ -212,8 +535,9 @@ class BookingControllerTest {
     final var oldBooking = Fixtures.createBooking(LocalDate.now().plusDays(2), 2);
     final var newBooking = Fixtures.createBooking(LocalDate.now().plusDays(2), 3);
     final var bookingJson = objectMapper.writeValueAsString(newBooking);
-    final var expectedBookingEntity = BookingEntity.createFrom(newBooking);
-    when(bookingRepository.findById(any())).thenReturn(Optional.of(BookingEntity.createFrom(oldBooking)));
+    final var expectedBookingEntity = BookingEntity.createFrom(newBooking, Fixtures.CAMPSITE_ID);
+    when(bookingRepository.findById(any()))
+        .thenReturn(Optional.of(BookingEntity.createFrom(oldBooking, Fixtures.CAMPSITE_ID)));
     when(bookingRepository.save(expectedBookingEntity)).then(returnsFirstArg());
     mockMvc.perform(put(BASE_PATH + "/1").contentType(MediaType.APPLICATION_JSON).content(bookingJson))
         .andDo(print())
@@ -224,6 +548,7 @@ class BookingControllerTest {
 
   @Test
   void deleteBooking_success() throws Exception {
+    when(bookingRepository.findById(1L)).thenReturn(Optional.of(Fixtures.createBookingEntityWithId()));
     mockMvc.perform(delete(BASE_PATH + "/1"))
         .andDo(print())
         .andExpect(status().isOk());
@@ -252,8 +577,7 @@ class BookingControllerTest {
 
   @Test
   void getAvailabilitiesBetween_1Booking() throws Exception {
-    final var bookingDates = Fixtures.bookingDates("2021-01-29", 2);
-    when(bookingDateRepository.fastFindAllDatesBetween(any(), any())).thenReturn(bookingDates);
+    reserve("2021-01-29", 2);
     mockMvc.perform(get(BASE_AVAILABLE_PATH)
         .queryParam("start", "2021-01-28")
         .queryParam("end", "2021-02-03"))
@@ -265,10 +589,8 @@ class BookingControllerTest {
 
   @Test
   void getAvailabilitiesBetween_2Bookings() throws Exception {
-    final var bookingDates = Stream.concat(
-        Fixtures.bookingDates("2021-01-29", 2),
-        Fixtures.bookingDates("2021-02-01", 1));
-    when(bookingDateRepository.fastFindAllDatesBetween(any(), any())).thenReturn(bookingDates);
+    reserve("2021-01-29", 2);
+    reserve("2021-02-01", 1);
     mockMvc.perform(get(BASE_AVAILABLE_PATH)
         .queryParam("start", "2021-01-28")
         .queryParam("end", "2021-02-03"))
@@ -280,8 +602,7 @@ class BookingControllerTest {
 
   @Test
   void getAvailabilitiesBetween_1Booking_overlapStartDate() throws Exception {
-    final var bookingDates = Fixtures.bookingDates("2021-01-27", 3);
-    when(bookingDateRepository.fastFindAllDatesBetween(any(), any())).thenReturn(bookingDates);
+    reserve("2021-01-27", 3);
     mockMvc.perform(get(BASE_AVAILABLE_PATH)
         .queryParam("start", "2021-01-28")
         .queryParam("end", "2021-02-03"))
@@ -293,8 +614,7 @@ class BookingControllerTest {
 
   @Test
   void getAvailabilitiesBetween_1Booking_overlapEndDate() throws Exception {
-    final var bookingDates = Fixtures.bookingDates("2021-02-02", 3);
-    when(bookingDateRepository.fastFindAllDatesBetween(any(), any())).thenReturn(bookingDates);
+    reserve("2021-02-02", 3);
     mockMvc.perform(get(BASE_AVAILABLE_PATH)
         .queryParam("start", "2021-01-28")
         .queryParam("end", "2021-02-03"))
@@ -304,6 +624,128 @@ class BookingControllerTest {
         .andExpect(content().json("[2021-01-28, 2021-01-29, 2021-01-30, 2021-01-31, 2021-02-01]"));
   }
 
+  @Test
+  void getAvailabilitiesBetween_notModified() throws Exception {
+    final var etag = mockMvc.perform(get(BASE_AVAILABLE_PATH))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+        .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT)))
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    assertThat(etag).startsWith("\"").endsWith("\"");
+
+    mockMvc.perform(get(BASE_AVAILABLE_PATH).header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andDo(print())
+        .andExpect(status().isNotModified())
+        .andExpect(content().string(""));
+
+    // The second request has not computed the availabilities
+    verify(bookingService, times(1)).getAvailabilities(anyLong(), any(), any());
+  }
+
+  @Test
+  void getAvailabilitiesBetween_modified() throws Exception {
+    final var etag = mockMvc.perform(get(BASE_AVAILABLE_PATH))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    // Cancel a booking
+    when(bookingRepository.findById(1L)).thenReturn(Optional.of(Fixtures.createBookingEntityWithId()));
+    bookingService.deleteById(Fixtures.CAMPSITE_ID, 1);
+
+    mockMvc.perform(get(BASE_AVAILABLE_PATH).header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andDo(print())
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+  }
+
+  @Test
+  void getAvailabilitiesBetween_etagDependsOnFormat() throws Exception {
+    final var etag = mockMvc.perform(get(BASE_AVAILABLE_PATH))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+    mockMvc.perform(get(BASE_AVAILABLE_PATH)
+        .accept(AVAILABILITY_RANGES_JSON_VALUE)
+        .header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andDo(print())
+        .andExpect(status().isOk());
+  }
+
+  @Test
+  void getAvailabilityRangesBetween() throws Exception {
+    reserve("2021-01-29", 2);
+    mockMvc.perform(get(BASE_AVAILABLE_PATH)
+        .accept(AVAILABILITY_RANGES_JSON_VALUE)
+        .queryParam("start", "2021-01-28")
+        .queryParam("end", "2021-02-03"))
+        .andDo(print())
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(AVAILABILITY_RANGES_JSON_VALUE))
+        .andExpect(content().json("[{\"from\":\"2021-01-28\",\"to\":\"2021-01-29\"},"
+            + "{\"from\":\"2021-01-31\",\"to\":\"2021-02-03\"}]", true));
+  }
+
+  @Test
+  void getAvailabilityBitmapBetween() throws Exception {
+    reserve("2021-01-29", 2);
+    // Available dates: bits 0, 3, 4, 5 => 0b00111001
+    final var bitmap = Base64.getEncoder().encodeToString(new byte[]{0b00111001});
+    mockMvc.perform(get(BASE_AVAILABLE_PATH)
+        .accept(AVAILABILITY_BITMAP_JSON_VALUE)
+        .queryParam("start", "2021-01-28")
+        .queryParam("end", "2021-02-03"))
+        .andDo(print())
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(AVAILABILITY_BITMAP_JSON_VALUE))
+        .andExpect(content().json(
+            "{\"start\":\"2021-01-28\",\"end\":\"2021-02-03\",\"bitmap\":\"" + bitmap + "\"}", true));
+  }
+
+  @Test
+  void getAvailabilityWindows() throws Exception {
+    reserve("2021-01-29", 2);
+    reserve("2021-02-02", 1);
+    mockMvc.perform(get(WINDOWS_PATH)
+        .queryParam("length", "2")
+        .queryParam("from", "2021-01-28")
+        .queryParam("to", "2021-02-06"))
+        .andDo(print())
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+        .andExpect(content().json("[\"2021-01-31\", \"2021-02-03\", \"2021-02-04\"]", true));
+  }
+
+  @Test
+  void getAvailabilityWindows_limit() throws Exception {
+    mockMvc.perform(get(WINDOWS_PATH)
+        .queryParam("length", "3")
+        .queryParam("from", "2021-01-28")
+        .queryParam("to", "2024-01-28")
+        .queryParam("limit", "2"))
+        .andDo(print())
+        .andExpect(status().isOk())
+        .andExpect(content().json("[\"2021-01-28\", \"2021-01-29\"]", true));
+  }
+
+  @Test
+  void getAvailabilityWindows_invalidLength() throws Exception {
+    mockMvc.perform(get(WINDOWS_PATH)
+        .queryParam("length", "65"))
+        .andDo(print())
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string(containsString("Length 65 should be between 1 and 64")));
+  }
+
+  @Test
+  void getAvailabilityRangesBetween_start_after_end() throws Exception {
+    mockMvc.perform(get(BASE_AVAILABLE_PATH)
+        .accept(AVAILABILITY_RANGES_JSON_VALUE)
+        .queryParam("start", "2021-01-02")
+        .queryParam("end", "2021-01-01"))
+        .andDo(print())
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string(containsString("Start date 2021-01-02 is after end date 2021-01-01")));
+  }
+
   @Test
   void getAvailabilitiesBetween_no_param() throws Exception {
     final var argumentCaptor = ArgumentCaptor.forClass(LocalDate.class);
@@ -313,10 +755,23 @@ class BookingControllerTest {
         .andExpect(status().isOk())
         .andExpect(content().contentType(MediaType.APPLICATION_JSON));
 
-    verify(bookingService).getAvailabilities(argumentCaptor.capture(), argumentCaptor.capture());
+    verify(bookingService).getAvailabilities(eq(Fixtures.CAMPSITE_ID), argumentCaptor.capture(), argumentCaptor.capture());
     assertThat(argumentCaptor.getAllValues()).containsExactly(LocalDate.now(), LocalDate.now().plusMonths(1));
   }
 
+  @Test
+  void getAvailabilitiesBetween_campsite() throws Exception {
+    reserve("2021-01-28", 2);
+    mockMvc.perform(get(CAMPSITE_PATH + BASE_AVAILABLE_PATH, 2)
+        .queryParam("start", "2021-01-28")
+        .queryParam("end", "2021-01-31"))
+        .andDo(print())
+        .andExpect(status().isOk())
+        .andExpect(content().json("[2021-01-28, 2021-01-29, 2021-01-30]"));
+
+    verify(bookingService).getAvailabilities(eq(2L), any(), any());
+  }
+
   @Test
   void getAvailabilitiesBetween_start_param() throws Exception {
     final var argumentCaptor = ArgumentCaptor.forClass(LocalDate.class);
@@ -329,7 +784,7 @@ class BookingControllerTest {
         .andExpect(status().isOk())
         .andExpect(content().contentType(MediaType.APPLICATION_JSON));
 
-    verify(bookingService).getAvailabilities(argumentCaptor.capture(), argumentCaptor.capture());
+    verify(bookingService).getAvailabilities(eq(Fixtures.CAMPSITE_ID), argumentCaptor.capture(), argumentCaptor.capture());
     assertThat(argumentCaptor.getAllValues()).containsExactly(startDate, startDate.plusMonths(1));
   }
 
@@ -344,7 +799,7 @@ class BookingControllerTest {
         .andExpect(status().isOk())
         .andExpect(content().contentType(MediaType.APPLICATION_JSON));
 
-    verify(bookingService).getAvailabilities(argumentCaptor.capture(), argumentCaptor.capture());
+    verify(bookingService).getAvailabilities(eq(Fixtures.CAMPSITE_ID), argumentCaptor.capture(), argumentCaptor.capture());
     assertThat(argumentCaptor.getAllValues()).containsExactly(LocalDate.now(), endDate);
   }
 
@@ -370,4 +825,8 @@ class BookingControllerTest {
         .andExpect(content().string(containsString("Unable to parse date time value")));
   }
 
-}
\ No newline at end of file
+  private void reserve(String startInclusive, int numberOfDays) {
+    final var start = LocalDate.parse(startInclusive);
+    occupancyIndex.reserve(Fixtures.CAMPSITE_ID, start, start.plusDays(numberOfDays));
+  }
+}
@@ -0,0 +1,287 @@
+package com.upgrade.interview.challenge.campsitereservation.rest;
+
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.AVAILABILITY_RANGES_JSON_VALUE;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.BASE_AVAILABLE_PATH;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.BASE_PATH;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.CAMPSITE_PATH;
+import static com.upgrade.interview.challenge.campsitereservation.rest.BookingController.WINDOWS_PATH;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.upgrade.interview.challenge.campsitereservation.Fixtures;
+import com.upgrade.interview.challenge.campsitereservation.Utils;
+import com.upgrade.interview.challenge.campsitereservation.persistence.BookingDateRepository;
+import com.upgrade.interview.challenge.campsitereservation.persistence.BookingIntervalIndex;
+import com.upgrade.interview.challenge.campsitereservation.persistence.BookingRepository;
+import com.upgrade.interview.challenge.campsitereservation.persistence.OccupancyIndex;
+
+/**
+ * Test the {@link ReactiveBookingController}.
+ * <p>This test class uses the h2 in-memory database, shared by JPA and R2DBC.</p>
+ */
+@SpringBootTest(properties = {
+    "spring.main.web-application-type=reactive",
+    "spring.datasource.url=jdbc:h2:mem:reactive;DB_CLOSE_DELAY=-1",
+    "spring.r2dbc.url=r2dbc:h2:mem:///reactive?options=DB_CLOSE_DELAY=-1"})
+@AutoConfigureWebTestClient
+class ReactiveBookingControllerTest {
+
+  @Autowired
+  private WebTestClient webTestClient;
+
+  @Autowired
+  private BookingRepository bookingRepository;
+
+  @Autowired
+  private BookingDateRepository bookingDateRepository;
+
+  @Autowired
+  private OccupancyIndex occupancyIndex;
+
+  @Autowired
+  private BookingIntervalIndex bookingIntervalIndex;
+
+  @BeforeEach
+  void setUp() {
+    bookingRepository.deleteAll();
+    bookingDateRepository.deleteAll();
+    occupancyIndex.load();
+    bookingIntervalIndex.load();
+  }
+
+  private Booking addBooking(String path, Booking booking, Object... uriVariables) {
+    return webTestClient.post().uri(path, uriVariables).contentType(MediaType.APPLICATION_JSON).bodyValue(booking)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody(Booking.class)
+        .returnResult()
+        .getResponseBody();
+  }
+
+  @Test
+  void addBooking_success() {
+    final var booking = Fixtures.createValidBooking();
+
+    final var addedBooking = addBooking(BASE_PATH, booking);
+
+    assertThat(addedBooking.getId()).isPositive();
+    assertThat(addedBooking.getArrivalDate()).isEqualTo(booking.getArrivalDate());
+    assertThat(bookingRepository.findById(addedBooking.getId())).get()
+        .extracting("campsiteId").isEqualTo(Fixtures.CAMPSITE_ID);
+    assertThat(bookingDateRepository.findAll()).hasSize(3);
+  }
+
+  @Test
+  void addBooking_conflict() {
+    final var booking = Fixtures.createValidBooking();
+    addBooking(BASE_PATH, booking);
+
+    webTestClient.post().uri(BASE_PATH).contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(Fixtures.createBooking(booking.getDepartureDate().minusDays(1), 1))
+        .exchange()
+        .expectStatus().isEqualTo(409)
+        .expectBody().jsonPath("$.message").value(message -> assertThat((String) message).contains("not available"));
+    assertThat(bookingRepository.findAll()).hasSize(1);
+  }
+
+  @Test
+  void addBooking_otherCampsite() {
+    final var booking = Fixtures.createValidBooking();
+    addBooking(BASE_PATH, booking);
+
+    addBooking(CAMPSITE_PATH + BASE_PATH, booking, Fixtures.CAMPSITE_ID + 1);
+
+    assertThat(bookingRepository.findAll()).hasSize(2);
+  }
+
+  @Test
+  void addBooking_invalid() {
+    webTestClient.post().uri(BASE_PATH).contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(Fixtures.createTooLongBooking())
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody().jsonPath("$.message").isEqualTo("The campsite can be reserved for maximum 3 days.");
+  }
+
+  @Test
+  void updateBooking() {
+    final var booking = addBooking(BASE_PATH, Fixtures.createValidBooking());
+    // The new booking overlaps the old booking
+    final var newBooking = Fixtures.createBooking(booking.getArrivalDate().plusDays(1), 3);
+
+    webTestClient.put().uri(BASE_PATH + "/" + booking.getId()).contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(newBooking)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody().jsonPath("$.arrivalDate").isEqualTo(newBooking.getArrivalDate().toString());
+
+    assertThat(bookingDateRepository.findAll()).hasSize(3);
+    assertThat(occupancyIndex.availabilities(Fixtures.CAMPSITE_ID, booking.getArrivalDate(),
+        newBooking.getDepartureDate())).containsExactly(booking.getArrivalDate());
+  }
+
+  @Test
+  void deleteBooking() {
+    final var booking = addBooking(BASE_PATH, Fixtures.createValidBooking());
+
+    webTestClient.delete().uri(BASE_PATH + "/" + booking.getId()).exchange().expectStatus().isOk();
+    webTestClient.get().uri(BASE_PATH + "/" + booking.getId()).exchange().expectStatus().isNotFound();
+    webTestClient.delete().uri(BASE_PATH + "/" + booking.getId()).exchange().expectStatus().isNotFound();
+
+    assertThat(bookingDateRepository.findAll()).isEmpty();
+  }
+
+  @Test
+  void getBooking_otherCampsite() {
+    final var booking = addBooking(BASE_PATH, Fixtures.createValidBooking());
+
+    webTestClient.get().uri(CAMPSITE_PATH + BASE_PATH + "/" + booking.getId(), Fixtures.CAMPSITE_ID + 1)
+        .exchange()
+        .expectStatus().isNotFound();
+  }
+
+  @Test
+  void getBooking_notModified() {
+    final var booking = addBooking(BASE_PATH, Fixtures.createValidBooking());
+    final var etag = webTestClient.get().uri(BASE_PATH + "/" + booking.getId())
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().exists(HttpHeaders.ETAG)
+        .returnResult(Booking.class)
+        .getResponseHeaders()
+        .getETag();
+
+    webTestClient.get().uri(BASE_PATH + "/" + booking.getId()).header(HttpHeaders.IF_NONE_MATCH, etag)
+        .exchange()
+        .expectStatus().isNotModified();
+
+    // The ETag changes with the version of the booking
+    webTestClient.put().uri(BASE_PATH + "/" + booking.getId()).contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(Fixtures.createBooking(booking.getArrivalDate().plusDays(1), 1))
+        .exchange()
+        .expectStatus().isOk();
+    webTestClient.get().uri(BASE_PATH + "/" + booking.getId()).header(HttpHeaders.IF_NONE_MATCH, etag)
+        .exchange()
+        .expectStatus().isOk();
+  }
+
+  @Test
+  void getBookingList() {
+    final var booking = addBooking(BASE_PATH, Fixtures.createValidBooking());
+    addBooking(BASE_PATH, Fixtures.createBooking(booking.getDepartureDate(), 1));
+
+    webTestClient.get().uri(BASE_PATH)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBodyList(Booking.class).hasSize(2);
+  }
+
+  @Test
+  void getBookingPage() {
+    final var booking = addBooking(BASE_PATH, Fixtures.createValidBooking());
+    addBooking(BASE_PATH, Fixtures.createBooking(booking.getDepartureDate(), 1));
+
+    webTestClient.get().uri(BASE_PATH + "?limit=1")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody()
+        .jsonPath("$.bookings.length()").isEqualTo(1)
+        .jsonPath("$.nextCursor").isEqualTo(booking.getArrivalDate() + ":" + booking.getId());
+    webTestClient.get().uri(BASE_PATH + "?limit=0")
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody().jsonPath("$.message").isEqualTo("Limit 0 should be between 1 and 1000");
+  }
+
+  @Test
+  void getOverlappingBookings() {
+    final var booking = addBooking(BASE_PATH, Fixtures.createValidBooking());
+    final var nextBooking = addBooking(BASE_PATH, Fixtures.createBooking(booking.getDepartureDate(), 1));
+
+    webTestClient.get().uri(BASE_PATH + "?overlapping={from},{to}",
+        booking.getDepartureDate().minusDays(1), booking.getDepartureDate().plusDays(1))
+        .exchange()
+        .expectStatus().isOk()
+        .expectBodyList(Booking.class).hasSize(2);
+    webTestClient.get().uri(BASE_PATH + "?overlapping={from},{to}",
+        booking.getDepartureDate(), nextBooking.getDepartureDate())
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody().jsonPath("$.length()").isEqualTo(1).jsonPath("$[0].id").isEqualTo(nextBooking.getId());
+    webTestClient.get().uri(BASE_PATH + "?overlapping=2021-02-02,2021-02-01")
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody().jsonPath("$.message").isEqualTo("Start date 2021-02-02 is after end date 2021-02-01");
+    webTestClient.get().uri(BASE_PATH + "?overlapping=2021-01-28,2023-01-28")
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody().jsonPath("$.message")
+        .isEqualTo("Date range 2021-01-28,2023-01-28 should span at most 1000 days");
+    webTestClient.get().uri(BASE_PATH + "?overlapping={from},{to}&limit=1",
+        booking.getDepartureDate().minusDays(1), booking.getDepartureDate().plusDays(1))
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody().jsonPath("$.message")
+        .isEqualTo("The overlapping bookings are not paged, limit 1 is not supported");
+  }
+
+  @Test
+  void getAvailabilitiesBetween() {
+    final var booking = addBooking(BASE_PATH, Fixtures.createValidBooking());
+    final var start = booking.getArrivalDate().minusDays(1);
+    final var end = booking.getDepartureDate().plusDays(1);
+
+    webTestClient.get().uri(BASE_AVAILABLE_PATH + "?start={start}&end={end}", start, end)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBodyList(LocalDate.class).containsExactly(start, booking.getDepartureDate());
+    webTestClient.get().uri(BASE_AVAILABLE_PATH + "?start={start}&end={end}", start, end)
+        .accept(MediaType.valueOf(AVAILABILITY_RANGES_JSON_VALUE))
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody().jsonPath("$.length()").isEqualTo(2);
+    webTestClient.get().uri(CAMPSITE_PATH + BASE_AVAILABLE_PATH + "?start={start}&end={end}", 2, start, end)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBodyList(LocalDate.class).isEqualTo(Utils.datesBetween(start, end));
+  }
+
+  @Test
+  void getAvailabilityWindows() {
+    final var booking = addBooking(BASE_PATH, Fixtures.createValidBooking());
+    final var from = booking.getArrivalDate().minusDays(1);
+    final var to = booking.getDepartureDate().plusDays(2);
+
+    webTestClient.get().uri(WINDOWS_PATH + "?length=1&from={from}&to={to}", from, to)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBodyList(LocalDate.class).containsExactly(from, booking.getDepartureDate(),
+            booking.getDepartureDate().plusDays(1));
+    webTestClient.get().uri(WINDOWS_PATH + "?length=2&from={from}&to={to}&limit=1", from, to)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBodyList(LocalDate.class).containsExactly(booking.getDepartureDate());
+    webTestClient.get().uri(WINDOWS_PATH + "?length=0")
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody().jsonPath("$.message").isEqualTo("Length 0 should be between 1 and 64");
+  }
+
+  @Test
+  void getAvailabilitiesBetween_startAfterEnd() {
+    webTestClient.get().uri(BASE_AVAILABLE_PATH + "?start=2021-02-02&end=2021-02-01")
+        .exchange()
+        .expectStatus().isBadRequest()
+        .expectBody().jsonPath("$.message").isEqualTo("Start date 2021-02-02 is after end date 2021-02-01");
+  }
+}
@@ -0,0 +1,94 @@
+package com.upgrade.interview.challenge.campsitereservation.validation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import com.upgrade.interview.challenge.campsitereservation.CampsiteConfiguration;
+
+/**
+ * Test the {@link BookingRules}.
+ */
+class BookingRulesTest {
+
+  private static final LocalDate TODAY = LocalDate.parse("2021-04-22");
+
+  private final CampsiteConfiguration configuration = new CampsiteConfiguration();
+
+  BookingRulesTest() {
+    configuration.setMaxBookingDurationInDays(3);
+    configuration.setMinDaysAheadOfArrival(1);
+    configuration.setMaxDaysAheadOfArrival(31);
+  }
+
+  @SuppressWarnings("unchecked")
+  private BookingRules bookingRules(Clock clock, BookingRule... additionalRules) {
+    final ObjectProvider<BookingRule> provider = mock(ObjectProvider.class);
+    when(provider.orderedStream()).thenReturn(Stream.of(additionalRules));
+    return new BookingRules(configuration, clock, provider);
+  }
+
+  private static Clock clockAt(LocalDate date) {
+    return Clock.fixed(date.atTime(12, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+  }
+
+  @Test
+  void violations_valid() {
+    final var bookingRules = bookingRules(clockAt(TODAY));
+
+    assertThat(bookingRules.violations(TODAY.plusDays(1), TODAY.plusDays(4))).isSameAs(List.of());
+    assertThat(bookingRules.isValid(TODAY.plusDays(31).toEpochDay(), TODAY.plusDays(32).toEpochDay())).isTrue();
+  }
+
+  @Test
+  void violations_invalid() {
+    final var bookingRules = bookingRules(clockAt(TODAY));
+
+    assertThat(bookingRules.violations(TODAY, TODAY.plusDays(4))).containsExactly(
+        "The campsite can be reserved for maximum 3 days",
+        "The campsite can be reserved minimum 1 day(s) ahead of arrival");
+    assertThat(bookingRules.violations(TODAY.plusDays(32), TODAY.plusDays(31))).containsExactly(
+        "Arrival date should be before departure date",
+        "The campsite can be reserved for minimum 1 day",
+        "The campsite can be reserved up to 31 day(s) in advance");
+    assertThat(bookingRules.isValid(TODAY.plusDays(2).toEpochDay(), TODAY.plusDays(2).toEpochDay())).isFalse();
+  }
+
+  @Test
+  void violations_additionalRule() {
+    final var bookingRules = bookingRules(clockAt(TODAY), new BookingRule("Closed on Sundays",
+        (arrival, departure, today) -> LocalDate.ofEpochDay(arrival).getDayOfWeek().getValue() != 7));
+
+    // 2021-04-25 is a Sunday
+    assertThat(bookingRules.violations(TODAY.plusDays(3), TODAY.plusDays(4))).containsExactly("Closed on Sundays");
+    assertThat(bookingRules.violations(TODAY.plusDays(4), TODAY.plusDays(5))).isEmpty();
+  }
+
+  @Test
+  void todayEpochDay_followsClock() {
+    final var zone = ZoneId.of("America/Montreal");
+    final var clock = mock(Clock.class);
+    when(clock.getZone()).thenReturn(zone);
+    final var bookingRules = bookingRules(clock);
+    final var midnight = TODAY.plusDays(1).atStartOfDay(zone).toInstant();
+
+    when(clock.millis()).thenReturn(midnight.toEpochMilli() - 1);
+    assertThat(bookingRules.todayEpochDay()).isEqualTo(TODAY.toEpochDay());
+    when(clock.millis()).thenReturn(midnight.toEpochMilli());
+    assertThat(bookingRules.todayEpochDay()).isEqualTo(TODAY.plusDays(1).toEpochDay());
+    // The clock may go backwards
+    when(clock.millis()).thenReturn(Instant.parse("2021-04-20T12:00:00Z").toEpochMilli());
+    assertThat(bookingRules.todayEpochDay()).isEqualTo(TODAY.minusDays(2).toEpochDay());
+  }
+}